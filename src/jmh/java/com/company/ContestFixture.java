@@ -0,0 +1,63 @@
+package com.company;
+
+/**
+ * Contests prepared for benchmarks without console input
+ * Photographers are created by import and votes are live likes, so nothing is read from System.in,
+ * and all messages go to the null sink, so results do not depend on the terminal.
+ */
+final class ContestFixture {
+    private ContestFixture() {
+    }
+
+    /**
+     * Output, which is thrown away
+     */
+    static void quiet() {
+        Output.setSink(new NullSink());
+    }
+
+    /**
+     * @param count - number of photographers
+     * @return photographers with unique emails
+     */
+    static Photographer[] photographers(int count) {
+        Photographer[] photographers = new Photographer[count];
+        for (int i = 0; i < count; i++) {
+            photographers[i] = Photographer.imported("Photographer " + i, "photographer" + i + "@mail.ru", null);
+        }
+        return photographers;
+    }
+
+    /**
+     * Contest after application session, every photographer sent a photo
+     * Every duplicateEvery-th photographer sends the photo of the previous one
+     *
+     * @param admin - admin of the contest
+     * @param photographers - photographers of the contest
+     * @param duplicateEvery - period of plagiarism, 0 for no plagiarism
+     * @return contest in Choice state
+     */
+    static PhotoContest onReview(Admin admin, Photographer[] photographers, int duplicateEvery) {
+        PhotoContest photoContest = admin.createNewContest("Benchmark");
+        for (int i = 0; i < photographers.length; i++) {
+            photographers[i].register(photoContest);
+            boolean duplicate = duplicateEvery > 0 && i > 0 && i % duplicateEvery == 0;
+            photographers[i].sendPhoto(photoContest, "photo-" + (duplicate ? i - 1 : i));
+        }
+        admin.closeApplicationSession(photoContest.id);
+        return photoContest;
+    }
+
+    /**
+     * Contest on voting, where every photo is promoted
+     *
+     * @param admin - admin of the contest
+     * @param photographers - photographers of the contest
+     * @return contest in Vote state
+     */
+    static PhotoContest onVoting(Admin admin, Photographer[] photographers) {
+        PhotoContest photoContest = onReview(admin, photographers, 0);
+        admin.peerReviewSession(photoContest.id);
+        return photoContest;
+    }
+}
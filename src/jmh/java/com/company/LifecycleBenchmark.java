@@ -0,0 +1,60 @@
+package com.company;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole contest from createNewContest to chooseWinner
+ * Rates come from live likes instead of console input: every photographer likes the next photo,
+ * and the first photo gets one more like, so there is always one winner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LifecycleBenchmark {
+    @Param({"100", "10000"})
+    int participants;
+
+    private Admin admin;
+
+    @Setup
+    public void prepare() {
+        ContestFixture.quiet();
+        admin = new Admin();
+    }
+
+    @Benchmark
+    public int lifecycle() {
+        Photographer[] photographers = ContestFixture.photographers(participants);
+        PhotoContest photoContest = admin.createNewContest("Lifecycle");
+        for (int i = 0; i < photographers.length; i++) {
+            photographers[i].register(photoContest);
+            photographers[i].sendPhoto(photoContest, "photo-" + i);
+        }
+        admin.closeApplicationSession(photoContest.id);
+        admin.peerReviewSession(photoContest.id);
+        for (int i = 0; i < photographers.length; i++) {
+            photoContest.like(photographers[(i + 1) % photographers.length], i);
+        }
+        photoContest.like(photographers[0], photographers.length);
+        admin.closeVotingSession(photoContest.id);
+        admin.chooseWinner(photoContest.id);
+        photoContest.getNotificationDispatcher().awaitDelivery();
+        admin.getContestRegistry().remove(photoContest.id);
+        return photoContest.winnerRate;
+    }
+}
@@ -0,0 +1,47 @@
+package com.company;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of contest notification to all participants, including delivery by the dispatcher
+ * Awarding notification of promoted photographers does not change their states, so it can be repeated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationBenchmark {
+    @Param({"100", "10000", "100000"})
+    int participants;
+
+    private PhotoContest photoContest;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        ContestFixture.quiet();
+        photoContest = ContestFixture.onVoting(new Admin(), ContestFixture.photographers(participants));
+        photoContest.getNotificationDispatcher().awaitDelivery();
+        photoContest.contestState = ContestState.AWARDING;
+    }
+
+    @Benchmark
+    public void notification() {
+        photoContest.send(photoContest.notification());
+        photoContest.getNotificationDispatcher().awaitDelivery();
+    }
+}
@@ -0,0 +1,87 @@
+package com.company;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plagiarism checking and review session at growing number of participants
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlagiarismBenchmark {
+    @Param({"1000", "10000", "100000"})
+    int participants;
+
+    //Every 10th photo is a copy of the previous one
+    @Param({"10"})
+    int duplicateEvery;
+
+    private Admin admin;
+    private Photographer[] photographers;
+    private ArrayList<Participant> sent;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        ContestFixture.quiet();
+        admin = new Admin();
+        photographers = ContestFixture.photographers(participants);
+        PhotoContest sample = ContestFixture.onReview(admin, photographers, duplicateEvery);
+        sent = new ArrayList<>(participants);
+        sample.getParticipants(PhotographerState.APPLICATION).forEach(sent::add);
+    }
+
+    /**
+     * Contest on review, review changes states, so every call gets a new contest
+     * Only peerReviewSession uses it, duplicateIndex does not pay for its setup
+     */
+    @State(Scope.Thread)
+    public static class Review {
+        PhotoContest photoContest;
+        private Admin admin;
+
+        @Setup(Level.Invocation)
+        public void newContest(PlagiarismBenchmark benchmark) {
+            admin = benchmark.admin;
+            photoContest = ContestFixture.onReview(admin, ContestFixture.photographers(benchmark.participants), benchmark.duplicateEvery);
+        }
+
+        @TearDown(Level.Invocation)
+        public void deliver() {
+            photoContest.getNotificationDispatcher().awaitDelivery();
+            admin.getContestRegistry().remove(photoContest.id);
+        }
+    }
+
+    @Benchmark
+    public int duplicateIndex() {
+        DuplicateIndex index = new DuplicateIndex();
+        for (Participant participant : sent) {
+            index.add(participant);
+        }
+        return index.getDuplicateGroups().size();
+    }
+
+    @Benchmark
+    public int peerReviewSession(Review review) {
+        admin.peerReviewSession(review.photoContest.id);
+        return review.photoContest.getParticipants(PhotographerState.PROMOTED).size();
+    }
+}
@@ -0,0 +1,74 @@
+package com.company;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of contact checking, which is done by Photographer.setEmail and setPhoneNumber
+ * Inputs mix valid contacts with every kind of error.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+    private static final String[] EMAILS = {
+            "anna@mail.ru", "john.smith_1@innopolis.university", "", "1anna@mail.ru", "anna.mail.ru",
+            "anna@mailru", "an$na@mail.ru", "anna@ma1l.ru", "anna@mail.r-u", "anna@mail."
+    };
+    private static final String[] PHONES = {
+            "89991112233", "+7 (999) 111-22-33", "", "8999111223a", "8999111223", "+7(999)111-22-334"
+    };
+
+    private String[] emails;
+    private String[] phones;
+
+    /**
+     * Copies of inputs, so strings are not constants for the compiler
+     */
+    @Setup
+    public void prepare() {
+        emails = new String[EMAILS.length];
+        for (int i = 0; i < EMAILS.length; i++) {
+            emails[i] = new String(EMAILS[i].toCharArray());
+        }
+        phones = new String[PHONES.length];
+        for (int i = 0; i < PHONES.length; i++) {
+            phones[i] = new String(PHONES[i].toCharArray());
+        }
+    }
+
+    @Benchmark
+    public int checkEmail() {
+        int valid = 0;
+        for (String email : emails) {
+            if (ContactValidator.checkEmail(email) == null) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int checkPhoneNumber() {
+        int valid = 0;
+        for (String phone : phones) {
+            if (ContactValidator.checkPhoneNumber(phone) == null) {
+                valid += ContactValidator.phoneDigits(phone).length();
+            }
+        }
+        return valid;
+    }
+}
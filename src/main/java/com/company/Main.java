@@ -0,0 +1,8199 @@
+package com.company;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.imageio.ImageIO;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.stream.IntStream;
+
+/**
+ * States of contest
+ * Transitions are taken from the table, so no objects are created on them
+ */
+enum ContestState {
+    /**
+     * Contest state, during which photographers can register and send applications for contest
+     */
+    APPLICATION,
+    /**
+     * Contest state, during which admin checking for plagiarism
+     */
+    CHOICE,
+    /**
+     * Contest state, during which vote is opened
+     */
+    VOTE,
+    /**
+     * Contest state, during which the winner is determined
+     */
+    AWARDING,
+    /**
+     * Contest state, during which the contest is closed
+     */
+    CLOSED;
+
+    private static final ContestState[] NEXT = {CHOICE, VOTE, AWARDING, CLOSED, CLOSED};
+
+    /**
+     * Transition to the next state: Plagiarism checking, Voting, Awarding ceremony, Closure of contest
+     * Closed contest stays closed
+     *
+     * @return next state
+     */
+    ContestState next() {
+        return NEXT[ordinal()];
+    }
+}
+
+/**
+ * Compact set of participants in one state
+ * Participant keeps its slot in the array, so adding and removing are O(1).
+ * Removed slots are emptied and squeezed out later, so participants stay in order of adding.
+ */
+class ParticipantSet {
+    private Participant[] participants = new Participant[8];
+    //Number of used slots, including emptied ones
+    private int end;
+    private int size;
+    private int iterating;
+
+    /**
+     * @param participant - participant, which came to the state
+     */
+    void add(Participant participant) {
+        if (end == participants.length) {
+            if (iterating == 0 && size <= end / 2) {
+                compact();
+            } else {
+                participants = Arrays.copyOf(participants, participants.length * 2);
+            }
+        }
+        participant.slot = end;
+        participants[end++] = participant;
+        size++;
+    }
+
+    /**
+     * @param participant - participant, which left the state
+     */
+    void remove(Participant participant) {
+        participants[participant.slot] = null;
+        participant.slot = -1;
+        size--;
+        if (size == 0 && iterating == 0) {
+            end = 0;
+        }
+    }
+
+    /**
+     * Move participants to the beginning of array, without emptied slots
+     */
+    private void compact() {
+        int to = 0;
+        for (int from = 0; from < end; from++) {
+            Participant participant = participants[from];
+            if (participant != null) {
+                participant.slot = to;
+                participants[to++] = participant;
+            }
+        }
+        Arrays.fill(participants, to, end, null);
+        end = to;
+    }
+
+    /**
+     * Do action for every participant in the state
+     * Participants may leave the state during action; participants, which came during action, are not visited
+     *
+     * @param action - action with participant
+     */
+    void forEach(Consumer<Participant> action) {
+        iterating++;
+        try {
+            int last = end;
+            for (int i = 0; i < last; i++) {
+                Participant participant = participants[i];
+                if (participant != null) {
+                    action.accept(participant);
+                }
+            }
+        } finally {
+            iterating--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+}
+
+/**
+ * Hot fields of all participants of one contest in primitive columns, indexed by row of participant
+ * Columns are split into chunks, which are never moved, so cells are read and written without locks
+ * with acquire/release access; only adding of rows is synchronized.
+ * Equal photos are kept once, rows refer to one string.
+ */
+class ParticipantTable {
+    private static final PhotographerState[] STATES = PhotographerState.values();
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle BOOLEANS = MethodHandles.arrayElementVarHandle(boolean[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle STRINGS = MethodHandles.arrayElementVarHandle(String[].class);
+
+    /**
+     * Columns of 1024 rows
+     */
+    private static final class Chunk {
+        final byte[] states = new byte[CHUNK_MASK + 1];
+        final boolean[] accepted = new boolean[CHUNK_MASK + 1];
+        final int[] rates = new int[CHUNK_MASK + 1];
+        final String[] photos = new String[CHUNK_MASK + 1];
+    }
+
+    private volatile Chunk[] chunks = new Chunk[1];
+    private final ConcurrentHashMap<String, String> photos = new ConcurrentHashMap<>();
+    private volatile int rows;
+
+    /**
+     * Add row for the participant in Initial state
+     *
+     * @param participant - new participant
+     * @return row of participant
+     */
+    synchronized int add(Participant participant) {
+        int row = rows;
+        int index = row >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, index * 2);
+        }
+        if (current[index] == null) {
+            current[index] = new Chunk();
+        }
+        current[index].states[row & CHUNK_MASK] = (byte) PhotographerState.INITIAL.ordinal();
+        //Volatile writes publish the new chunk and the row
+        chunks = current;
+        rows = row + 1;
+        return row;
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    PhotographerState getState(int row) {
+        return STATES[(byte) BYTES.getAcquire(chunk(row).states, row & CHUNK_MASK)];
+    }
+
+    void setState(int row, PhotographerState state) {
+        BYTES.setRelease(chunk(row).states, row & CHUNK_MASK, (byte) state.ordinal());
+    }
+
+    boolean isAccepted(int row) {
+        return (boolean) BOOLEANS.getAcquire(chunk(row).accepted, row & CHUNK_MASK);
+    }
+
+    void setAccepted(int row, boolean value) {
+        BOOLEANS.setRelease(chunk(row).accepted, row & CHUNK_MASK, value);
+    }
+
+    int getRate(int row) {
+        return (int) INTS.getAcquire(chunk(row).rates, row & CHUNK_MASK);
+    }
+
+    void setRate(int row, int rate) {
+        INTS.setRelease(chunk(row).rates, row & CHUNK_MASK, rate);
+    }
+
+    String getPhoto(int row) {
+        return (String) STRINGS.getAcquire(chunk(row).photos, row & CHUNK_MASK);
+    }
+
+    void setPhoto(int row, String photo) {
+        String kept = photo == null ? null : photos.computeIfAbsent(photo, key -> key);
+        STRINGS.setRelease(chunk(row).photos, row & CHUNK_MASK, kept);
+    }
+
+    public int size() {
+        return rows;
+    }
+}
+
+/**
+ * Interface for plagiarism checking of the contest
+ * Photos are added while they are sent, groups of plagiarized photos are taken on review session
+ */
+interface PlagiarismChecker {
+    /**
+     * Add photo of photographer to the checker
+     *
+     * @param participant - photographer who sent a photo
+     */
+    void add(Participant participant);
+
+    /**
+     * Getter for groups of photographers who sent the same photo
+     *
+     * @return groups with at least two photographers in each
+     */
+    Collection<? extends Collection<Participant>> getDuplicateGroups();
+}
+
+/**
+ * Index of submitted photos, grouped by normalized photo identity
+ * Filled while photos are sent, so review session does not compare photos pairwise
+ */
+class DuplicateIndex implements PlagiarismChecker {
+    private final HashMap<String, ArrayList<Participant>> photos = new HashMap<>();
+    private final ArrayList<ArrayList<Participant>> duplicateGroups = new ArrayList<>();
+
+    /**
+     * Normalized identity of the photo: case and surrounding spaces are ignored
+     *
+     * @param photo - name of the photo
+     * @return key of the photo in index
+     */
+    static String normalize(String photo) {
+        return photo.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Add photo of photographer to the index
+     * Group becomes duplicate group as soon as the second equal photo is added
+     *
+     * @param participant - photographer who sent a photo
+     */
+    @Override
+    public void add(Participant participant) {
+        ArrayList<Participant> group = photos.computeIfAbsent(normalize(participant.getPhoto()), key -> new ArrayList<>(1));
+        group.add(participant);
+        if (group.size() == 2) {
+            duplicateGroups.add(group);
+        }
+    }
+
+    /**
+     * Getter for groups of photographers who sent the same photo
+     *
+     * @return groups with at least two photographers in each
+     */
+    @Override
+    public Collection<ArrayList<Participant>> getDuplicateGroups() {
+        return duplicateGroups;
+    }
+}
+
+/**
+ * Near-duplicate checker, which compares images of the photos instead of their names
+ * Name of the photo is treated as path to the image file. Each image gets 64-bit difference hash (dHash),
+ * photos with hashes closer than the threshold (in Hamming distance) are plagiarism of each other.
+ * Hashes are stored in BK-tree, so every new photo is compared only with a small part of the sent ones.
+ * Photos, which image cannot be read, are checked by name as in DuplicateIndex.
+ */
+class PerceptualDuplicateIndex implements PlagiarismChecker {
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+
+    private final int threshold;
+    private BKTreeNode root;
+    private final ArrayList<Participant> participants = new ArrayList<>();
+    //Union-find over indexes of photographers, to join near-duplicates into groups
+    private int[] parent = new int[16];
+    private final DuplicateIndex unreadable = new DuplicateIndex();
+    //Store, where photos sent as references are read from, null if photos are files
+    private final PhotoStore photoStore;
+
+    /**
+     * Constructor with default threshold: 10 of 64 bits may differ
+     */
+    PerceptualDuplicateIndex() {
+        this(10);
+    }
+
+    /**
+     * @param threshold - max Hamming distance between hashes of near-duplicate photos
+     */
+    PerceptualDuplicateIndex(int threshold) {
+        this(threshold, null);
+    }
+
+    /**
+     * @param threshold - max Hamming distance between hashes of near-duplicate photos
+     * @param photoStore - store, where photos sent as references are read from
+     */
+    PerceptualDuplicateIndex(int threshold, PhotoStore photoStore) {
+        this.threshold = threshold;
+        this.photoStore = photoStore;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Node of BK-tree, children are indexed by the distance to the node hash
+     */
+    private static class BKTreeNode {
+        final long hash;
+        final ArrayList<Integer> photos = new ArrayList<>(1);
+        final BKTreeNode[] children = new BKTreeNode[Long.SIZE + 1];
+
+        BKTreeNode(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Compute difference hash of the image: image is reduced to 9x8 grey pixels,
+     * every bit shows whether pixel is brighter than its right neighbour
+     *
+     * @param image - image of the photo
+     * @return 64-bit hash
+     */
+    static long dHash(BufferedImage image) {
+        BufferedImage small = new BufferedImage(HASH_WIDTH, HASH_HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = small.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, HASH_WIDTH, HASH_HEIGHT, null);
+        graphics.dispose();
+        long hash = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            for (int x = 0; x < HASH_WIDTH - 1; x++) {
+                int left = small.getRaster().getSample(x, y, 0);
+                int right = small.getRaster().getSample(x + 1, y, 0);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Read image of the photo and compute its hash
+     *
+     * @param photo - path to the image or reference to the photo store
+     * @return hash, or null if image cannot be read
+     */
+    private Long hashOf(String photo) {
+        try {
+            BufferedImage image = photoStore != null && PhotoStore.isReference(photo)
+                    ? ImageIO.read(photoStore.open(photo))
+                    : ImageIO.read(new File(photo));
+            return image == null ? null : dHash(image);
+        } catch (IOException exc) {
+            return null;
+        }
+    }
+
+    /**
+     * Add photo to the index and join it with all near-duplicates already sent
+     *
+     * @param participant - photographer who sent a photo
+     */
+    @Override
+    public void add(Participant participant) {
+        Long hash = hashOf(participant.getPhoto());
+        if (hash == null) {
+            unreadable.add(participant);
+            return;
+        }
+        int id = participants.size();
+        participants.add(participant);
+        if (id == parent.length) {
+            parent = Arrays.copyOf(parent, id * 2);
+        }
+        parent[id] = id;
+
+        if (root == null) {
+            root = new BKTreeNode(hash);
+            root.photos.add(id);
+            return;
+        }
+        //Search for near-duplicates and the place for new hash at the same time
+        ArrayDeque<BKTreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            BKTreeNode node = stack.pop();
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance <= threshold) {
+                for (int other : node.photos) {
+                    union(other, id);
+                }
+            }
+            int from = Math.max(1, distance - threshold);
+            int to = Math.min(Long.SIZE, distance + threshold);
+            for (int i = from; i <= to; i++) {
+                if (node.children[i] != null) {
+                    stack.push(node.children[i]);
+                }
+            }
+        }
+        insert(hash, id);
+    }
+
+    /**
+     * Put hash into BK-tree
+     *
+     * @param hash - hash of the photo
+     * @param id - index of photographer
+     */
+    private void insert(long hash, int id) {
+        BKTreeNode node = root;
+        while (true) {
+            int distance = Long.bitCount(node.hash ^ hash);
+            if (distance == 0) {
+                node.photos.add(id);
+                return;
+            }
+            if (node.children[distance] == null) {
+                node.children[distance] = new BKTreeNode(hash);
+                node.children[distance].photos.add(id);
+                return;
+            }
+            node = node.children[distance];
+        }
+    }
+
+    private int find(int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private void union(int first, int second) {
+        parent[find(first)] = find(second);
+    }
+
+    /**
+     * Collect groups of near-duplicates in one pass over sent photos
+     *
+     * @return groups with at least two photographers in each
+     */
+    @Override
+    public Collection<ArrayList<Participant>> getDuplicateGroups() {
+        HashMap<Integer, ArrayList<Participant>> groups = new HashMap<>();
+        for (int id = 0; id < participants.size(); id++) {
+            groups.computeIfAbsent(find(id), key -> new ArrayList<>(1)).add(participants.get(id));
+        }
+        ArrayList<ArrayList<Participant>> duplicateGroups = new ArrayList<>(unreadable.getDuplicateGroups());
+        for (ArrayList<Participant> group : groups.values()) {
+            if (group.size() > 1) {
+                duplicateGroups.add(group);
+            }
+        }
+        return duplicateGroups;
+    }
+}
+
+/**
+ * Ranking of photos on voting, updated with every like
+ * Photos are kept in a sorted concurrent set by rate, so update costs O(log n)
+ * and reading of the ranking does not block likes
+ */
+class Leaderboard {
+    private final ConcurrentSkipListSet<Standing> ranking = new ConcurrentSkipListSet<>(Standing.ORDER);
+    private final ConcurrentHashMap<Participant, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Place of photo in the ranking: photographer with published rate
+     */
+    static final class Standing {
+        //Higher rate first, equal rates in order of photographers
+        static final Comparator<Standing> ORDER = Comparator.comparingLong((Standing standing) -> -standing.rate)
+                .thenComparingInt(standing -> standing.participant.photographer.id);
+
+        final Participant participant;
+        final long rate;
+
+        Standing(Participant participant, long rate) {
+            this.participant = participant;
+            this.rate = rate;
+        }
+    }
+
+    /**
+     * Current standing of the photo and flag of thread, which is publishing new rate
+     */
+    private static final class Entry {
+        volatile Standing standing;
+        final AtomicBoolean publishing = new AtomicBoolean();
+
+        Entry(Standing standing) {
+            this.standing = standing;
+        }
+    }
+
+    /**
+     * Add photo of photographer to the ranking with zero rate
+     *
+     * @param participant - photographer promoted to voting
+     */
+    public void add(Participant participant) {
+        Standing standing = new Standing(participant, 0);
+        if (entries.putIfAbsent(participant, new Entry(standing)) == null) {
+            ranking.add(standing);
+        }
+    }
+
+    /**
+     * Publish actual rate of the photo
+     * If another thread is publishing rate of the same photo, it will take this change too,
+     * so hot photos are not moved in the ranking once per like
+     *
+     * @param participant - concrete photographer
+     * @param rate - source of actual rate
+     */
+    public void update(Participant participant, LongSupplier rate) {
+        Entry entry = entries.get(participant);
+        if (entry == null) {
+            return;
+        }
+        while (entry.publishing.compareAndSet(false, true)) {
+            try {
+                long actual = rate.getAsLong();
+                Standing old = entry.standing;
+                if (actual != old.rate) {
+                    Standing standing = new Standing(participant, actual);
+                    //Add first, so photo never disappears from the ranking
+                    ranking.add(standing);
+                    entry.standing = standing;
+                    ranking.remove(old);
+                }
+            } finally {
+                entry.publishing.set(false);
+            }
+            //Rate could change while it was published
+            if (rate.getAsLong() == entry.standing.rate) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Getter for the highest rate
+     *
+     * @return rate of the first photo, 0 if ranking is empty
+     */
+    public long getTopRate() {
+        Standing first = ranking.isEmpty() ? null : ranking.first();
+        return first == null ? 0 : first.rate;
+    }
+
+    /**
+     * Getter for photographers sharing the highest rate
+     *
+     * @return leaders of ranking
+     */
+    public List<Participant> getLeaders() {
+        //Set keeps order of ranking, during update photo can be seen twice
+        LinkedHashSet<Participant> leaders = new LinkedHashSet<>();
+        long topRate = -1;
+        for (Standing standing : ranking) {
+            if (topRate == -1) {
+                topRate = standing.rate;
+            } else if (standing.rate != topRate) {
+                break;
+            }
+            leaders.add(standing.participant);
+        }
+        return new ArrayList<>(leaders);
+    }
+
+    /**
+     * Snapshot of the first places of the ranking
+     *
+     * @param k - number of places
+     * @return at most k standings, each photo once
+     */
+    public List<Standing> top(int k) {
+        ArrayList<Standing> top = new ArrayList<>(Math.min(k, 16));
+        HashMap<Participant, Standing> seen = new HashMap<>();
+        for (Standing standing : ranking) {
+            if (top.size() == k) {
+                break;
+            }
+            //During update photo can be seen twice, the first one has higher rate
+            if (seen.putIfAbsent(standing.participant, standing) == null) {
+                top.add(standing);
+            }
+        }
+        return top;
+    }
+}
+
+/**
+ * Set of voters, who liked one photo
+ * Voter ids are split into ranges of 65536 ids, as in Roaring bitmaps. Range with few voters keeps
+ * them in the sorted array of low 16 bits, 2 bytes per voter; range with more than 4096 voters
+ * turns into the bitmap of 8 KB, which is never larger than the array would be.
+ * So memory is about 2 bytes per voter for sparse ids and 1 bit per id for dense ones.
+ * Bitmap is changed without locks, array is changed under the lock of its range.
+ */
+class VoterSet {
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    //Array of more voters takes more place than the bitmap
+    private static final int MAX_ARRAY = (1 << CHUNK_BITS) / Short.SIZE;
+    private final ConcurrentHashMap<Integer, Chunk> chunks = new ConcurrentHashMap<>();
+
+    /**
+     * Voters of one range
+     */
+    private static final class Chunk {
+        //Sorted low bits of voters shifted by Short.MIN_VALUE, while the range is sparse
+        private short[] values = new short[4];
+        private int size;
+        private volatile AtomicLongArray bits;
+
+        /**
+         * @param low - low 16 bits of voter id
+         * @return true, if voter is added
+         */
+        boolean add(int low) {
+            AtomicLongArray bitmap = bits;
+            if (bitmap == null) {
+                synchronized (this) {
+                    bitmap = bits;
+                    if (bitmap == null) {
+                        return addToArray(low);
+                    }
+                }
+            }
+            return addToBitmap(bitmap, low);
+        }
+
+        private boolean addToArray(int low) {
+            int index = Arrays.binarySearch(values, 0, size, (short) (low + Short.MIN_VALUE));
+            if (index >= 0) {
+                return false;
+            }
+            if (size == MAX_ARRAY) {
+                AtomicLongArray bitmap = new AtomicLongArray((CHUNK_MASK + 1) / Long.SIZE);
+                for (int i = 0; i < size; i++) {
+                    addToBitmap(bitmap, values[i] - Short.MIN_VALUE);
+                }
+                values = null;
+                bits = bitmap;
+                return addToBitmap(bitmap, low);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(size * 2, MAX_ARRAY));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (short) (low + Short.MIN_VALUE);
+            size++;
+            return true;
+        }
+
+        private static boolean addToBitmap(AtomicLongArray bitmap, int low) {
+            int index = low >>> 6;
+            long bit = 1L << low;
+            while (true) {
+                long word = bitmap.get(index);
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                if (bitmap.compareAndSet(index, word, word | bit)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean contains(int low) {
+            AtomicLongArray bitmap = bits;
+            if (bitmap != null) {
+                return (bitmap.get(low >>> 6) & (1L << low)) != 0;
+            }
+            synchronized (this) {
+                bitmap = bits;
+                if (bitmap != null) {
+                    return (bitmap.get(low >>> 6) & (1L << low)) != 0;
+                }
+                return Arrays.binarySearch(values, 0, size, (short) (low + Short.MIN_VALUE)) >= 0;
+            }
+        }
+    }
+
+    /**
+     * Add voter, if the voter is not in the set yet
+     *
+     * @param voter - id of voter, not negative
+     * @return true, if voter is added; false, if voter already voted
+     */
+    boolean add(int voter) {
+        if (voter < 0) {
+            throw new IllegalArgumentException("Voter id is negative: " + voter);
+        }
+        Chunk chunk = chunks.get(voter >>> CHUNK_BITS);
+        if (chunk == null) {
+            chunk = chunks.computeIfAbsent(voter >>> CHUNK_BITS, key -> new Chunk());
+        }
+        return chunk.add(voter & CHUNK_MASK);
+    }
+
+    /**
+     * @param voter - id of voter
+     * @return true, if voter is in the set
+     */
+    boolean contains(int voter) {
+        Chunk chunk = voter < 0 ? null : chunks.get(voter >>> CHUNK_BITS);
+        return chunk != null && chunk.contains(voter & CHUNK_MASK);
+    }
+
+    /**
+     * @return number of ranges with voters
+     */
+    int chunks() {
+        return chunks.size();
+    }
+}
+
+/**
+ * Live likes of photos during voting session
+ * Every photo has its own striped counter, so likes from many threads do not wait for a common lock
+ * Every like has voter id and is counted once per voter and photo.
+ * Tally is sealed before rates are read: likes in progress are finished, later likes are refused.
+ */
+class VoteTally {
+    private static final int STRIPES = 16;
+    //Longs between stripes, so every stripe has its own cache line
+    private static final int PADDING = 8;
+    private final ConcurrentHashMap<Participant, LongAdder> likes = new ConcurrentHashMap<>();
+    //Likes in progress by stripes of threads, thread increments and decrements the same stripe
+    private final AtomicLongArray inFlight = new AtomicLongArray(STRIPES * PADDING);
+    private volatile boolean sealed;
+    private final ConcurrentHashMap<Participant, VoterSet> voters = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final Leaderboard leaderboard = new Leaderboard();
+
+    /**
+     * Allow likes for the photo of photographer
+     *
+     * @param participant - photographer promoted to voting
+     */
+    public void open(Participant participant) {
+        likes.computeIfAbsent(participant, key -> new LongAdder());
+        leaderboard.add(participant);
+    }
+
+    /**
+     * Count several likes for the photo at once, for example on recovery
+     *
+     * @param participant - photographer whose photo is liked
+     * @param count - number of likes
+     */
+    public void add(Participant participant, long count) {
+        open(participant);
+        LongAdder counter = likes.get(participant);
+        counter.add(count);
+        total.add(count);
+        leaderboard.update(participant, counter::sum);
+    }
+
+    /**
+     * Set voters of the photo, for example on recovery
+     *
+     * @param participant - photographer whose photo is liked
+     * @param voterSet - voters, who liked the photo
+     */
+    void restoreVoters(Participant participant, VoterSet voterSet) {
+        voters.put(participant, voterSet);
+    }
+
+    private static int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+    }
+
+    /**
+     * Count like of the voter for the photo, repeated like of the same voter is rejected
+     *
+     * @param participant - photographer whose photo is liked
+     * @param voter - id of voter, not negative
+     * @return true, if like is counted; false, if voter id is negative, photo is not on voting,
+     * voter already liked it or tally is sealed
+     */
+    public boolean like(Participant participant, int voter) {
+        return like(participant, voter, null);
+    }
+
+    /**
+     * Count like of the voter and journal it before the tally can be sealed,
+     * so journal has every counted like before records of rates
+     *
+     * @param participant - photographer whose photo is liked
+     * @param voter - id of voter, not negative
+     * @param journal - journal of the contest, null if contest is not journaled
+     * @return true, if like is counted
+     */
+    boolean like(Participant participant, int voter, ContestJournal journal) {
+        if (voter < 0) {
+            return false;
+        }
+        int stripe = stripe();
+        inFlight.incrementAndGet(stripe);
+        try {
+            if (sealed || !likes.containsKey(participant)) {
+                return false;
+            }
+            if (!voters.computeIfAbsent(participant, key -> new VoterSet()).add(voter)) {
+                rejected.increment();
+                return false;
+            }
+            if (!count(participant)) {
+                return false;
+            }
+            if (journal != null) {
+                journal.like(participant, voter);
+            }
+            return true;
+        } finally {
+            inFlight.decrementAndGet(stripe);
+        }
+    }
+
+    private boolean count(Participant participant) {
+        LongAdder counter = likes.get(participant);
+        if (counter == null) {
+            return false;
+        }
+        counter.increment();
+        total.increment();
+        leaderboard.update(participant, counter::sum);
+        return true;
+    }
+
+    /**
+     * Refuse new likes and wait for likes in progress, so counts do not change after it
+     * Like, which started before sealing, is seen by its stripe until it is finished
+     */
+    public void seal() {
+        sealed = true;
+        for (int stripe = 0; stripe < STRIPES * PADDING; stripe += PADDING) {
+            while (inFlight.get(stripe) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * @param participant - concrete photographer
+     * @param voter - id of voter
+     * @return true, if voter already liked the photo
+     */
+    public boolean hasVoted(Participant participant, int voter) {
+        VoterSet voterSet = voters.get(participant);
+        return voterSet != null && voterSet.contains(voter);
+    }
+
+    /**
+     * Getter for number of repeated likes, which were not counted
+     *
+     * @return number of rejected likes
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Getter for number of likes of the photo
+     *
+     * @param participant - concrete photographer
+     * @return number of likes
+     */
+    public long getLikes(Participant participant) {
+        LongAdder counter = likes.get(participant);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Getter for number of likes of all photos
+     *
+     * @return number of likes
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * Getter for ranking of photos on voting
+     *
+     * @return leaderboard
+     */
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+}
+
+/**
+ * Class represents a singular photo contest
+ */
+class PhotoContest {
+    private static final AtomicLong ids = new AtomicLong();
+    final long id;
+    volatile ContestState contestState;
+    //Journal of contest events, null if contest is not journaled
+    volatile ContestJournal journal;
+    //Store for contents of photos, null if photos are sent by name only
+    volatile PhotoStore photoStore;
+    //Generator of thumbnails and previews for voting, null if originals are shown
+    volatile DerivativeGenerator derivativeGenerator;
+    private final LinkedHashSet<Subscriber<ContestState>> photographersList = new LinkedHashSet<>();
+    //Contacts of subscribed photographers, so the same person is not subscribed twice
+    private final PhotographerDirectory subscribers = new PhotographerDirectory();
+    //Participants of the contest by their current state
+    private final EnumMap<PhotographerState, ParticipantSet> participantsByState = new EnumMap<>(PhotographerState.class);
+    //Hot fields of participants
+    private final ParticipantTable participantTable = new ParticipantTable();
+    private final PlagiarismChecker plagiarismChecker;
+    private final VoteTally voteTally = new VoteTally();
+    private final NotificationDispatcher notificationDispatcher = NotificationDispatcher.shared();
+    int winnerRate;
+    String topic;
+
+    PhotoContest(String name) {
+        this(name, new DuplicateIndex());
+    }
+
+    /**
+     * @param name - topic of the contest
+     * @param plagiarismChecker - checker, which collects sent photos for review session
+     */
+    PhotoContest(String name, PlagiarismChecker plagiarismChecker) {
+        this(ids.incrementAndGet(), name, plagiarismChecker);
+    }
+
+    /**
+     * Contest with known id, for example recovered from journal
+     *
+     * @param id - id of the contest
+     * @param name - topic of the contest
+     * @param plagiarismChecker - checker, which collects sent photos for review session
+     */
+    PhotoContest(long id, String name, PlagiarismChecker plagiarismChecker) {
+        this.id = id;
+        reserveId(id);
+        topic = name;
+        contestState = ContestState.APPLICATION;
+        for (PhotographerState state : PhotographerState.values()) {
+            participantsByState.put(state, new ParticipantSet());
+        }
+        this.plagiarismChecker = plagiarismChecker;
+    }
+
+    /**
+     * New contests get ids after the id, which is already used, for example by recovered or archived contest
+     *
+     * @param id - used id
+     */
+    static void reserveId(long id) {
+        ids.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Add photographer to the set of photographers
+     * and change state of photographer to Registered
+     * Photographer, whose email or phone number is already subscribed, gets the existing participation
+     *
+     * @param photographer - concrete Photographer
+     * @return participation of photographer in this contest, or null if registration is closed
+     */
+    public synchronized Participant subscribe(Photographer photographer) {
+        if (contestState != ContestState.APPLICATION) {
+            return null;
+        }
+        Photographer known = subscribers.add(photographer);
+        Participant subscriber = known.getParticipant(this);
+        if (subscriber == null) {
+            //Photographer, whose record cannot be journaled, is not subscribed
+            if (journal != null) {
+                try {
+                    journal.subscribed(this, known);
+                } catch (IllegalArgumentException exc) {
+                    subscribers.remove(known);
+                    throw exc;
+                }
+            }
+            subscriber = restoreSubscriber(known);
+            subscriber.accepted();
+        }
+        if (known != photographer) {
+            photographer.join(subscriber);
+        }
+        return subscriber;
+    }
+
+    /**
+     * Add photographer to the contest in Initial state
+     *
+     * @param photographer - photographer, who is not subscribed yet
+     * @return participation of photographer in this contest
+     */
+    synchronized Participant restoreSubscriber(Photographer photographer) {
+        Participant subscriber = new Participant(photographer, this);
+        participantsByState.get(subscriber.getState()).add(subscriber);
+        ContestMetrics.shared().moved(null, subscriber.getState());
+        photographersList.add(subscriber);
+        subscribers.add(photographer);
+        photographer.join(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Move participant from the set of old state to the set of new one
+     *
+     * @param participant - concrete participant
+     * @param from - old state
+     * @param to - new state
+     */
+    synchronized void moveParticipant(Participant participant, PhotographerState from, PhotographerState to) {
+        //Participant is not subscribed yet
+        if (participant.slot < 0) {
+            return;
+        }
+        participantsByState.get(from).remove(participant);
+        participantsByState.get(to).add(participant);
+        ContestMetrics.shared().moved(from, to);
+    }
+
+    /**
+     * Getter for participants in the state
+     *
+     * @param state - state of photographer
+     * @return set of participants
+     */
+    public ParticipantSet getParticipants(PhotographerState state) {
+        return participantsByState.get(state);
+    }
+
+    public ParticipantTable getParticipantTable() {
+        return participantTable;
+    }
+
+    /**
+     * Add sent photo to the plagiarism checker
+     * Photos are indexed only during application session
+     * Checkers are not thread safe, photos are sent under the lock of the contest
+     *
+     * @param participant - photographer who sent a photo
+     */
+    public void submitPhoto(Participant participant) {
+        if (contestState == ContestState.APPLICATION) {
+            plagiarismChecker.add(participant);
+        }
+    }
+
+    /**
+     * Getter for plagiarism checker of the contest
+     *
+     * @return checker with sent photos
+     */
+    public PlagiarismChecker getPlagiarismChecker() {
+        return plagiarismChecker;
+    }
+
+    /**
+     * Getter for photographers set
+     *
+     * @return set of photographers in order of registration
+     */
+    public Set<Subscriber<ContestState>> getPhotographersList() {
+        return photographersList;
+    }
+
+    /**
+     * Getter for contacts of subscribed photographers
+     *
+     * @return directory of subscribers
+     */
+    public PhotographerDirectory getSubscribers() {
+        return subscribers;
+    }
+
+    /**
+     * Open live voting for all promoted photographers
+     */
+    public void openVoting() {
+        participantsByState.get(PhotographerState.PROMOTED).forEach(voteTally::open);
+        DerivativeGenerator derivativeGenerator = this.derivativeGenerator;
+        if (derivativeGenerator != null) {
+            List<String> photos = new ArrayList<>();
+            participantsByState.get(PhotographerState.PROMOTED).forEach(participant -> photos.add(participant.getPhoto()));
+            derivativeGenerator.generate(photos);
+        }
+    }
+
+    /**
+     * Live like of the voter for the photo of photographer
+     * Can be called from many threads, likes are accepted only during voting
+     * Every voter can like every photo only once
+     * Journaled like is on disk after the next group commit, caller does not wait for it
+     *
+     * @param participant - photographer whose photo is liked
+     * @param voter - id of voter
+     * @return true, if like is counted; false otherwise
+     */
+    public boolean like(Participant participant, int voter) {
+        return contestState == ContestState.VOTE && voteTally.like(participant, voter, journal);
+    }
+
+    /**
+     * Live like of the voter for the photo of photographer
+     *
+     * @param photographer - photographer whose photo is liked
+     * @param voter - id of voter
+     * @return true, if like is counted; false otherwise
+     */
+    public boolean like(Photographer photographer, int voter) {
+        Participant participant = photographer.getParticipant(this);
+        return participant != null && like(participant, voter);
+    }
+
+    /**
+     * Wait until likes counted before the call are on disk
+     * Callers, which acknowledge likes as durable, opt in to it; likes of many callers are put on disk by one group commit
+     *
+     * @return true, if likes are on disk or contest is not journaled; false, if journal is closed before the commit
+     */
+    public boolean awaitLikes() {
+        ContestJournal journal = this.journal;
+        return journal == null || journal.awaitCommit();
+    }
+
+    /**
+     * Getter for live likes of the contest
+     *
+     * @return tally of likes
+     */
+    public VoteTally getVoteTally() {
+        return voteTally;
+    }
+
+    /**
+     * Getter for dispatcher of notifications
+     *
+     * @return dispatcher, which delivers notifications of the contest
+     */
+    public NotificationDispatcher getNotificationDispatcher() {
+        return notificationDispatcher;
+    }
+
+    /**
+     * Automatic notification for subscribers
+     * State of every photographer is changed at once, messages are only collected:
+     * caller queues them by send() after it releases the lock of the contest,
+     * so full queue of the dispatcher does not stop likes and submissions of the contest
+     *
+     * @return notices in order of photographers
+     */
+    public synchronized List<Notice> notification() {
+        long start = System.nanoTime();
+        ContestState contestState = this.contestState;
+        List<Notice> notices = new ArrayList<>();
+        int[] fanOut = new int[1];
+        Consumer<Participant> notify = participant -> {
+            fanOut[0]++;
+            participant.notification(contestState, notices);
+        };
+        //Notification is sent only to photographers, who have news in this state
+        switch (contestState) {
+            case CHOICE:
+                participantsByState.get(PhotographerState.REGISTRATION).forEach(notify);
+                participantsByState.get(PhotographerState.APPLICATION).forEach(notify);
+                break;
+            case VOTE:
+                participantsByState.get(PhotographerState.APPLICATION).forEach(notify);
+                break;
+            case AWARDING:
+                participantsByState.get(PhotographerState.PROMOTED).forEach(notify);
+                participantsByState.get(PhotographerState.WINNER).forEach(notify);
+                participantsByState.get(PhotographerState.FAILURE).forEach(notify);
+                break;
+            default:
+                break;
+        }
+        ContestMetrics metrics = ContestMetrics.shared();
+        metrics.record(ContestMetrics.Phase.CONTEST_NOTIFICATION, start);
+        metrics.recordFanOut(fanOut[0]);
+        return notices;
+    }
+
+    /**
+     * Queue collected notices for delivery, waits if queue of the dispatcher is full
+     * Should be called without the lock of the contest
+     *
+     * @param notices - notices from notification()
+     */
+    public void send(List<Notice> notices) {
+        for (Notice notice : notices) {
+            notificationDispatcher.send(notice);
+        }
+    }
+
+    /**
+     * Current state of Contest is finished, change to the next one
+     * And outputs that contest is closed
+     * Transition is done under the lock of the contest, so transitions of admin, scheduler and replay are not lost
+     */
+    public synchronized void deadline() {
+        contestState = contestState.next();
+        if (journal != null) {
+            //Transition is kept only when it is on disk
+            journal.contestState(this);
+            journal.sync();
+        }
+        if (contestState == ContestState.CLOSED) {
+            Output.write("", MessageTemplate.CONTEST_CLOSED, topic);
+        }
+    }
+}
+
+/**
+ * States of photographer in the contest
+ * Transitions are taken from the tables, so no objects are created on them
+ */
+enum PhotographerState {
+    /**
+     * Arbitrary photographer not associated with the competition
+     */
+    INITIAL,
+    /**
+     * Photographer registered to the contest
+     */
+    REGISTRATION,
+    /**
+     * Photographer on plagiarism checking stage
+     */
+    APPLICATION,
+    /**
+     * Photographer, whose photo is on voting
+     */
+    PROMOTED,
+    /**
+     * Photographer, who won the contest
+     */
+    WINNER,
+    /**
+     * Photographer, who failed the contest
+     */
+    FAILURE;
+
+    private static final PhotographerState[] FAILED = {INITIAL, FAILURE, FAILURE, FAILURE, WINNER, FAILURE};
+    private static final PhotographerState[] ACCEPTED = {REGISTRATION, APPLICATION, PROMOTED, WINNER, INITIAL, INITIAL};
+
+    /**
+     * Transition in case of failure. Transitions: 3, 5, 6
+     * Nothing happens for Initial, Winner and Failure states
+     *
+     * @return next state
+     */
+    PhotographerState failed() {
+        return FAILED[ordinal()];
+    }
+
+    /**
+     * Transition in case of approval. Transitions: 1, 2, 4, 7, 8, 9
+     * Winner and Failure return to Initial state
+     *
+     * @return next state
+     */
+    PhotographerState accepted() {
+        return ACCEPTED[ordinal()];
+    }
+}
+
+/**
+ * Interface for Observer
+ *
+ * @param <T> - parameter on which notifications depend
+ */
+interface Subscriber<T> {
+    /**
+     * Sends notification to special photographers
+     *
+     * @param t - parameter on which notifications depend
+     */
+    void notification(T t);
+}
+
+/**
+ * Templates of messages for every event of the contest
+ * Text around the variable part is prepared once, including its bytes for buffered output
+ */
+enum MessageTemplate {
+    DISCOVERED("You have been successfully discovered as a photographer"),
+    REGISTERED("You successfully registered."),
+    CANNOT_REGISTER("You cannot register for the contest."),
+    PHOTO_SENT("You successfully send a photo '", "'."),
+    PHOTO_SENT_FROM_CONSOLE("You have successfully sent a photo."),
+    CANNOT_SUBMIT("You cannot submit a photo."),
+    LATE_SUBMISSION("You didn't submit a photo on time. You failed the contest."),
+    ON_REVIEW("Your submission is on review."),
+    ACCEPTED_FOR_VOTING("Your photo was accepted for voting."),
+    FAILED_REVIEW("You didn't pass the review session."),
+    RATE("Your rate is ", "."),
+    WINNER(" is the winner!"),
+    CONTEST_OPENED("New contest about '", "' is opened."),
+    APPLICATION_CLOSED("Application session for contest '", "' is closed"),
+    VOTING_OPENED("Now we will vote to choose the best one!"),
+    NO_WINNER("Unfortunately, no one won the contest."),
+    NO_CONTEST("There is no contest with id ", "."),
+    CONTEST_CLOSED("Contest '", "' is closed.");
+
+    final String head;
+    final String tail;
+    final byte[] headBytes;
+    final byte[] tailBytes;
+
+    MessageTemplate(String text) {
+        this(text, "");
+    }
+
+    /**
+     * @param head - text before the variable part
+     * @param tail - text after the variable part
+     */
+    MessageTemplate(String head, String tail) {
+        this.head = head;
+        this.tail = tail;
+        headBytes = head.getBytes(StandardCharsets.UTF_8);
+        tailBytes = tail.getBytes(StandardCharsets.UTF_8);
+    }
+}
+
+/**
+ * Interface for the place, where all messages of the contest are written
+ */
+interface OutputSink {
+    /**
+     * Write line: prefix, head of template, argument, tail of template
+     *
+     * @param prefix - text before the template, for example contacts of photographer
+     * @param template - message of the event
+     * @param argument - variable part of the message, null if template has none
+     */
+    void write(String prefix, MessageTemplate template, String argument);
+
+    /**
+     * Write any line, for example dialog with user
+     *
+     * @param line - text of the line
+     */
+    void println(String line);
+
+    /**
+     * Push buffered messages out
+     */
+    void flush();
+
+    /**
+     * Push buffered messages out and release the output, it is not written after it
+     */
+    default void close() {
+        flush();
+    }
+}
+
+/**
+ * Output straight to the console, line by line
+ */
+class ConsoleSink implements OutputSink {
+    private final PrintStream out = System.out;
+
+    @Override
+    public void write(String prefix, MessageTemplate template, String argument) {
+        //Pieces are printed one after another, so the line is not concatenated
+        synchronized (out) {
+            out.print(prefix);
+            out.print(template.head);
+            if (argument != null) {
+                out.print(argument);
+            }
+            out.println(template.tail);
+        }
+    }
+
+    @Override
+    public void println(String line) {
+        out.println(line);
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+}
+
+/**
+ * Output, which ignores all messages, for measuring the contest without console
+ */
+class NullSink implements OutputSink {
+    @Override
+    public void write(String prefix, MessageTemplate template, String argument) {
+
+    }
+
+    @Override
+    public void println(String line) {
+
+    }
+
+    @Override
+    public void flush() {
+
+    }
+}
+
+/**
+ * Buffered output to NIO channel
+ * Messages are encoded into one reusable buffer, which is written to channel when it is full
+ * or when flush interval passes, so there is no system call per message
+ */
+class BufferedChannelSink implements OutputSink {
+    private static final int CHUNK = 512;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final char[] chars = new char[CHUNK];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final ScheduledExecutorService flusher;
+    //Messages in the buffer are not lost on exit
+    private final Thread shutdownHook = new Thread(this::flush, "output-shutdown");
+
+    /**
+     * Buffered output to the console, flushed every 50 milliseconds
+     */
+    BufferedChannelSink() {
+        this(new FileOutputStream(FileDescriptor.out).getChannel(), 64 * 1024, 50);
+    }
+
+    /**
+     * @param channel - channel for output
+     * @param capacity - size of the buffer in bytes
+     * @param flushInterval - max time in milliseconds, which message can stay in the buffer
+     */
+    BufferedChannelSink(WritableByteChannel channel, int capacity, long flushInterval) {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(Math.max(capacity, 64));
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "output-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Stop the flusher and remove the shutdown hook, rest of messages is written
+     * Channel is not closed, it can be the console
+     */
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException exc) {
+            //JVM is shutting down, the hook flushes the buffer
+        }
+        flush();
+    }
+
+    @Override
+    public synchronized void write(String prefix, MessageTemplate template, String argument) {
+        putText(prefix);
+        putBytes(template.headBytes);
+        if (argument != null) {
+            putText(argument);
+        }
+        putBytes(template.tailBytes);
+        putByte((byte) '\n');
+    }
+
+    @Override
+    public synchronized void println(String line) {
+        putText(line);
+        putByte((byte) '\n');
+    }
+
+    @Override
+    public synchronized void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException exc) {
+            //Messages are lost, but contest goes on
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Encode text into the buffer through reusable array of chars
+     *
+     * @param text - text to write
+     */
+    private void putText(String text) {
+        for (int from = 0; from < text.length(); ) {
+            int to = Math.min(text.length(), from + CHUNK);
+            //Do not split surrogate pair between chunks
+            if (to < text.length() && Character.isHighSurrogate(text.charAt(to - 1))) {
+                to--;
+            }
+            text.getChars(from, to, chars, 0);
+            charBuffer.clear().limit(to - from);
+            encoder.reset();
+            while (encoder.encode(charBuffer, buffer, true) == CoderResult.OVERFLOW) {
+                flush();
+            }
+            from = to;
+        }
+    }
+
+    private void putBytes(byte[] bytes) {
+        for (int from = 0; from < bytes.length; ) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - from);
+            buffer.put(bytes, from, length);
+            from += length;
+        }
+    }
+
+    private void putByte(byte value) {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(value);
+    }
+}
+
+/**
+ * Current output of the system, console by default
+ */
+final class Output {
+    private static volatile OutputSink sink = new ConsoleSink();
+
+    private Output() {
+    }
+
+    /**
+     * Change output, for example to BufferedChannelSink for replaying large contest
+     * Replaced output is closed, so its threads do not stay after it
+     *
+     * @param newSink - new output
+     */
+    static void setSink(OutputSink newSink) {
+        swapSink(newSink).close();
+    }
+
+    /**
+     * Change output for a while, replaced output is only flushed, so it can be set back
+     *
+     * @param newSink - new output
+     * @return replaced output
+     */
+    static OutputSink swapSink(OutputSink newSink) {
+        OutputSink oldSink;
+        synchronized (Output.class) {
+            oldSink = sink;
+            sink = newSink;
+        }
+        oldSink.flush();
+        return oldSink;
+    }
+
+    static OutputSink sink() {
+        return sink;
+    }
+
+    static void write(String prefix, MessageTemplate template, String argument) {
+        sink.write(prefix, template, argument);
+    }
+
+    static void write(String prefix, MessageTemplate template) {
+        sink.write(prefix, template, null);
+    }
+
+    static void println(String line) {
+        sink.println(line);
+    }
+
+    static void flush() {
+        sink.flush();
+    }
+}
+
+/**
+ * Current input of the system, console by default
+ * All questions to the user read lines from one buffered reader, so lines piped at once are not lost between questions.
+ * Read lines can be recorded, the record is a script to replay the session.
+ */
+final class Input {
+    private static BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    private static Writer recorder;
+
+    private Input() {
+    }
+
+    /**
+     * Change input, for example to the script of commands
+     *
+     * @param newReader - new input
+     */
+    static synchronized void setReader(Reader newReader) {
+        reader = newReader instanceof BufferedReader ? (BufferedReader) newReader : new BufferedReader(newReader);
+    }
+
+    /**
+     * Start or stop recording of read lines
+     *
+     * @param newRecorder - output for read lines, null to stop recording
+     */
+    static synchronized void record(Writer newRecorder) {
+        recorder = newRecorder;
+    }
+
+    /**
+     * Next line of input
+     *
+     * @return line without line separator, null at the end of input
+     */
+    static synchronized String readLine() {
+        try {
+            String line = reader.readLine();
+            if (line != null && recorder != null) {
+                recorder.write(line);
+                recorder.write('\n');
+                //Record survives crash of the session
+                recorder.flush();
+            }
+            return line;
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc);
+        }
+    }
+
+    /**
+     * Next line of input for the question to the user
+     *
+     * @return line without line separator
+     * @throws NoSuchElementException - if input is over
+     */
+    static String nextLine() {
+        String line = readLine();
+        if (line == null) {
+            throw new NoSuchElementException("No line found");
+        }
+        return line;
+    }
+}
+
+/**
+ * Way to deliver notifications to photographers
+ */
+interface DeliveryChannel {
+    /**
+     * Deliver batch of notifications in order
+     *
+     * @param batch - notifications in order of sending
+     * @return number of delivered notifications from the beginning of batch, the rest is retried
+     * @throws IOException - if nothing of the batch was delivered and it should be retried
+     */
+    int deliver(List<Notice> batch) throws IOException;
+}
+
+/**
+ * Notification for concrete photographer
+ */
+class Notice {
+    final Photographer photographer;
+    final String prefix;
+    final MessageTemplate template;
+    final String argument;
+
+    /**
+     * @param photographer - receiver of notification
+     * @param prefix - text before the template
+     * @param template - message of the event
+     * @param argument - variable part of the message, null if template has none
+     */
+    Notice(Photographer photographer, String prefix, MessageTemplate template, String argument) {
+        this.photographer = photographer;
+        this.prefix = prefix;
+        this.template = template;
+        this.argument = argument;
+    }
+}
+
+/**
+ * Stand-in for delivery by email or SMS until real transports exist: outputs notifications
+ */
+class OutputChannel implements DeliveryChannel {
+    final String name;
+
+    /**
+     * @param name - name of the channel, which is stood in for, for example "email"
+     */
+    OutputChannel(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public int deliver(List<Notice> batch) {
+        for (Notice notice : batch) {
+            Output.write(notice.prefix, notice.template, notice.argument);
+        }
+        return batch.size();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
+
+/**
+ * Asynchronous delivery of notifications
+ * Notifications are queued per channel (email for photographers with email, SMS otherwise)
+ * and delivered in batches by a bounded pool of daemon threads. Full queue makes sender wait,
+ * failed rest of batch is retried several times, notices, which channel reported as delivered, are not sent again.
+ */
+class NotificationDispatcher {
+    private static NotificationDispatcher shared;
+
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final ChannelQueue email;
+    private final ChannelQueue sms;
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    //Time of the first sending, set once by the first of concurrent senders
+    private final AtomicLong startTime = new AtomicLong();
+
+    /**
+     * Queue of the channel and flag, that some thread is draining it
+     */
+    private static final class ChannelQueue {
+        final DeliveryChannel channel;
+        final ArrayBlockingQueue<Notice> notices;
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        ChannelQueue(DeliveryChannel channel, int capacity) {
+            this.channel = channel;
+            notices = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    /**
+     * Dispatcher with stand-in channels
+     */
+    NotificationDispatcher() {
+        this(2, 10_000, 256, 3, new OutputChannel("email"), new OutputChannel("sms"));
+    }
+
+    /**
+     * @param threads - number of delivering threads
+     * @param capacity - max number of queued notifications per channel
+     * @param batchSize - max number of notifications in one delivery
+     * @param maxAttempts - number of tries to deliver a batch
+     * @param email - channel for photographers with email
+     * @param sms - channel for photographers with phone number only
+     */
+    NotificationDispatcher(int threads, int capacity, int batchSize, int maxAttempts, DeliveryChannel email, DeliveryChannel sms) {
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "notification-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.email = new ChannelQueue(email, capacity);
+        this.sms = new ChannelQueue(sms, capacity);
+    }
+
+    /**
+     * Dispatcher shared by contests, which were created without their own one
+     *
+     * @return shared dispatcher
+     */
+    static synchronized NotificationDispatcher shared() {
+        if (shared == null) {
+            shared = new NotificationDispatcher();
+        }
+        return shared;
+    }
+
+    /**
+     * Queue notification for delivery
+     * Waits, if queue of the channel is full
+     *
+     * @param photographer - receiver of notification
+     * @param prefix - text before the template
+     * @param template - message of the event
+     * @param argument - variable part of the message, null if template has none
+     */
+    public void send(Photographer photographer, String prefix, MessageTemplate template, String argument) {
+        send(new Notice(photographer, prefix, template, argument));
+    }
+
+    /**
+     * Queue notification for delivery
+     * Waits, if queue of the channel is full
+     *
+     * @param notice - notification
+     */
+    public void send(Notice notice) {
+        ChannelQueue queue = notice.photographer.email != null ? email : sms;
+        if (startTime.get() == 0) {
+            startTime.compareAndSet(0, System.nanoTime());
+        }
+        pending.incrementAndGet();
+        try {
+            queue.notices.put(notice);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            complete(1);
+            failed.increment();
+            return;
+        }
+        schedule(queue);
+    }
+
+    /**
+     * Start draining of the queue, if nobody drains it
+     *
+     * @param queue - queue of channel
+     */
+    private void schedule(ChannelQueue queue) {
+        if (queue.draining.compareAndSet(false, true)) {
+            executor.execute(() -> drain(queue));
+        }
+    }
+
+    /**
+     * Deliver queued notifications batch by batch
+     *
+     * @param queue - queue of channel
+     */
+    private void drain(ChannelQueue queue) {
+        ArrayList<Notice> batch = new ArrayList<>(batchSize);
+        try {
+            while (queue.notices.drainTo(batch, batchSize) > 0) {
+                deliver(queue.channel, batch);
+                complete(batch.size());
+                batch.clear();
+            }
+        } finally {
+            queue.draining.set(false);
+        }
+        //Notification could be queued after the last drain
+        if (!queue.notices.isEmpty()) {
+            schedule(queue);
+        }
+    }
+
+    /**
+     * Deliver batch with retries, only notices, which are not delivered yet, are retried
+     *
+     * @param channel - channel of delivery
+     * @param batch - notifications
+     */
+    private void deliver(DeliveryChannel channel, List<Notice> batch) {
+        int done = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                int count = Math.max(0, Math.min(channel.deliver(batch.subList(done, batch.size())), batch.size() - done));
+                done += count;
+                delivered.add(count);
+                if (done == batch.size()) {
+                    batches.increment();
+                    return;
+                }
+            } catch (IOException | RuntimeException exc) {
+                //Channel did not deliver the rest, it is tried again
+            }
+            if (attempt == maxAttempts) {
+                failed.add(batch.size() - done);
+                return;
+            }
+            retried.increment();
+            try {
+                Thread.sleep(10L * attempt);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                failed.add(batch.size() - done);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Mark notifications as processed and wake up waiting threads, if nothing is pending
+     *
+     * @param count - number of processed notifications
+     */
+    private void complete(int count) {
+        if (pending.addAndGet(-count) == 0) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until all queued notifications are processed
+     */
+    public void awaitDelivery() {
+        synchronized (pending) {
+            while (pending.get() != 0) {
+                try {
+                    pending.wait(100);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Delivered notifications per second since the first sending
+     *
+     * @return throughput of delivery
+     */
+    public double getThroughput() {
+        long start = startTime.get();
+        if (start == 0) {
+            return 0;
+        }
+        return delivered.sum() * 1e9 / Math.max(1, System.nanoTime() - start);
+    }
+}
+
+/**
+ * Directory of photographers by their contacts
+ * Emails are compared without case, phone numbers by digits only.
+ * The first photographer with the contact stays in directory, later ones are resolved to it.
+ */
+class PhotographerDirectory {
+    private final ConcurrentHashMap<String, Photographer> byEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Photographer> byPhone = new ConcurrentHashMap<>();
+
+    /**
+     * @param email - email
+     * @return email in lower case without spaces around
+     */
+    static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param phone - phone number
+     * @return digits of phone number
+     */
+    static String normalizePhone(String phone) {
+        StringBuilder digits = new StringBuilder(ContactValidator.PHONE_DIGITS);
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Add photographer, if nobody with the same email or phone number is in directory
+     *
+     * @param photographer - concrete photographer
+     * @return photographer from directory with the same contact, or the added one
+     */
+    public Photographer add(Photographer photographer) {
+        String email = photographer.email == null ? null : normalizeEmail(photographer.email);
+        String phone = photographer.phoneNumber == null ? null : normalizePhone(photographer.phoneNumber);
+        if (email != null) {
+            Photographer known = byEmail.putIfAbsent(email, photographer);
+            if (known != null) {
+                return known;
+            }
+        }
+        if (phone != null) {
+            Photographer known = byPhone.putIfAbsent(phone, photographer);
+            if (known != null) {
+                //Email of the same person should lead to the known photographer
+                if (email != null) {
+                    byEmail.replace(email, photographer, known);
+                }
+                return known;
+            }
+        }
+        return photographer;
+    }
+
+    /**
+     * Remove contacts of the photographer, for example when its subscription is not completed
+     *
+     * @param photographer - photographer added before
+     */
+    public void remove(Photographer photographer) {
+        if (photographer.email != null) {
+            byEmail.remove(normalizeEmail(photographer.email), photographer);
+        }
+        if (photographer.phoneNumber != null) {
+            byPhone.remove(normalizePhone(photographer.phoneNumber), photographer);
+        }
+    }
+
+    /**
+     * Find photographer by email or phone number
+     *
+     * @param contact - email or phone number
+     * @return photographer, or null if there is no photographer with the contact
+     */
+    public Photographer find(String contact) {
+        if (contact.contains("@")) {
+            return byEmail.get(normalizeEmail(contact));
+        }
+        return byPhone.get(normalizePhone(contact));
+    }
+
+    /**
+     * Number of photographers with email and with phone number, the same photographer can be counted twice
+     *
+     * @return number of contacts in directory
+     */
+    public int contacts() {
+        return byEmail.size() + byPhone.size();
+    }
+}
+
+/**
+ * Mistakes in contacts of photographer
+ */
+enum ContactError {
+    EMPTY_EMAIL("Oh, you didn't enter your email!"),
+    EMAIL_FIRST_LETTER("First letter have to start with the english character"),
+    EMAIL_NO_AT("Email have to have an @"),
+    EMAIL_SHORT_DOMAIN("Email have to have at least one english letter before '.' and one after"),
+    EMAIL_NO_DOT("Email have to have an . after the @ sign"),
+    EMAIL_LOCAL_PART("You can use only english letters, digits, '.' or '_' before the @ sign"),
+    EMAIL_DOMAIN("You can use only english letters and only one . after the @ sign"),
+    EMAIL_ZONE("You can use only english letters or '.' after the @ sign"),
+    EMAIL_LAST_LETTER("You can use only english letters and only one '.' after the @ sign"),
+    EMPTY_PHONE("Oh, you didn't enter your phone number!"),
+    PHONE_SYMBOLS("Phone number can contain only '+','(',')','-' and digits"),
+    PHONE_LENGTH("Phone number have to have exactly 11 digits");
+
+    final String message;
+
+    ContactError(String message) {
+        this.message = message;
+    }
+}
+
+/**
+ * Checking of email and phone number without creating strings
+ * Every class of allowed characters is a table by character code
+ */
+final class ContactValidator {
+    static final int PHONE_DIGITS = 11;
+    private static final boolean[] LETTERS = table("abcdefghijklmnopqrstuvwxyz");
+    private static final boolean[] LOCAL_PART = table("abcdefghijklmnopqrstuvwxyz1234567890_.");
+    private static final boolean[] DIGITS = table("0123456789");
+    private static final boolean[] PHONE_SEPARATORS = table("()- +");
+
+    private ContactValidator() {
+    }
+
+    private static boolean[] table(String chars) {
+        boolean[] table = new boolean[128];
+        for (int i = 0; i < chars.length(); i++) {
+            table[chars.charAt(i)] = true;
+        }
+        return table;
+    }
+
+    private static boolean in(boolean[] table, char c) {
+        return c < table.length && table[c];
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Email should be "english_text_and_digits@english_text.english_text"
+     *
+     * @param mail - email
+     * @return mistake in email, or null if email is valid
+     */
+    static ContactError checkEmail(CharSequence mail) {
+        //Not empty
+        if (mail.length() == 0) {
+            return ContactError.EMPTY_EMAIL;
+        }
+        //Starts with letter
+        if (!in(LETTERS, Character.toLowerCase(mail.charAt(0)))) {
+            return ContactError.EMAIL_FIRST_LETTER;
+        }
+        //Must contain @
+        int at = indexOf(mail, '@', 0);
+        if (at < 0) {
+            return ContactError.EMAIL_NO_AT;
+        }
+        //Part after @ up to the next @
+        int domainEnd = indexOf(mail, '@', at + 1);
+        if (domainEnd < 0) {
+            domainEnd = mail.length();
+        }
+        if (domainEnd - at - 1 < 3) {
+            return ContactError.EMAIL_SHORT_DOMAIN;
+        }
+        if (indexOf(mail, '.', at + 1) < 0 || indexOf(mail, '.', at + 1) >= domainEnd) {
+            return ContactError.EMAIL_NO_DOT;
+        }
+        for (int i = 0; i < at; i++) {
+            if (!in(LOCAL_PART, mail.charAt(i))) {
+                return ContactError.EMAIL_LOCAL_PART;
+            }
+        }
+        int dot = indexOf(mail, '.', 0);
+        for (int i = at + 1; i < dot; i++) {
+            if (!in(LETTERS, mail.charAt(i))) {
+                return ContactError.EMAIL_DOMAIN;
+            }
+        }
+        for (int i = dot + 1; i < mail.length() - 1; i++) {
+            if (!in(LETTERS, mail.charAt(i))) {
+                return ContactError.EMAIL_ZONE;
+            }
+        }
+        if (!in(LETTERS, mail.charAt(mail.length() - 1))) {
+            return ContactError.EMAIL_LAST_LETTER;
+        }
+        return null;
+    }
+
+    /**
+     * Phone number should have exactly 11 digits, also '+', '(', ')', '-' and spaces
+     *
+     * @param phone - phone number
+     * @return mistake in phone number, or null if number is valid
+     */
+    static ContactError checkPhoneNumber(CharSequence phone) {
+        //Not empty
+        if (phone.length() == 0) {
+            return ContactError.EMPTY_PHONE;
+        }
+        int digits = 0;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (in(DIGITS, c)) {
+                digits++;
+            } else if (!in(PHONE_SEPARATORS, c)) {
+                return ContactError.PHONE_SYMBOLS;
+            }
+            if (digits > PHONE_DIGITS) {
+                return ContactError.PHONE_LENGTH;
+            }
+        }
+        //Exactly 11 digits in number
+        return digits == PHONE_DIGITS ? null : ContactError.PHONE_LENGTH;
+    }
+
+    /**
+     * Digits of valid phone number
+     *
+     * @param phone - valid phone number
+     * @return only digits of the number
+     */
+    static String phoneDigits(CharSequence phone) {
+        char[] digits = new char[PHONE_DIGITS];
+        int length = 0;
+        for (int i = 0; i < phone.length() && length < PHONE_DIGITS; i++) {
+            char c = phone.charAt(i);
+            if (in(DIGITS, c)) {
+                digits[length++] = c;
+            }
+        }
+        return new String(digits, 0, length);
+    }
+}
+
+/**
+ * Class represents a photographer
+ */
+class Photographer {
+    private static final AtomicInteger ids = new AtomicInteger();
+    final int id;
+    String name;
+    String email;
+    String phoneNumber;
+    String notifyData;
+    //Participation in every contest, where photographer registered
+    private final ConcurrentHashMap<PhotoContest, Participant> participants = new ConcurrentHashMap<>();
+    //The last contest, where photographer registered
+    private volatile Participant participant;
+
+    /**
+     * Primal constructor
+     *
+     * @param name - name of photographer
+     */
+    private Photographer(String name) {
+        this(ids.getAndIncrement(), name);
+    }
+
+    /**
+     * @param id - id of photographer
+     * @param name - name of photographer
+     */
+    private Photographer(int id, String name) {
+        this.id = id;
+        ids.accumulateAndGet(id + 1, Math::max);
+        this.name = name;
+    }
+
+    /**
+     * Constructor with name and phone number or email
+     * Could be used only by the programmer-user of system, so no checking for correctness of phone number or email
+     *
+     * @param name - name of photographer
+     * @param contact - how to contact with photographer (by email or phone number)
+     */
+    Photographer(String name, String contact) {
+        this(name);
+        if (contact.contains("@"))
+            email = contact;
+        else
+            phoneNumber = contact;
+        setNotification();
+        Output.write(notifyData, MessageTemplate.DISCOVERED);
+    }
+
+    /**
+     * Constructor with name, phone number and email
+     * Could be used only by the programmer-user of system, so no checking for correctness of phone number and email
+     *
+     * @param name - name of photographer
+     * @param mail - how to contact with photographer by email
+     * @param phone- how to contact with photographer by phone number
+     */
+    Photographer(String name, String mail, String phone) {
+        this(name);
+        email = mail;
+        phoneNumber = phone;
+        setNotification();
+        Output.write(notifyData, MessageTemplate.DISCOVERED);
+    }
+
+    /**
+     * Photographer with checked contacts and without any output, for bulk import
+     *
+     * @param name - name of photographer
+     * @param mail - email, null if there is no email
+     * @param phone - digits of phone number, null if there is no phone number
+     * @return new photographer
+     */
+    static Photographer imported(String name, String mail, String phone) {
+        Photographer photographer = new Photographer(name);
+        photographer.email = mail;
+        photographer.phoneNumber = phone;
+        photographer.setNotification();
+        return photographer;
+    }
+
+    /**
+     * Photographer with known id and without any output, for recovery from journal
+     *
+     * @param id - id of photographer
+     * @param name - name of photographer
+     * @param mail - email, null if there is no email
+     * @param phone - phone number, null if there is no phone number
+     * @return restored photographer
+     */
+    static Photographer restored(int id, String name, String mail, String phone) {
+        Photographer photographer = new Photographer(id, name);
+        photographer.email = mail;
+        photographer.phoneNumber = phone;
+        photographer.setNotification();
+        return photographer;
+    }
+
+    /**
+     * Constructor with input from console
+     */
+    Photographer() {
+        this(null);
+        Output.println("Hello, new photographer!");
+        //Any name
+        while (name == null) {
+            Output.println("Please, enter your name:");
+            Output.flush();
+            name = Input.nextLine();
+        }
+        Output.println(name + ", how to contact with you? 1/2/3");
+        Output.println("1 - email, 2 - phone, 3 - both email and phone.");
+        String line;
+        //Accept only  1, 2 or 3 to choose how to contact
+        label:
+        while (true) {
+            Output.flush();
+            line = Input.nextLine();
+            switch (line) {
+                case "1":
+                    inputEmail();
+                    break label;
+                case "2":
+                    inputPhone();
+                    break label;
+                case "3":
+                    inputEmail();
+                    inputPhone();
+                    break label;
+                default:
+                    Output.println("Choose one of the following options: ");
+                    Output.println("1 - email, 2 - phone, 3 - both email and phone.");
+                    break;
+            }
+        }
+        //To create full contacting with photographer
+        setNotification();
+        Output.write(notifyData, MessageTemplate.DISCOVERED);
+    }
+
+    /**
+     * Setting email from the console
+     */
+    private void inputEmail() {
+        Output.println("Now, enter your email: ");
+        Output.flush();
+        while (!setEmail(Input.nextLine())) {
+            Output.println("Try to enter your email again, please: ");
+            Output.flush();
+        }
+    }
+
+    /**
+     * Setting phone number from the console
+     */
+    private void inputPhone() {
+        Output.println("Lets set your phone number: ");
+        Output.flush();
+        while (!setPhoneNumber(Input.nextLine())) {
+            Output.println("Try to enter your phone number again, please: ");
+            Output.flush();
+        }
+    }
+
+    /**
+     * Inputting phone number and checking for validity
+     *
+     * @param newPhone - String phone number
+     * @return true, if number is valid; false, otherwise
+     */
+    private boolean setPhoneNumber(String newPhone) {
+        ContactError error = ContactValidator.checkPhoneNumber(newPhone);
+        if (error != null) {
+            Output.println(error.message);
+            return false;
+        }
+        phoneNumber = ContactValidator.phoneDigits(newPhone);
+        return true;
+    }
+
+    /**
+     * Inputting email and checking for validity
+     *
+     * @param newMail - String email
+     * @return true, if email is valid; false, otherwise
+     */
+    private boolean setEmail(String newMail) {
+        ContactError error = ContactValidator.checkEmail(newMail);
+        if (error != null) {
+            Output.println(error.message);
+            return false;
+        }
+        email = newMail;
+        return true;
+    }
+
+    /**
+     * Create form of notifications
+     */
+    private void setNotification() {
+        //Name + email/number of phone
+        notifyData = "Notification for " + name + " was send to ";
+        if (email != null && phoneNumber != null) {
+            notifyData += email + " and " + phoneNumber;
+        } else if (email != null) {
+            notifyData += email;
+        } else if (phoneNumber != null) {
+            notifyData += phoneNumber;
+        } else {
+            notifyData = "Notification for " + name;
+        }
+        notifyData += ": ";
+    }
+
+    /**
+     * Registration for the contest
+     * Change state and subscribe
+     * Photographer can take part in several contests, each of them independently.
+     * Repeated registration for the same contest changes nothing.
+     *
+     * @param photoContest - concrete photo contest
+     */
+    public void register(PhotoContest photoContest) {
+        if (participants.containsKey(photoContest) || photoContest.subscribe(this) != null) {
+            Output.write(notifyData, MessageTemplate.REGISTERED);
+        } else {
+            Output.write(notifyData, MessageTemplate.CANNOT_REGISTER);
+        }
+    }
+
+    /**
+     * Remember participation in the contest
+     *
+     * @param newParticipant - participation in the contest
+     */
+    void join(Participant newParticipant) {
+        participants.put(newParticipant.photoContest, newParticipant);
+        participant = newParticipant;
+    }
+
+    /**
+     * Getter for participation in the contest
+     *
+     * @param photoContest - concrete photo contest
+     * @return participant, or null if photographer did not register for the contest
+     */
+    public Participant getParticipant(PhotoContest photoContest) {
+        return participants.get(photoContest);
+    }
+
+    /**
+     * Forget participation in the contest, which is archived
+     *
+     * @param photoContest - concrete photo contest
+     */
+    void leave(PhotoContest photoContest) {
+        participants.remove(photoContest);
+    }
+
+    /**
+     * Sending a photo to the last contest, where photographer registered
+     * Only Registered photographers can do it
+     * Can be done only by programmer-users
+     *
+     * @param photo - name of the photo
+     * @return true, if photo is taken
+     */
+    public boolean sendPhoto(String photo) {
+        return sendPhoto(participant, photo);
+    }
+
+    /**
+     * Sending a photo to the contest
+     * Only Registered photographers can do it
+     * Can be done only by programmer-users
+     *
+     * @param photoContest - concrete photo contest
+     * @param photo - name of the photo
+     * @return true, if photo is taken
+     */
+    public boolean sendPhoto(PhotoContest photoContest, String photo) {
+        return sendPhoto(participants.get(photoContest), photo);
+    }
+
+    /**
+     * Sending contents of a photo to the contest
+     * Photo is kept in the photo store of the contest and is sent as reference to its contents
+     *
+     * @param photoContest - concrete photo contest
+     * @param content - bytes of the image
+     * @return true, if photo is taken
+     */
+    public boolean sendPhoto(PhotoContest photoContest, byte[] content) {
+        Participant participant = participants.get(photoContest);
+        PhotoStore photoStore = photoContest.photoStore;
+        if (photoStore == null || participant == null || participant.getState() != PhotographerState.REGISTRATION) {
+            Output.write(notifyData, MessageTemplate.CANNOT_SUBMIT);
+            return false;
+        }
+        String reference;
+        try {
+            reference = photoStore.put(content);
+        } catch (IOException exc) {
+            Output.write(notifyData, MessageTemplate.CANNOT_SUBMIT);
+            return false;
+        }
+        return sendPhoto(participant, reference);
+    }
+
+    private boolean sendPhoto(Participant participant, String photo) {
+        //Photographer should be registered
+        if (participant != null && participant.sendPhoto(photo)) {
+            Output.write(notifyData, MessageTemplate.PHOTO_SENT, photo);
+            return true;
+        }
+        Output.write(notifyData, MessageTemplate.CANNOT_SUBMIT);
+        return false;
+    }
+
+    /**
+     * Sending a photo to the last contest through the console
+     * Only Registered photographers can do it
+     */
+    public void sendPhoto() {
+        Participant participant = this.participant;
+        //Photographer should be registered
+        if (participant != null && participant.getState() == PhotographerState.REGISTRATION) {
+            Output.println("Please, " + name + ", enter name of the photo:");
+            Output.flush();
+            if (participant.sendPhoto(Input.nextLine())) {
+                Output.write(notifyData, MessageTemplate.PHOTO_SENT_FROM_CONSOLE);
+            } else {
+                Output.write(notifyData, MessageTemplate.CANNOT_SUBMIT);
+            }
+        } else {
+            Output.write(notifyData, MessageTemplate.CANNOT_SUBMIT);
+        }
+
+    }
+
+    /**
+     * Getter for state in the last contest, where photographer registered
+     *
+     * @return state of photographer
+     */
+    public PhotographerState getState() {
+        Participant participant = this.participant;
+        return participant == null ? PhotographerState.INITIAL : participant.getState();
+    }
+}
+
+/**
+ * Class represents a photographer taking part in the concrete contest
+ */
+class Participant implements Subscriber<ContestState> {
+    final Photographer photographer;
+    final PhotoContest photoContest;
+    //Row in the table of the contest, where state, photo, verdict and rate are kept
+    private final int row;
+    //Place in the set of participants with the same state, -1 if not subscribed
+    int slot = -1;
+
+    /**
+     * @param photographer - concrete photographer
+     * @param photoContest - contest, where photographer registered
+     */
+    Participant(Photographer photographer, PhotoContest photoContest) {
+        this.photographer = photographer;
+        this.photoContest = photoContest;
+        row = photoContest.getParticipantTable().add(this);
+    }
+
+    /**
+     * Take the photo to the contest
+     * Check of state and transition are one step under the lock of the contest,
+     * so of photos sent at the same time only one is taken
+     *
+     * @param photo - name of the photo
+     * @return true, if photo is taken; false, if participant is not in Registration state
+     */
+    boolean sendPhoto(String photo) {
+        synchronized (photoContest) {
+            if (getState() != PhotographerState.REGISTRATION) {
+                return false;
+            }
+            //Photo, whose record cannot be journaled, is not taken
+            ContestJournal journal = photoContest.journal;
+            if (journal != null) {
+                journal.photoSent(this, photo);
+            }
+            setPhoto(photo);
+            photoContest.submitPhoto(this);
+            //Transition to Application state
+            accepted();
+        }
+        return true;
+    }
+
+    public PhotographerState getState() {
+        return photoContest.getParticipantTable().getState(row);
+    }
+
+    /**
+     * Change state and move participant to the set of new state in the contest
+     * Old state is read, participant is moved and new state is written under the lock of the contest,
+     * so concurrent transitions cannot leave participant in the set of another state.
+     *
+     * @param state - new state
+     */
+    public void setState(PhotographerState state) {
+        synchronized (photoContest) {
+            PhotographerState old = getState();
+            if (state != old) {
+                photoContest.moveParticipant(this, old, state);
+                photoContest.getParticipantTable().setState(row, state);
+                ContestJournal journal = photoContest.journal;
+                if (journal != null) {
+                    journal.stateChanged(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Failed transition
+     */
+    public void failed() {
+        synchronized (photoContest) {
+            setState(getState().failed());
+        }
+    }
+
+    /**
+     * Accepted transition
+     */
+    public void accepted() {
+        synchronized (photoContest) {
+            setState(getState().accepted());
+        }
+    }
+
+    public String getPhoto() {
+        return photoContest.getParticipantTable().getPhoto(row);
+    }
+
+    void setPhoto(String photo) {
+        photoContest.getParticipantTable().setPhoto(row, photo);
+    }
+
+    /**
+     * @return true, if photo went over review
+     */
+    public boolean isAccepted() {
+        return photoContest.getParticipantTable().isAccepted(row);
+    }
+
+    void setAccepted(boolean accepted) {
+        photoContest.getParticipantTable().setAccepted(row, accepted);
+    }
+
+    public int getRate() {
+        return photoContest.getParticipantTable().getRate(row);
+    }
+
+    void setRate(int rate) {
+        photoContest.getParticipantTable().setRate(row, rate);
+    }
+
+
+    /**
+     * Send notification according to conditions
+     *
+     * @param contestState - concrete contest
+     */
+    @Override
+    public void notification(ContestState contestState) {
+        List<Notice> notices = new ArrayList<>(1);
+        notification(contestState, notices);
+        photoContest.send(notices);
+    }
+
+    /**
+     * Change state according to conditions and collect notice about it
+     *
+     * @param contestState - concrete contest
+     * @param notices - list for the notice of photographer
+     */
+    void notification(ContestState contestState, List<Notice> notices) {
+        long start = System.nanoTime();
+        notification(contestState, getState(), notices);
+        ContestMetrics.shared().record(ContestMetrics.Phase.PARTICIPANT_NOTIFICATION, start);
+    }
+
+    private void notification(ContestState contestState, PhotographerState state, List<Notice> notices) {
+        String notifyData = photographer.notifyData;
+        //In case of Plagiarism checking
+        if (contestState == ContestState.CHOICE) {
+            //Sent a photo
+            if (getPhoto() == null) {
+                failed();
+                sendNotice(notices, notifyData, MessageTemplate.LATE_SUBMISSION, null);
+            }
+            //Did not send a photo
+            else {
+                sendNotice(notices, notifyData, MessageTemplate.ON_REVIEW, null);
+            }
+        }
+        //In case of Voting
+        else if (contestState == ContestState.VOTE) {
+            //Only photographers who sent a photo
+            if (state == PhotographerState.APPLICATION) {
+                //Photo was accepted
+                if (isAccepted()) {
+                    accepted();
+                    sendNotice(notices, notifyData, MessageTemplate.ACCEPTED_FOR_VOTING, null);
+                }
+                //Photo was declined
+                else {
+                    failed();
+                    sendNotice(notices, notifyData, MessageTemplate.FAILED_REVIEW, null);
+                }
+            }
+        }
+        //In case of Awarding
+        else if (contestState == ContestState.AWARDING) {
+            //Photographer in Promoted state
+            if (state == PhotographerState.PROMOTED) {
+                sendNotice(notices, notifyData, MessageTemplate.RATE, String.valueOf(getRate()));
+            }
+            //Photographer in Winner state
+            else if (state == PhotographerState.WINNER) {
+                sendNotice(notices, photographer.name, MessageTemplate.WINNER, null);
+                accepted();
+            }
+            //Photographer in Failure state
+            else if (state == PhotographerState.FAILURE) {
+                accepted();
+            }
+        }
+    }
+
+    /**
+     * Collect message of the contest notification
+     *
+     * @param notices - collected notices
+     * @param prefix - text before the template
+     * @param template - message of the event
+     * @param argument - variable part of the message, null if template has none
+     */
+    private void sendNotice(List<Notice> notices, String prefix, MessageTemplate template, String argument) {
+        notices.add(new Notice(photographer, prefix, template, argument));
+    }
+}
+
+/**
+ * Result of bulk import: created photographers and rows, which were skipped
+ */
+class ImportResult {
+    final ArrayList<Photographer> photographers = new ArrayList<>();
+    final ArrayList<RowError> errors = new ArrayList<>();
+
+    /**
+     * Mistake in the row of imported file
+     */
+    static final class RowError {
+        final long row;
+        final String message;
+
+        RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + row + ": " + message;
+        }
+    }
+}
+
+/**
+ * Bulk import of photographers from CSV file with columns name, email, phone
+ * File is read in batches, rows of every batch are checked in parallel and photographers are created
+ * without any output. Rows with mistakes are skipped and reported.
+ */
+class PhotographerImport {
+    private static final int BATCH = 8192;
+
+    private PhotographerImport() {
+    }
+
+    /**
+     * @param path - path to CSV file
+     * @return imported photographers and errors
+     * @throws IOException - if file cannot be read
+     */
+    static ImportResult importCsv(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return importCsv(reader);
+        }
+    }
+
+    /**
+     * @param reader - source of CSV rows
+     * @return imported photographers and errors
+     * @throws IOException - if rows cannot be read
+     */
+    static ImportResult importCsv(BufferedReader reader) throws IOException {
+        ImportResult result = new ImportResult();
+        ArrayList<String> lines = new ArrayList<>(BATCH);
+        long row = 0;
+        long firstRow = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            //Header is optional
+            if (row == 1 && line.trim().equalsIgnoreCase("name,email,phone")) {
+                firstRow = 2;
+                continue;
+            }
+            lines.add(line);
+            if (lines.size() == BATCH) {
+                importBatch(lines, firstRow, result);
+                firstRow += lines.size();
+                lines.clear();
+            }
+        }
+        importBatch(lines, firstRow, result);
+        return result;
+    }
+
+    /**
+     * Check rows of batch in parallel, then add results in order of rows
+     *
+     * @param lines - rows of batch
+     * @param firstRow - number of the first row in the file
+     * @param result - result of import
+     */
+    private static void importBatch(List<String> lines, long firstRow, ImportResult result) {
+        Object[] rows = new Object[lines.size()];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> rows[i] = importRow(lines.get(i), firstRow + i));
+        for (Object row : rows) {
+            if (row instanceof Photographer) {
+                result.photographers.add((Photographer) row);
+            } else if (row instanceof ImportResult.RowError) {
+                result.errors.add((ImportResult.RowError) row);
+            }
+        }
+    }
+
+    /**
+     * @param line - row of CSV file
+     * @param row - number of row
+     * @return photographer, error of the row, or null for empty row
+     */
+    private static Object importRow(String line, long row) {
+        if (line.isBlank()) {
+            return null;
+        }
+        String[] fields = split(line);
+        if (fields == null) {
+            return new ImportResult.RowError(row, "Row should have name, email and phone number");
+        }
+        String name = fields[0].trim();
+        String mail = fields[1].trim();
+        String phone = fields[2].trim();
+        if (name.isEmpty()) {
+            return new ImportResult.RowError(row, "Name is empty");
+        }
+        if (mail.isEmpty() && phone.isEmpty()) {
+            return new ImportResult.RowError(row, "At least one contact is needed");
+        }
+        if (!mail.isEmpty()) {
+            ContactError error = ContactValidator.checkEmail(mail);
+            if (error != null) {
+                return new ImportResult.RowError(row, error.message);
+            }
+        }
+        if (!phone.isEmpty()) {
+            ContactError error = ContactValidator.checkPhoneNumber(phone);
+            if (error != null) {
+                return new ImportResult.RowError(row, error.message);
+            }
+        }
+        return Photographer.imported(name, mail.isEmpty() ? null : mail,
+                phone.isEmpty() ? null : ContactValidator.phoneDigits(phone));
+    }
+
+    /**
+     * Split CSV row into three fields, field can be in double quotes
+     *
+     * @param line - row of CSV file
+     * @return fields, or null if there are not three fields
+     */
+    private static String[] split(String line) {
+        String[] fields = new String[3];
+        int field = 0;
+        int i = 0;
+        while (true) {
+            if (field == fields.length) {
+                return null;
+            }
+            StringBuilder value = new StringBuilder();
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (i < line.length()) {
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            value.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                }
+            }
+            int comma = line.indexOf(',', i);
+            int end = comma < 0 ? line.length() : comma;
+            value.append(line, i, end);
+            fields[field++] = value.toString();
+            if (comma < 0) {
+                return field == fields.length ? fields : null;
+            }
+            i = comma + 1;
+        }
+    }
+}
+
+/**
+ * Registry of all contests, which are run at the same time
+ * Contests are spread over shards by id, so lookups and additions of different contests do not meet
+ */
+class ContestRegistry {
+    private static final int SHARDS = 64;
+    private final ArrayList<ConcurrentHashMap<Long, PhotoContest>> shards = new ArrayList<>(SHARDS);
+
+    ContestRegistry() {
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    private ConcurrentHashMap<Long, PhotoContest> shard(long id) {
+        return shards.get((int) (id & (SHARDS - 1)));
+    }
+
+    /**
+     * Add contest to the registry
+     *
+     * @param photoContest - new contest
+     */
+    public void add(PhotoContest photoContest) {
+        shard(photoContest.id).put(photoContest.id, photoContest);
+    }
+
+    /**
+     * Getter for contest by id
+     *
+     * @param id - id of the contest
+     * @return contest, or null if there is no such contest
+     */
+    public PhotoContest get(long id) {
+        return shard(id).get(id);
+    }
+
+    /**
+     * Remove contest from the registry
+     *
+     * @param id - id of the contest
+     * @return removed contest, or null if there is no such contest
+     */
+    public PhotoContest remove(long id) {
+        return shard(id).remove(id);
+    }
+
+    /**
+     * Number of contests in the registry
+     *
+     * @return number of contests
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<Long, PhotoContest> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Do action for every contest in the registry
+     *
+     * @param action - action with contest
+     */
+    public void forEach(Consumer<PhotoContest> action) {
+        for (ConcurrentHashMap<Long, PhotoContest> shard : shards) {
+            shard.values().forEach(action);
+        }
+    }
+}
+
+/**
+ * Organize contests, check for plagiarism, choose winner by console voting
+ * Every operation can be done for the concrete contest by its id;
+ * operations without id are done for the last created contest
+ */
+class Admin {
+    private final ContestRegistry contestRegistry;
+    private final ContestJournal journal;
+    private final ContestArchive archive;
+    private final PhotoStore photoStore;
+    private final DerivativeGenerator derivativeGenerator;
+    private final ParticipantHistory history;
+    private volatile PhotoContest photoContest;
+
+    /**
+     * Collaborators of admin, all of them except the registry are optional
+     */
+    static class Builder {
+        private final ContestRegistry contestRegistry;
+        private ContestJournal journal;
+        private ContestArchive archive;
+        private PhotoStore photoStore;
+        private DerivativeGenerator derivativeGenerator;
+        private ParticipantHistory history;
+
+        /**
+         * @param contestRegistry - registry, where created contests are kept
+         */
+        Builder(ContestRegistry contestRegistry) {
+            this.contestRegistry = contestRegistry;
+        }
+
+        /**
+         * @param journal - journal for events of created contests, null if contests are not journaled
+         * @return this builder
+         */
+        Builder journal(ContestJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param archive - archive for closed contests, null if closed contests stay in the registry
+         * @return this builder
+         */
+        Builder archive(ContestArchive archive) {
+            this.archive = archive;
+            return this;
+        }
+
+        /**
+         * @param photoStore - store for contents of photos, null if photos are sent by name only
+         * @return this builder
+         */
+        Builder photoStore(PhotoStore photoStore) {
+            this.photoStore = photoStore;
+            return this;
+        }
+
+        /**
+         * @param derivativeGenerator - generator of thumbnails, which starts when voting opens, null if there is none
+         * @return this builder
+         */
+        Builder derivativeGenerator(DerivativeGenerator derivativeGenerator) {
+            this.derivativeGenerator = derivativeGenerator;
+            return this;
+        }
+
+        /**
+         * @param history - history of results of closed contests, null if results are not kept
+         * @return this builder
+         */
+        Builder history(ParticipantHistory history) {
+            this.history = history;
+            return this;
+        }
+
+        Admin build() {
+            return new Admin(this);
+        }
+    }
+
+    /**
+     * Admin with own registry and without other collaborators
+     */
+    Admin() {
+        this(new Builder(new ContestRegistry()));
+    }
+
+    private Admin(Builder builder) {
+        contestRegistry = builder.contestRegistry;
+        journal = builder.journal;
+        archive = builder.archive;
+        photoStore = builder.photoStore;
+        derivativeGenerator = builder.derivativeGenerator;
+        history = builder.history;
+    }
+
+    /**
+     * Creates new contest
+     *
+     * @param topic - String topic of the contest
+     * @return new contest
+     */
+    PhotoContest createNewContest(String topic) {
+        return createNewContest(topic, new DuplicateIndex());
+    }
+
+    /**
+     * Creates new contest with concrete plagiarism checking
+     * Previous contests go on, they can be found by id
+     *
+     * @param topic - String topic of the contest
+     * @param plagiarismChecker - checker, for example PerceptualDuplicateIndex to compare images
+     * @return new contest
+     */
+    PhotoContest createNewContest(String topic, PlagiarismChecker plagiarismChecker) {
+        Output.write("", MessageTemplate.CONTEST_OPENED, topic);
+        //Contest of this call, the last created one can be changed meanwhile by another thread
+        PhotoContest photoContest = new PhotoContest(topic, plagiarismChecker);
+        photoContest.photoStore = photoStore;
+        photoContest.derivativeGenerator = derivativeGenerator;
+        if (journal != null) {
+            journal.contestCreated(photoContest);
+            photoContest.journal = journal;
+        }
+        contestRegistry.add(photoContest);
+        this.photoContest = photoContest;
+        return photoContest;
+    }
+
+    /**
+     * Getter for contest by id
+     *
+     * @param contestId - id of the contest
+     * @return contest, or null if there is no such contest
+     */
+    public PhotoContest getContest(long contestId) {
+        return contestRegistry.get(contestId);
+    }
+
+    /**
+     * Getter for closed contest from the archive
+     *
+     * @param contestId - id of the contest
+     * @return archived contest, or null if there is no such contest in the archive
+     */
+    public ArchivedContest getArchivedContest(long contestId) {
+        return archive == null ? null : archive.get(contestId);
+    }
+
+    public ContestRegistry getContestRegistry() {
+        return contestRegistry;
+    }
+
+    public ParticipantHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Find contest for the operation
+     *
+     * @param contestId - id of the contest
+     * @return contest, or null if there is no such contest
+     */
+    private PhotoContest findContest(long contestId) {
+        PhotoContest contest = contestRegistry.get(contestId);
+        if (contest == null) {
+            Output.write("", MessageTemplate.NO_CONTEST, String.valueOf(contestId));
+        }
+        return contest;
+    }
+
+    /**
+     * Close session for getting photos to the last contest
+     */
+    public void closeApplicationSession() {
+        closeApplicationSession(photoContest);
+    }
+
+    /**
+     * Close session for getting photos to the contest
+     *
+     * @param contestId - id of the contest
+     */
+    public void closeApplicationSession(long contestId) {
+        closeApplicationSession(findContest(contestId));
+    }
+
+    private void closeApplicationSession(PhotoContest photoContest) {
+        if (photoContest == null) {
+            return;
+        }
+        List<Notice> notices = Collections.emptyList();
+        synchronized (photoContest) {
+            if (photoContest.contestState == ContestState.APPLICATION) {
+                long start = System.nanoTime();
+                Output.write("", MessageTemplate.APPLICATION_CLOSED, photoContest.topic);
+                //Next stage of contest
+                photoContest.deadline();
+                //Notify
+                notices = photoContest.notification();
+                ContestMetrics.shared().record(ContestMetrics.Phase.CLOSE_APPLICATION, start);
+            }
+        }
+        photoContest.send(notices);
+    }
+
+    /**
+     * Plagiarism checking session of the last contest
+     */
+    public void peerReviewSession() {
+        peerReviewSession(photoContest);
+    }
+
+    /**
+     * Plagiarism checking session
+     *
+     * @param contestId - id of the contest
+     */
+    public void peerReviewSession(long contestId) {
+        peerReviewSession(findContest(contestId));
+    }
+
+    private void peerReviewSession(PhotoContest photoContest) {
+        if (photoContest == null) {
+            return;
+        }
+        List<Notice> notices;
+        synchronized (photoContest) {
+            //Review is done once, after application session
+            if (photoContest.contestState != ContestState.CHOICE) {
+                return;
+            }
+            long start = System.nanoTime();
+            photoContest.getParticipants(PhotographerState.APPLICATION).forEach(participant -> participant.setAccepted(true));
+            //Photographers who went over plagiarism
+            plagiarismChecker(photoContest);
+            ContestJournal journal = photoContest.journal;
+            if (journal != null) {
+                photoContest.getParticipants(PhotographerState.APPLICATION).forEach(journal::verdict);
+            }
+            //Next stage of contest
+            photoContest.deadline();
+            //Notify
+            notices = photoContest.notification();
+            //Promoted photos can get likes now
+            photoContest.openVoting();
+            ContestMetrics.shared().record(ContestMetrics.Phase.PEER_REVIEW, start);
+        }
+        photoContest.send(notices);
+    }
+
+    /**
+     * Declining every photographer from groups of the same photos
+     * Groups are collected by plagiarism checker of the contest while photos are sent
+     *
+     * @param photoContest - concrete contest
+     */
+    private void plagiarismChecker(PhotoContest photoContest) {
+        for (Collection<Participant> group : photoContest.getPlagiarismChecker().getDuplicateGroups()) {
+            for (Participant participant : group) {
+                participant.setAccepted(false);
+            }
+        }
+    }
+
+    /**
+     * Counting likes for each photographer of the last contest
+     */
+    public void votingSession() {
+        votingSession(photoContest);
+    }
+
+    /**
+     * Counting likes for each photographer
+     *
+     * @param contestId - id of the contest
+     */
+    public void votingSession(long contestId) {
+        votingSession(findContest(contestId));
+    }
+
+    /**
+     * Close live voting of the contest without console input
+     * Rates are taken from live likes only
+     *
+     * @param contestId - id of the contest
+     */
+    public void closeVotingSession(long contestId) {
+        votingSession(findContest(contestId), false);
+    }
+
+    private void votingSession(PhotoContest photoContest) {
+        votingSession(photoContest, true);
+    }
+
+    /**
+     * Counting live likes for each photographer
+     * If nobody liked photos live, number of votes is inputted for each photographer
+     *
+     * @param photoContest - concrete contest
+     * @param fromConsole - true, if votes can be inputted from console
+     */
+    private void votingSession(PhotoContest photoContest, boolean fromConsole) {
+        if (photoContest == null) {
+            return;
+        }
+        List<Notice> notices;
+        synchronized (photoContest) {
+            if (photoContest.contestState != ContestState.VOTE) {
+                return;
+            }
+            long start = System.nanoTime();
+            VoteTally voteTally = photoContest.getVoteTally();
+            Leaderboard leaderboard = voteTally.getLeaderboard();
+            //Every like, which returned true, is in counts read below
+            voteTally.seal();
+            boolean isLive = !fromConsole || voteTally.getTotal() > 0;
+            ParticipantSet promoted = photoContest.getParticipants(PhotographerState.PROMOTED);
+
+            if (!isLive && promoted.size() > 0) {
+                Output.write("", MessageTemplate.VOTING_OPENED);
+            }
+            promoted.forEach(participant -> {
+                //Set number for rate
+                int rate = isLive
+                        ? (int) Math.min(voteTally.getLikes(participant), Integer.MAX_VALUE)
+                        : setRating(participant);
+                participant.setRate(rate);
+                leaderboard.update(participant, () -> rate);
+                if (photoContest.journal != null) {
+                    photoContest.journal.rate(participant);
+                }
+            });
+            //The best rate is already known by the leaderboard
+            photoContest.winnerRate = (int) Math.max(0, Math.min(leaderboard.getTopRate(), Integer.MAX_VALUE));
+            if (photoContest.journal != null) {
+                photoContest.journal.winnerRate(photoContest);
+            }
+            //Next stage of contest
+            photoContest.deadline();
+            //Notify
+            notices = photoContest.notification();
+            ContestMetrics.shared().record(ContestMetrics.Phase.VOTING, start);
+        }
+        photoContest.send(notices);
+    }
+
+    /**
+     * Inputting rating number
+     *
+     * @param participant - concrete photographer
+     * @return number of rate
+     */
+    private int setRating(Participant participant) {
+        Output.println("How many likes does " + participant.getPhoto() + " have?");
+        int rate = 0;
+        Output.flush();
+        try {
+            rate = Integer.parseInt(Input.nextLine());
+        } catch (NumberFormatException exc) {
+            Output.println("Accepted only integers. Rating for " + participant.getPhoto() + " is 0.");
+        }
+        return rate;
+    }
+
+    /**
+     * Winner choosing procedure of the last contest
+     */
+    public void chooseWinner() {
+        chooseWinner(photoContest);
+    }
+
+    /**
+     * Winner choosing procedure
+     *
+     * @param contestId - id of the contest
+     */
+    public void chooseWinner(long contestId) {
+        chooseWinner(findContest(contestId));
+    }
+
+    private void chooseWinner(PhotoContest photoContest) {
+        if (photoContest == null) {
+            return;
+        }
+        List<Notice> notices = Collections.emptyList();
+        synchronized (photoContest) {
+            if (photoContest.contestState != ContestState.AWARDING) {
+                return;
+            }
+            long start = System.nanoTime();
+            //Should have more than 0 votes
+            if (photoContest.winnerRate != 0) {
+                //Next state for any photographer with max number of likes, they are read from the leaderboard
+                for (Participant participant : photoContest.getVoteTally().getLeaderboard().getLeaders()) {
+                    participant.accepted();
+                }
+                //Fail otherwise
+                photoContest.getParticipants(PhotographerState.PROMOTED).forEach(Participant::failed);
+                //Notification for all, who participated at contest
+                notices = photoContest.notification();
+            } else {
+                Output.write("", MessageTemplate.NO_WINNER);
+            }
+            //Results are kept before states are back to Initial
+            if (history != null) {
+                try {
+                    history.record(photoContest);
+                } catch (IOException exc) {
+                    Output.println("History of contest '" + photoContest.topic + "' is not written: " + exc.getMessage());
+                }
+            }
+            //Next stage of contest
+            photoContest.deadline();
+            if (archive != null) {
+                archive(photoContest);
+            }
+            ContestMetrics.shared().record(ContestMetrics.Phase.CHOOSE_WINNER, start);
+        }
+        photoContest.send(notices);
+    }
+
+    /**
+     * Write snapshot of closed contest and release its objects
+     *
+     * @param photoContest - closed contest
+     */
+    private void archive(PhotoContest photoContest) {
+        try {
+            archive.store(photoContest);
+        } catch (IOException exc) {
+            //Contest stays in memory
+            Output.println("Contest '" + photoContest.topic + "' is not archived: " + exc.getMessage());
+            return;
+        }
+        if (photoContest.journal != null) {
+            photoContest.journal.archived(photoContest);
+        }
+        contestRegistry.remove(photoContest.id);
+        for (Subscriber<ContestState> subscriber : photoContest.getPhotographersList()) {
+            ((Participant) subscriber).photographer.leave(photoContest);
+            ContestMetrics.shared().moved(((Participant) subscriber).getState(), null);
+        }
+        if (this.photoContest == photoContest) {
+            this.photoContest = null;
+        }
+    }
+}
+
+/**
+ * Write-ahead journal of contest events in memory-mapped segment files
+ * Every record is [length][CRC32][type][data] followed by zero length, which marks the end of journal.
+ * Records are put into mapped memory and forced to disk by committer thread in groups,
+ * so one disk write covers all events of the commit interval; sync() waits for it.
+ * Likes are collected in striped buffers and written as one record per full buffer or commit,
+ * so live voting does not take the lock of the journal for every like; committed() is completed by the commit of them.
+ * Segment, where every contest with records is archived, is deleted, so recovery does not read archived history.
+ * On start the journal is replayed and contests are rebuilt without notifications.
+ */
+class ContestJournal implements AutoCloseable {
+    private static final byte CONTEST = 1;
+    private static final byte PHOTOGRAPHER = 2;
+    private static final byte SUBSCRIBED = 3;
+    private static final byte PHOTO = 4;
+    private static final byte STATE = 5;
+    private static final byte VERDICT = 6;
+    private static final byte RATE = 7;
+    private static final byte WINNER_RATE = 8;
+    private static final byte CONTEST_STATE = 9;
+    private static final byte LIKES = 10;
+    private static final byte ARCHIVED = 11;
+    //Plagiarism checkers of contests
+    private static final byte EXACT_CHECKER = 0;
+    private static final byte PERCEPTUAL_CHECKER = 1;
+    //Length and checksum of record
+    private static final int HEADER = 8;
+    //Buffers of likes, thread uses the buffer of its stripe
+    private static final int LIKE_STRIPES = 16;
+    //Contest, photographer and voter of one like in LIKES record
+    private static final int LIKE_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * Likes, which are not written yet
+     * Like takes only the lock of its buffer; full buffer is written as one record
+     */
+    private static final class LikeBuffer {
+        final long[] contests;
+        final int[] photographers;
+        final int[] voters;
+        int size;
+
+        LikeBuffer(int capacity) {
+            contests = new long[capacity];
+            photographers = new int[capacity];
+            voters = new int[capacity];
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer record = ByteBuffer.allocate(256);
+    //Photographers, which are already written to the journal
+    private final Set<Integer> photographers = ConcurrentHashMap.newKeySet();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    //Positions in bytes from the beginning of the journal
+    private long written;
+    private long forced;
+    //Completed by the group commit, which starts next, guarded by commitLock
+    private CompletableFuture<Boolean> nextCommit = new CompletableFuture<>();
+    private final Object commitLock = new Object();
+    //Contests by segments with their records, segment is needed while one of them is not archived
+    private final TreeMap<Integer, HashSet<Long>> segmentContests = new TreeMap<>();
+    //Segment with ARCHIVED record by id of archived contest, which still has records in other segments
+    private final HashMap<Long, Integer> tombstones = new HashMap<>();
+    //Segment with the record of photographer by id of photographer
+    private final HashMap<Integer, Integer> photographerSegments = new HashMap<>();
+    //Contest of the record in the buffer, -1 if record is not about one contest
+    private long recordContest = -1;
+    private final Thread committer;
+    private final LikeBuffer[] likeBuffers = new LikeBuffer[LIKE_STRIPES];
+    private volatile boolean closed;
+
+    /**
+     * @param directory - directory of segment files
+     * @param segmentSize - size of one segment file in bytes
+     * @param commitInterval - max time in milliseconds between writing of event and forcing it to disk
+     */
+    private ContestJournal(Path directory, int segmentSize, long commitInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        //Record of full buffer fits into one segment with the end mark
+        int likeBatch = Math.max(1, Math.min(128, (segmentSize - HEADER - 2 * Integer.BYTES - 1) / LIKE_BYTES));
+        for (int i = 0; i < LIKE_STRIPES; i++) {
+            likeBuffers[i] = new LikeBuffer(likeBatch);
+        }
+        committer = new Thread(() -> {
+            while (!closed) {
+                try {
+                    Thread.sleep(commitInterval);
+                } catch (InterruptedException exc) {
+                    return;
+                }
+                commit();
+            }
+        }, "journal-committer");
+        committer.setDaemon(true);
+    }
+
+    /**
+     * Open journal in the directory with 64 MB segments and 5 ms group commit,
+     * contests from the journal are recovered into the registry
+     *
+     * @param directory - directory of segment files
+     * @param contestRegistry - registry for recovered contests
+     * @return journal, which continues after the last valid record
+     * @throws IOException - if journal cannot be read or written
+     */
+    static ContestJournal open(Path directory, ContestRegistry contestRegistry) throws IOException {
+        return open(directory, contestRegistry, 64 << 20, 5);
+    }
+
+    /**
+     * @param directory - directory of segment files
+     * @param contestRegistry - registry for recovered contests
+     * @param segmentSize - size of one segment file in bytes
+     * @param commitInterval - max time in milliseconds between writing of event and forcing it to disk
+     * @return journal, which continues after the last valid record
+     * @throws IOException - if journal cannot be read or written
+     */
+    static ContestJournal open(Path directory, ContestRegistry contestRegistry, int segmentSize, long commitInterval) throws IOException {
+        return open(directory, contestRegistry, null, null, segmentSize, commitInterval);
+    }
+
+    /**
+     * Recovered contests get the same collaborators as contests created by Admin,
+     * so photos sent as references are read and resized after recovery as before it
+     *
+     * @param directory - directory of segment files
+     * @param contestRegistry - registry for recovered contests
+     * @param photoStore - store of photos sent as references, null if photos are sent by name only
+     * @param derivativeGenerator - generator of thumbnails, null if there is none
+     * @param segmentSize - size of one segment file in bytes
+     * @param commitInterval - max time in milliseconds between writing of event and forcing it to disk
+     * @return journal, which continues after the last valid record
+     * @throws IOException - if journal cannot be read or written
+     */
+    static ContestJournal open(Path directory, ContestRegistry contestRegistry, PhotoStore photoStore,
+                               DerivativeGenerator derivativeGenerator, int segmentSize, long commitInterval) throws IOException {
+        Files.createDirectories(directory);
+        ContestJournal journal = new ContestJournal(directory, segmentSize, commitInterval);
+        journal.recover(contestRegistry, photoStore, derivativeGenerator);
+        journal.committer.start();
+        return journal;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("journal-%05d.log", index));
+    }
+
+    private void map(int index) throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+        segmentIndex = index;
+        channel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentContests.computeIfAbsent(index, key -> new HashSet<>());
+    }
+
+    /**
+     * New contest with its topic and plagiarism checker, so recovered contest checks photos in the same way
+     *
+     * @param photoContest - created contest
+     */
+    public void contestCreated(PhotoContest photoContest) {
+        synchronized (this) {
+            start(CONTEST, photoContest.id);
+            putString(photoContest.topic);
+            reserve(1 + Integer.BYTES);
+            if (photoContest.getPlagiarismChecker() instanceof PerceptualDuplicateIndex) {
+                record.put(PERCEPTUAL_CHECKER).putInt(((PerceptualDuplicateIndex) photoContest.getPlagiarismChecker()).getThreshold());
+            } else {
+                record.put(EXACT_CHECKER).putInt(0);
+            }
+            append();
+        }
+    }
+
+    public void subscribed(PhotoContest photoContest, Photographer photographer) {
+        synchronized (this) {
+            if (!photographers.contains(photographer.id)) {
+                start(PHOTOGRAPHER).putInt(photographer.id);
+                putString(photographer.name);
+                putString(photographer.email);
+                putString(photographer.phoneNumber);
+                append();
+                photographers.add(photographer.id);
+                photographerSegments.put(photographer.id, segmentIndex);
+            }
+            start(SUBSCRIBED, photoContest.id).putInt(photographer.id);
+            append();
+            //Segment with the photographer is needed, while the contest is not archived
+            segmentContests.get(photographerSegments.get(photographer.id)).add(photoContest.id);
+        }
+    }
+
+    /**
+     * Photo of participant, written before it is taken by the contest
+     *
+     * @param participant - participant, who sends the photo
+     * @param photo - name of the photo or reference to the photo store
+     */
+    public void photoSent(Participant participant, String photo) {
+        synchronized (this) {
+            start(PHOTO, participant.photoContest.id).putInt(participant.photographer.id);
+            putString(photo);
+            append();
+        }
+    }
+
+    public void stateChanged(Participant participant) {
+        synchronized (this) {
+            start(STATE, participant.photoContest.id).putInt(participant.photographer.id)
+                    .put((byte) participant.getState().ordinal());
+            append();
+        }
+    }
+
+    public void verdict(Participant participant) {
+        synchronized (this) {
+            start(VERDICT, participant.photoContest.id).putInt(participant.photographer.id)
+                    .put((byte) (participant.isAccepted() ? 1 : 0));
+            append();
+        }
+    }
+
+    /**
+     * Buffer the like, it is written with other likes of the buffer when buffer is full or on commit
+     * Like is on disk, when future of committed() called after it is completed
+     *
+     * @param participant - photographer whose photo is liked
+     * @param voter - id of voter
+     */
+    public void like(Participant participant, int voter) {
+        LikeBuffer buffer = likeBuffers[(int) (Thread.currentThread().getId() & (LIKE_STRIPES - 1))];
+        synchronized (buffer) {
+            buffer.contests[buffer.size] = participant.photoContest.id;
+            buffer.photographers[buffer.size] = participant.photographer.id;
+            buffer.voters[buffer.size] = voter;
+            if (++buffer.size == buffer.contests.length) {
+                writeLikes(buffer);
+            }
+        }
+    }
+
+    /**
+     * Write buffered likes as one record, lock of the buffer is held by caller
+     *
+     * @param buffer - buffer of likes
+     */
+    private void writeLikes(LikeBuffer buffer) {
+        synchronized (this) {
+            int length = HEADER + 1 + Integer.BYTES + buffer.size * LIKE_BYTES;
+            if (record.capacity() < length) {
+                record = ByteBuffer.allocate(length);
+            }
+            start(LIKES).putInt(buffer.size);
+            for (int i = 0; i < buffer.size; i++) {
+                record.putLong(buffer.contests[i]).putInt(buffer.photographers[i]).putInt(buffer.voters[i]);
+            }
+            append();
+            for (int i = 0; i < buffer.size; i++) {
+                segmentContests.get(segmentIndex).add(buffer.contests[i]);
+            }
+        }
+        buffer.size = 0;
+    }
+
+    /**
+     * Write likes of all buffers
+     */
+    private void flushLikes() {
+        for (LikeBuffer buffer : likeBuffers) {
+            synchronized (buffer) {
+                if (buffer.size > 0) {
+                    writeLikes(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rate of participant after sealed voting, buffered likes are written before it
+     *
+     * @param participant - participant with final rate
+     */
+    public void rate(Participant participant) {
+        flushLikes();
+        synchronized (this) {
+            start(RATE, participant.photoContest.id).putInt(participant.photographer.id).putInt(participant.getRate());
+            append();
+        }
+    }
+
+    public void winnerRate(PhotoContest photoContest) {
+        synchronized (this) {
+            start(WINNER_RATE, photoContest.id).putInt(photoContest.winnerRate);
+            append();
+        }
+    }
+
+    /**
+     * New state of the contest, buffered likes are written before it
+     *
+     * @param photoContest - contest after transition
+     */
+    public void contestState(PhotoContest photoContest) {
+        flushLikes();
+        synchronized (this) {
+            start(CONTEST_STATE, photoContest.id).put((byte) photoContest.contestState.ordinal());
+            append();
+        }
+    }
+
+    /**
+     * Contest is in the archive, segments, which are not needed by other contests, are deleted
+     *
+     * @param photoContest - archived contest
+     */
+    public void archived(PhotoContest photoContest) {
+        int index;
+        synchronized (this) {
+            start(ARCHIVED, photoContest.id);
+            append();
+            index = segmentIndex;
+        }
+        sync();
+        synchronized (this) {
+            tombstones.put(photoContest.id, index);
+            retire();
+        }
+    }
+
+    /**
+     * Delete segments before the current one, where every contest is archived
+     * ARCHIVED record is needed, while other segments have records of its contest, so they are not replayed;
+     * such record is written again to the current segment before its segment is deleted.
+     * Photographers of deleted segments are written again, when they subscribe next time
+     */
+    private void retire() {
+        boolean retired = true;
+        while (retired) {
+            retired = false;
+            for (int index : new ArrayList<>(segmentContests.headMap(segmentIndex).keySet())) {
+                List<Long> carried = new ArrayList<>();
+                if (!isRetired(index, segmentContests.get(index), carried)) {
+                    continue;
+                }
+                for (long contestId : carried) {
+                    start(ARCHIVED, contestId);
+                    append();
+                    tombstones.put(contestId, segmentIndex);
+                }
+                if (!carried.isEmpty()) {
+                    segment.force();
+                }
+                try {
+                    Files.deleteIfExists(segmentPath(index));
+                } catch (IOException exc) {
+                    //Segment is tried again after the next archived contest
+                    continue;
+                }
+                segmentContests.remove(index);
+                retired = true;
+                for (Iterator<Map.Entry<Integer, Integer>> photographer = photographerSegments.entrySet().iterator(); photographer.hasNext(); ) {
+                    Map.Entry<Integer, Integer> segmentOfPhotographer = photographer.next();
+                    if (segmentOfPhotographer.getValue() == index) {
+                        photographers.remove(segmentOfPhotographer.getKey());
+                        photographer.remove();
+                    }
+                }
+            }
+        }
+        //Contests without records do not need their ARCHIVED records any more
+        tombstones.keySet().removeIf(contestId -> segmentContests.values().stream().noneMatch(contests -> contests.contains(contestId)));
+    }
+
+    /**
+     * @param index - number of the segment
+     * @param contests - contests with records in the segment
+     * @param carried - ids of contests, whose ARCHIVED records of the segment are still needed
+     * @return true, if all contests are archived
+     */
+    private boolean isRetired(int index, HashSet<Long> contests, List<Long> carried) {
+        for (long contestId : contests) {
+            Integer tombstone = tombstones.get(contestId);
+            if (tombstone == null) {
+                return false;
+            }
+            if (tombstone == index) {
+                for (Map.Entry<Integer, HashSet<Long>> other : segmentContests.entrySet()) {
+                    if (other.getKey() != index && other.getValue().contains(contestId)) {
+                        carried.add(contestId);
+                        break;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Begin new record in the reusable buffer
+     *
+     * @param type - type of event
+     * @return buffer for data of event
+     */
+    private ByteBuffer start(byte type) {
+        record.clear();
+        record.position(HEADER);
+        recordContest = -1;
+        return record.put(type);
+    }
+
+    /**
+     * Begin new record about the contest, segment of the record is kept until the contest is archived
+     *
+     * @param type - type of event
+     * @param contestId - id of the contest
+     * @return buffer for data of event after id of the contest
+     */
+    private ByteBuffer start(byte type, long contestId) {
+        start(type).putLong(contestId);
+        recordContest = contestId;
+        return record;
+    }
+
+    /**
+     * Put string as length and UTF-8 bytes, -1 for null
+     *
+     * @param value - string
+     */
+    private void putString(String value) {
+        if (value == null) {
+            record.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        reserve(bytes.length + Integer.BYTES);
+        record.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Grow the buffer of the record, so the bytes can be put after its position
+     *
+     * @param bytes - number of bytes
+     */
+    private void reserve(int bytes) {
+        if (record.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes + 64));
+            record.flip();
+            larger.put(record);
+            record = larger;
+        }
+    }
+
+    /**
+     * Copy record from the buffer to mapped segment, with checksum
+     *
+     * @throws IllegalArgumentException - if record with the end mark is longer than a segment, nothing is written then
+     */
+    private void append() {
+        int length = record.position();
+        if (length + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + length + " bytes does not fit into segment of "
+                    + segmentSize + " bytes");
+        }
+        crc.reset();
+        crc.update(record.array(), HEADER, length - HEADER);
+        record.putInt(0, length - HEADER).putInt(4, (int) crc.getValue());
+        try {
+            //Place for the record and the end mark
+            if (segment.position() + length + Integer.BYTES > segmentSize) {
+                written += segmentSize - segment.position();
+                map(segmentIndex + 1);
+            }
+            segment.put(record.array(), 0, length);
+            segment.putInt(segment.position(), 0);
+            written += length;
+            if (recordContest >= 0) {
+                segmentContests.get(segmentIndex).add(recordContest);
+            }
+        } catch (IOException exc) {
+            throw new IllegalStateException("Journal cannot be written", exc);
+        }
+    }
+
+    /**
+     * Force written records to disk and wake up waiting threads
+     */
+    private void commit() {
+        CompletableFuture<Boolean> done;
+        synchronized (commitLock) {
+            done = nextCommit;
+            nextCommit = new CompletableFuture<>();
+        }
+        flushLikes();
+        long position;
+        MappedByteBuffer current;
+        synchronized (this) {
+            position = written;
+            current = segment;
+        }
+        if (position > forcedPosition()) {
+            current.force();
+        }
+        synchronized (commitLock) {
+            forced = Math.max(forced, position);
+            commitLock.notifyAll();
+        }
+        done.complete(true);
+    }
+
+    /**
+     * Group commit, which starts after the call
+     * It writes buffers of likes, so every like buffered before the call is on disk, when the future is completed
+     *
+     * @return future of true, when the commit is done; of false, if journal is closed before it
+     */
+    public CompletableFuture<Boolean> committed() {
+        synchronized (commitLock) {
+            return closed ? CompletableFuture.completedFuture(false) : nextCommit;
+        }
+    }
+
+    /**
+     * Wait for the group commit, which starts after the call
+     *
+     * @return true, if the commit is done; false, if journal is closed before it or waiting is interrupted
+     */
+    public boolean awaitCommit() {
+        try {
+            return committed().get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException exc) {
+            return false;
+        }
+    }
+
+    private long forcedPosition() {
+        synchronized (commitLock) {
+            return forced;
+        }
+    }
+
+    /**
+     * Wait until all records written before are on disk
+     *
+     * @throws IllegalStateException - if journal is closed before the records are forced or waiting is interrupted
+     */
+    public void sync() {
+        flushLikes();
+        long position;
+        synchronized (this) {
+            position = written;
+        }
+        synchronized (commitLock) {
+            while (forced < position && !closed) {
+                try {
+                    commitLock.wait(100);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Waiting for journal is interrupted");
+                }
+            }
+            if (forced < position) {
+                throw new IllegalStateException("Journal is closed before records are on disk");
+            }
+        }
+    }
+
+    /**
+     * Replay all valid records of all segments and place writing after the last one
+     *
+     * @param contestRegistry - registry for recovered contests
+     * @param photoStore - store of photos sent as references, null if there is none
+     * @param derivativeGenerator - generator of thumbnails, null if there is none
+     * @throws IOException - if journal cannot be read
+     */
+    private synchronized void recover(ContestRegistry contestRegistry, PhotoStore photoStore,
+                                      DerivativeGenerator derivativeGenerator) throws IOException {
+        Replay replay = new Replay(contestRegistry, photoStore, derivativeGenerator);
+        //Deleted segments leave gaps, the journal is the rest of segments in order of numbers
+        TreeSet<Integer> indexes = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    indexes.add(Integer.parseInt(name.substring("journal-".length(), name.length() - ".log".length())));
+                } catch (NumberFormatException exc) {
+                    //Not a segment
+                }
+            }
+        }
+        if (indexes.isEmpty()) {
+            indexes.add(0);
+        }
+        for (int index : indexes) {
+            written = (long) index * segmentSize;
+            map(index);
+            if (!replay.read(segment, index)) {
+                break;
+            }
+        }
+        written += segment.position();
+        forced = written;
+        replay.finish();
+        //Segments of contests, which were archived just before a crash
+        retire();
+    }
+
+    /**
+     * Rebuilding of contests from records
+     */
+    private final class Replay {
+        private final ContestRegistry contestRegistry;
+        private final PhotoStore photoStore;
+        private final DerivativeGenerator derivativeGenerator;
+        private final HashMap<Long, PhotoContest> contests = new HashMap<>();
+        private final HashMap<Integer, Photographer> photographersById = new HashMap<>();
+        //Likes are summed and counted once at the end
+        private final HashMap<Participant, long[]> likes = new HashMap<>();
+        //Voters of every photo, so repeated likes stay rejected after recovery
+        private final HashMap<Participant, VoterSet> voters = new HashMap<>();
+
+        Replay(ContestRegistry contestRegistry, PhotoStore photoStore, DerivativeGenerator derivativeGenerator) {
+            this.contestRegistry = contestRegistry;
+            this.photoStore = photoStore;
+            this.derivativeGenerator = derivativeGenerator;
+        }
+
+        /**
+         * Apply records of the segment
+         *
+         * @param buffer - mapped segment
+         * @param index - number of the segment
+         * @return false, if damaged or torn record is found
+         */
+        boolean read(ByteBuffer buffer, int index) {
+            while (buffer.remaining() >= HEADER) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    buffer.position(start);
+                    //End mark, the journal goes on only if the next segment exists
+                    return length == 0;
+                }
+                crc.reset();
+                ByteBuffer data = buffer.slice(buffer.position(), length);
+                crc.update(data);
+                if ((int) crc.getValue() != checksum) {
+                    buffer.position(start);
+                    return false;
+                }
+                data.rewind();
+                apply(data, index);
+                buffer.position(buffer.position() + length);
+            }
+            return true;
+        }
+
+        private String getString(ByteBuffer data) {
+            int length = data.getInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            data.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private Participant participant(ByteBuffer data) {
+            PhotoContest photoContest = contests.get(data.getLong());
+            Photographer photographer = photographersById.get(data.getInt());
+            return photoContest == null || photographer == null ? null : photographer.getParticipant(photoContest);
+        }
+
+        /**
+         * @param data - type and data of the record
+         * @param index - number of the segment with the record
+         */
+        private void apply(ByteBuffer data, int index) {
+            byte type = data.get();
+            //Records of one contest begin with its id
+            if (type >= CONTEST && type <= ARCHIVED && type != PHOTOGRAPHER && type != LIKES) {
+                segmentContests.get(index).add(data.getLong(data.position()));
+            }
+            switch (type) {
+                case CONTEST: {
+                    long id = data.getLong();
+                    String topic = getString(data);
+                    byte checker = data.get();
+                    int threshold = data.getInt();
+                    PlagiarismChecker plagiarismChecker = checker == PERCEPTUAL_CHECKER
+                            ? new PerceptualDuplicateIndex(threshold, photoStore) : new DuplicateIndex();
+                    PhotoContest photoContest = new PhotoContest(id, topic, plagiarismChecker);
+                    photoContest.photoStore = photoStore;
+                    photoContest.derivativeGenerator = derivativeGenerator;
+                    contests.put(id, photoContest);
+                    break;
+                }
+                case PHOTOGRAPHER: {
+                    int id = data.getInt();
+                    photographers.add(id);
+                    photographerSegments.put(id, index);
+                    photographersById.put(id, Photographer.restored(id, getString(data), getString(data), getString(data)));
+                    break;
+                }
+                case SUBSCRIBED: {
+                    long contestId = data.getLong();
+                    PhotoContest photoContest = contests.get(contestId);
+                    int photographerId = data.getInt();
+                    Photographer photographer = photographersById.get(photographerId);
+                    if (photoContest != null && photographer != null) {
+                        photoContest.restoreSubscriber(photographer);
+                        segmentContests.get(photographerSegments.get(photographerId)).add(contestId);
+                    }
+                    break;
+                }
+                case PHOTO: {
+                    Participant participant = participant(data);
+                    if (participant != null) {
+                        participant.setPhoto(getString(data));
+                        participant.photoContest.submitPhoto(participant);
+                    }
+                    break;
+                }
+                case STATE: {
+                    Participant participant = participant(data);
+                    if (participant != null) {
+                        participant.setState(PhotographerState.values()[data.get()]);
+                    }
+                    break;
+                }
+                case VERDICT: {
+                    Participant participant = participant(data);
+                    if (participant != null) {
+                        participant.setAccepted(data.get() == 1);
+                    }
+                    break;
+                }
+                case LIKES: {
+                    int count = data.getInt();
+                    for (int i = 0; i < count; i++) {
+                        segmentContests.get(index).add(data.getLong(data.position()));
+                        Participant participant = participant(data);
+                        int voter = data.getInt();
+                        if (participant != null) {
+                            like(participant, voter);
+                        }
+                    }
+                    break;
+                }
+                case RATE: {
+                    Participant participant = participant(data);
+                    if (participant != null) {
+                        int rate = data.getInt();
+                        participant.setRate(rate);
+                        participant.photoContest.getVoteTally().open(participant);
+                        participant.photoContest.getVoteTally().getLeaderboard().update(participant, () -> rate);
+                    }
+                    break;
+                }
+                case WINNER_RATE: {
+                    PhotoContest photoContest = contests.get(data.getLong());
+                    if (photoContest != null) {
+                        photoContest.winnerRate = data.getInt();
+                    }
+                    break;
+                }
+                case CONTEST_STATE: {
+                    PhotoContest photoContest = contests.get(data.getLong());
+                    if (photoContest != null) {
+                        photoContest.contestState = ContestState.values()[data.get()];
+                    }
+                    break;
+                }
+                case ARCHIVED: {
+                    //Contest is kept in the archive, its records are not needed any more
+                    long contestId = data.getLong();
+                    tombstones.put(contestId, index);
+                    PhotoContest photoContest = contests.remove(contestId);
+                    if (photoContest != null) {
+                        for (Subscriber<ContestState> subscriber : photoContest.getPhotographersList()) {
+                            ((Participant) subscriber).photographer.leave(photoContest);
+                            ContestMetrics.shared().moved(((Participant) subscriber).getState(), null);
+                        }
+                        likes.keySet().removeIf(participant -> participant.photoContest == photoContest);
+                        voters.keySet().removeIf(participant -> participant.photoContest == photoContest);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * @param participant - photographer whose photo is liked
+         * @param voter - id of voter
+         */
+        private void like(Participant participant, int voter) {
+            if (voters.computeIfAbsent(participant, key -> new VoterSet()).add(voter)) {
+                likes.computeIfAbsent(participant, key -> new long[1])[0]++;
+            }
+        }
+
+        /**
+         * Count summed likes and give recovered contests to the registry
+         */
+        void finish() {
+            likes.forEach((participant, count) -> participant.photoContest.getVoteTally().add(participant, count[0]));
+            voters.forEach((participant, voterSet) -> participant.photoContest.getVoteTally().restoreVoters(participant, voterSet));
+            for (PhotoContest photoContest : contests.values()) {
+                if (photoContest.contestState == ContestState.VOTE) {
+                    photoContest.openVoting();
+                }
+                photoContest.journal = ContestJournal.this;
+                contestRegistry.add(photoContest);
+            }
+        }
+    }
+
+    /**
+     * Force the rest of records and stop committer
+     */
+    @Override
+    public void close() {
+        commit();
+        closed = true;
+        synchronized (commitLock) {
+            nextCommit.complete(false);
+            commitLock.notifyAll();
+        }
+        committer.interrupt();
+        synchronized (this) {
+            try {
+                channel.close();
+            } catch (IOException exc) {
+                //Records are already forced
+            }
+        }
+    }
+}
+
+/**
+ * Archive of closed contests, one snapshot file per contest
+ * Snapshots are mapped only when they are read for the first time.
+ */
+class ContestArchive {
+    private final Path directory;
+    private final ConcurrentHashMap<Long, ArchivedContest> contests = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory - directory of snapshot files
+     */
+    private ContestArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Open archive with snapshots, which are already in the directory
+     * Ids of archived contests are reserved, so new contests do not get them; files with other names are skipped
+     *
+     * @param directory - directory of snapshot files
+     * @return archive
+     * @throws IOException - if directory cannot be read or created
+     */
+    static ContestArchive open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ContestArchive archive = new ContestArchive(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "contest-*.snap")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long id;
+                try {
+                    id = Long.parseLong(name.substring("contest-".length(), name.length() - ".snap".length()));
+                } catch (NumberFormatException exc) {
+                    continue;
+                }
+                archive.contests.put(id, new ArchivedContest(id, file));
+                PhotoContest.reserveId(id);
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * Write snapshot of the contest, file appears atomically
+     * Snapshot of another contest with the same id is never replaced
+     *
+     * @param photoContest - closed contest
+     * @return archived contest
+     * @throws IOException - if snapshot cannot be written or the contest is already archived
+     */
+    public ArchivedContest store(PhotoContest photoContest) throws IOException {
+        Path file = directory.resolve("contest-" + photoContest.id + ".snap");
+        if (contests.containsKey(photoContest.id) || Files.exists(file)) {
+            throw new FileAlreadyExistsException(file.toString());
+        }
+        Path temporary = directory.resolve("contest-" + photoContest.id + ".tmp");
+        ByteBuffer snapshot = ArchivedContest.encode(photoContest);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                channel.write(snapshot);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        ArchivedContest archivedContest = new ArchivedContest(photoContest.id, file);
+        contests.put(photoContest.id, archivedContest);
+        return archivedContest;
+    }
+
+    /**
+     * @param id - id of the contest
+     * @return archived contest, or null if there is no such contest
+     */
+    public ArchivedContest get(long id) {
+        return contests.get(id);
+    }
+
+    public int size() {
+        return contests.size();
+    }
+}
+
+/**
+ * Read-only view of closed contest in snapshot file
+ * File has header, dictionary of all strings and columns with one value per participant:
+ * photographer id, name, email, phone, photo (indexes in dictionary, -1 for null), rate, state, accepted.
+ */
+class ArchivedContest {
+    private static final int MAGIC = 0x50435331;
+    //Magic, id, topic, winner rate, number of participants, number of strings
+    private static final int HEADER = 28;
+
+    final long id;
+    private final Path file;
+    private volatile ByteBuffer buffer;
+    private int rows;
+    private int strings;
+    //Positions of sections in the file
+    private int dictionary;
+    private int columns;
+
+    /**
+     * @param id - id of the contest
+     * @param file - snapshot file
+     */
+    ArchivedContest(long id, Path file) {
+        this.id = id;
+        this.file = file;
+    }
+
+    /**
+     * Encode the contest into snapshot
+     *
+     * @param photoContest - closed contest
+     * @return snapshot, ready for writing
+     */
+    static ByteBuffer encode(PhotoContest photoContest) {
+        LinkedHashMap<String, Integer> dictionary = new LinkedHashMap<>();
+        List<Participant> participants = new ArrayList<>();
+        for (Subscriber<ContestState> subscriber : photoContest.getPhotographersList()) {
+            participants.add((Participant) subscriber);
+        }
+        int rows = participants.size();
+        int[] references = new int[rows * 4];
+        int topic = reference(dictionary, photoContest.topic);
+        for (int i = 0; i < rows; i++) {
+            Participant participant = participants.get(i);
+            references[i] = reference(dictionary, participant.photographer.name);
+            references[rows + i] = reference(dictionary, participant.photographer.email);
+            references[2 * rows + i] = reference(dictionary, participant.photographer.phoneNumber);
+            references[3 * rows + i] = reference(dictionary, participant.getPhoto());
+        }
+        List<byte[]> bytes = new ArrayList<>(dictionary.size());
+        int dictionaryLength = 0;
+        for (String value : dictionary.keySet()) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            bytes.add(encoded);
+            dictionaryLength += encoded.length;
+        }
+        int offsets = (dictionary.size() + 1) * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + offsets + dictionaryLength + rows * (6 * Integer.BYTES + 2));
+        buffer.putInt(MAGIC).putLong(photoContest.id).putInt(topic).putInt(photoContest.winnerRate)
+                .putInt(rows).putInt(dictionary.size());
+        //Offset of every string in the dictionary and the end of the last one
+        int offset = 0;
+        for (byte[] encoded : bytes) {
+            buffer.putInt(offset);
+            offset += encoded.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] encoded : bytes) {
+            buffer.put(encoded);
+        }
+        for (Participant participant : participants) {
+            buffer.putInt(participant.photographer.id);
+        }
+        for (int reference : references) {
+            buffer.putInt(reference);
+        }
+        for (Participant participant : participants) {
+            buffer.putInt(participant.getRate());
+        }
+        for (Participant participant : participants) {
+            buffer.put((byte) participant.getState().ordinal());
+        }
+        for (Participant participant : participants) {
+            buffer.put((byte) (participant.isAccepted() ? 1 : 0));
+        }
+        return buffer.flip();
+    }
+
+    private static int reference(LinkedHashMap<String, Integer> dictionary, String value) {
+        return value == null ? -1 : dictionary.computeIfAbsent(value, key -> dictionary.size());
+    }
+
+    /**
+     * Map the file on the first access
+     *
+     * @return mapped snapshot
+     */
+    private ByteBuffer buffer() {
+        ByteBuffer mapped = buffer;
+        if (mapped == null) {
+            synchronized (this) {
+                mapped = buffer;
+                if (mapped == null) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    } catch (IOException exc) {
+                        throw new IllegalStateException("Snapshot cannot be read: " + file, exc);
+                    }
+                    if (mapped.getInt(0) != MAGIC) {
+                        throw new IllegalStateException("Not a contest snapshot: " + file);
+                    }
+                    rows = mapped.getInt(20);
+                    strings = mapped.getInt(24);
+                    dictionary = HEADER + (strings + 1) * Integer.BYTES;
+                    columns = dictionary + mapped.getInt(HEADER + strings * Integer.BYTES);
+                    buffer = mapped;
+                }
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * @param reference - index in dictionary, -1 for null
+     * @return string from dictionary
+     */
+    private String string(int reference) {
+        if (reference < 0) {
+            return null;
+        }
+        ByteBuffer mapped = buffer();
+        int start = mapped.getInt(HEADER + reference * Integer.BYTES);
+        int end = mapped.getInt(HEADER + (reference + 1) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        mapped.get(dictionary + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param column - number of int column
+     * @param row - number of participant
+     * @return value of the column
+     */
+    private int intColumn(int column, int row) {
+        ByteBuffer mapped = buffer();
+        return mapped.getInt(columns + (column * rows + row) * Integer.BYTES);
+    }
+
+    private byte byteColumn(int column, int row) {
+        ByteBuffer mapped = buffer();
+        return mapped.get(columns + 6 * rows * Integer.BYTES + column * rows + row);
+    }
+
+    public String getTopic() {
+        return string(buffer().getInt(12));
+    }
+
+    public int getWinnerRate() {
+        return buffer().getInt(16);
+    }
+
+    public int size() {
+        buffer();
+        return rows;
+    }
+
+    public int getPhotographerId(int row) {
+        return intColumn(0, row);
+    }
+
+    public String getName(int row) {
+        return string(intColumn(1, row));
+    }
+
+    public String getEmail(int row) {
+        return string(intColumn(2, row));
+    }
+
+    public String getPhoneNumber(int row) {
+        return string(intColumn(3, row));
+    }
+
+    public String getPhoto(int row) {
+        return string(intColumn(4, row));
+    }
+
+    public int getRate(int row) {
+        return intColumn(5, row);
+    }
+
+    public PhotographerState getState(int row) {
+        return PhotographerState.values()[byteColumn(0, row)];
+    }
+
+    public boolean isAccepted(int row) {
+        return byteColumn(1, row) == 1;
+    }
+
+    /**
+     * Winners are photographers with the rate of winner, states are already back to Initial
+     *
+     * @return names of winners of the contest
+     */
+    public List<String> getWinners() {
+        List<String> winners = new ArrayList<>();
+        int winnerRate = getWinnerRate();
+        for (int row = 0; row < size() && winnerRate != 0; row++) {
+            if (getRate(row) == winnerRate) {
+                winners.add(getName(row));
+            }
+        }
+        return winners;
+    }
+}
+
+/**
+ * History of results of photographers in closed contests
+ * Results are appended to the file as [length][contest id][rate][flags][topic][name][email][phone][photo]
+ * and indexed by every contact of photographer, so profile of photographer survives closing of contests.
+ * Queries go through LRU cache of decoded results, which is split into stripes with own locks,
+ * file is read only on misses and without holding any lock.
+ */
+class ParticipantHistory implements AutoCloseable {
+    private static final byte ACCEPTED = 1;
+    private static final byte WINNER = 2;
+    //Key of cached list of all winners, contacts cannot be empty
+    private static final String WINNERS = "";
+    private static final int STRIPES = 16;
+
+    /**
+     * Result of photographer in one contest
+     */
+    static class Result {
+        final long contestId;
+        final String topic;
+        final String name;
+        final String email;
+        final String phoneNumber;
+        final String photo;
+        final boolean accepted;
+        final int rate;
+        final boolean winner;
+
+        /**
+         * @param contestId - id of the contest
+         * @param topic - topic of the contest
+         * @param name - name of photographer
+         * @param email - email, null if there is no email
+         * @param phoneNumber - phone number, null if there is no phone number
+         * @param photo - submitted photo, null if photo was not submitted
+         * @param accepted - verdict of review session
+         * @param rate - number of likes
+         * @param winner - true, if photographer won the contest
+         */
+        Result(long contestId, String topic, String name, String email, String phoneNumber, String photo,
+               boolean accepted, int rate, boolean winner) {
+            this.contestId = contestId;
+            this.topic = topic;
+            this.name = name;
+            this.email = email;
+            this.phoneNumber = phoneNumber;
+            this.photo = photo;
+            this.accepted = accepted;
+            this.rate = rate;
+            this.winner = winner;
+        }
+    }
+
+    /**
+     * Part of the cache, guarded by itself
+     */
+    private static final class Stripe {
+        final LinkedHashMap<String, List<Result>> cache;
+        //Changed on every invalidation, so result read from out of date index is not cached
+        long version;
+
+        Stripe(int size) {
+            //Access order: the eldest entry is the least recently used one
+            cache = new LinkedHashMap<>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<Result>> eldest) {
+                    return size() > size;
+                }
+            };
+        }
+    }
+
+    private final FileChannel channel;
+    //Positions of records by contact, guarded by itself
+    private final HashMap<String, ArrayList<Long>> byContact = new HashMap<>();
+    private final ArrayList<Long> winners = new ArrayList<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    //End of file, guarded by this, as only writers use it
+    private long end;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param channel - channel of history file
+     * @param cacheSize - maximal number of cached queries, it is split equally between stripes
+     */
+    private ParticipantHistory(FileChannel channel, int cacheSize) {
+        this.channel = channel;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(Math.max(1, (cacheSize + STRIPES - 1) / STRIPES));
+        }
+    }
+
+    /**
+     * Open history and index its records
+     * Incomplete record at the end of file, which was written during crash, is cut off
+     *
+     * @param file - history file, created if there is none
+     * @param cacheSize - maximal number of cached queries
+     * @return history
+     * @throws IOException - if file cannot be read or created
+     */
+    static ParticipantHistory open(Path file, int cacheSize) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ParticipantHistory history = new ParticipantHistory(channel, cacheSize);
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        while (position + Integer.BYTES <= size) {
+            length.clear();
+            readFully(channel, length, position);
+            int recordLength = length.getInt(0);
+            if (recordLength <= 0 || position + Integer.BYTES + recordLength > size) {
+                break;
+            }
+            history.index(history.read(position), position);
+            position += Integer.BYTES + recordLength;
+        }
+        if (position < size) {
+            channel.truncate(position);
+        }
+        history.end = position;
+        return history;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of history");
+            }
+        }
+    }
+
+    /**
+     * Normalized contact: email in lower case or digits of phone number
+     *
+     * @param contact - email or phone number
+     * @return key of the contact in index, null for invalid contact
+     */
+    static String key(String contact) {
+        if (contact == null) {
+            return null;
+        }
+        if (contact.indexOf('@') >= 0) {
+            return contact.trim().toLowerCase(Locale.ROOT);
+        }
+        return ContactValidator.checkPhoneNumber(contact) == null ? ContactValidator.phoneDigits(contact) : null;
+    }
+
+    private void index(Result result, long position) {
+        synchronized (byContact) {
+            for (String contact : new String[]{key(result.email), key(result.phoneNumber)}) {
+                if (contact != null) {
+                    byContact.computeIfAbsent(contact, key -> new ArrayList<>(1)).add(position);
+                }
+            }
+            if (result.winner) {
+                winners.add(position);
+            }
+        }
+    }
+
+    private Stripe stripe(String key) {
+        return stripes[key.hashCode() & (STRIPES - 1)];
+    }
+
+    /**
+     * Drop cached results of the key, which is changed
+     *
+     * @param key - key of the query, null is ignored
+     */
+    private void invalidate(String key) {
+        if (key == null) {
+            return;
+        }
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.cache.remove(key);
+            stripe.version++;
+        }
+    }
+
+    /**
+     * Append results of all participants of the closed contest with one write
+     * Winners have the rate of winner, as states of participants are changed by notifications
+     *
+     * @param photoContest - contest, where winners are chosen
+     * @throws IOException - if results cannot be written
+     */
+    public synchronized void record(PhotoContest photoContest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        List<Result> results = new ArrayList<>();
+        List<Long> positions = new ArrayList<>();
+        for (Subscriber<ContestState> subscriber : photoContest.getPhotographersList()) {
+            Participant participant = (Participant) subscriber;
+            Photographer photographer = participant.photographer;
+            int rate = participant.getRate();
+            Result result = new Result(photoContest.id, photoContest.topic, photographer.name, photographer.email,
+                    photographer.phoneNumber, participant.getPhoto(), participant.isAccepted(), rate,
+                    photoContest.winnerRate != 0 && rate == photoContest.winnerRate);
+            buffer = ensure(buffer, 64);
+            int start = buffer.position();
+            buffer.putInt(0).putLong(result.contestId).putInt(result.rate)
+                    .put((byte) ((result.accepted ? ACCEPTED : 0) | (result.winner ? WINNER : 0)));
+            for (String value : new String[]{result.topic, result.name, result.email, result.phoneNumber, result.photo}) {
+                byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+                buffer = ensure(buffer, Integer.BYTES + (bytes == null ? 0 : bytes.length));
+                if (bytes == null) {
+                    buffer.putInt(-1);
+                } else {
+                    buffer.putInt(bytes.length).put(bytes);
+                }
+            }
+            buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+            results.add(result);
+            positions.add(end + start);
+        }
+        buffer.flip();
+        long position = end;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+        end = position;
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            index(result, positions.get(i));
+            //Cached lists of these contacts are out of date
+            invalidate(key(result.email));
+            invalidate(key(result.phoneNumber));
+            if (result.winner) {
+                invalidate(WINNERS);
+            }
+        }
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int length) {
+        if (buffer.remaining() >= length) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    /**
+     * Decode record of the file
+     *
+     * @param position - position of the record
+     * @return result of photographer
+     * @throws IOException - if record cannot be read
+     */
+    private Result read(long position) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length, position);
+        ByteBuffer data = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, data, position + Integer.BYTES);
+        data.flip();
+        long contestId = data.getLong();
+        int rate = data.getInt();
+        byte flags = data.get();
+        String[] values = new String[5];
+        for (int i = 0; i < values.length; i++) {
+            int size = data.getInt();
+            if (size >= 0) {
+                byte[] bytes = new byte[size];
+                data.get(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return new Result(contestId, values[0], values[1], values[2], values[3], values[4],
+                (flags & ACCEPTED) != 0, rate, (flags & WINNER) != 0);
+    }
+
+    /**
+     * Results from cache or from the file
+     *
+     * @param key - key of the contact or WINNERS
+     * @return results in order of closing of contests
+     */
+    private List<Result> query(String key) {
+        Stripe stripe = stripe(key);
+        long version;
+        synchronized (stripe) {
+            List<Result> results = stripe.cache.get(key);
+            if (results != null) {
+                hits.increment();
+                return results;
+            }
+            version = stripe.version;
+        }
+        misses.increment();
+        long[] positions;
+        synchronized (byContact) {
+            List<Long> list = key.equals(WINNERS) ? winners : byContact.get(key);
+            positions = new long[list == null ? 0 : list.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = list.get(i);
+            }
+        }
+        //File is read without locks, positional reads of the channel do not disturb each other
+        List<Result> results = new ArrayList<>(positions.length);
+        try {
+            for (long position : positions) {
+                results.add(read(position));
+            }
+        } catch (IOException exc) {
+            throw new UncheckedIOException(exc);
+        }
+        results = Collections.unmodifiableList(results);
+        synchronized (stripe) {
+            //Results of the key were recorded during the read, these ones are already out of date
+            if (stripe.version == version) {
+                stripe.cache.put(key, results);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * All results of photographer
+     *
+     * @param contact - email or phone number of photographer
+     * @return results in order of closing of contests, empty if there are none
+     */
+    public List<Result> getResults(String contact) {
+        String key = key(contact);
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        return query(key);
+    }
+
+    /**
+     * Winners of all closed contests
+     *
+     * @return results of winners in order of closing of contests
+     */
+    public List<Result> getWinners() {
+        return query(WINNERS);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
+
+/**
+ * Content-addressed store of photos
+ * Photo is kept once per SHA-256 of its bytes, so the same image sent to several contests takes place once,
+ * and equal references show exact duplicates. Blobs are appended to segment files as [hash][length][bytes];
+ * reads are done from mapped segments or by transferTo without copying into the heap.
+ */
+class PhotoStore implements AutoCloseable {
+    private static final String PREFIX = "sha256:";
+    private static final int HASH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentHashMap<String, Blob> blobs = new ConcurrentHashMap<>();
+    private final ArrayList<FileChannel> segments = new ArrayList<>();
+    //Mapped segments, filled on the first read
+    private final ArrayList<MappedByteBuffer> mapped = new ArrayList<>();
+    private FileChannel current;
+
+    /**
+     * Place of the blob in segment files
+     */
+    private static class Blob {
+        final int segment;
+        final long position;
+        final int length;
+
+        Blob(int segment, long position, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    /**
+     * @param directory - directory of segment files
+     * @param segmentSize - size, after which the next segment is started, at most Integer.MAX_VALUE,
+     * so every blob is read from mapped segment by int position
+     */
+    private PhotoStore(Path directory, long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = (int) Math.min(segmentSize, Integer.MAX_VALUE);
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Open store with 256 MB segments, blobs of existing segments are indexed
+     *
+     * @param directory - directory of segment files
+     * @return photo store
+     * @throws IOException - if segments cannot be read
+     */
+    static PhotoStore open(Path directory) throws IOException {
+        return open(directory, 256L << 20);
+    }
+
+    /**
+     * @param directory - directory of segment files
+     * @param segmentSize - size, after which the next segment is started
+     * @return photo store
+     * @throws IOException - if segments cannot be read
+     */
+    static PhotoStore open(Path directory, long segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        PhotoStore photoStore = new PhotoStore(directory, segmentSize);
+        for (int index = 0; Files.exists(photoStore.segmentPath(index)); index++) {
+            photoStore.index(photoStore.openSegment(index));
+        }
+        return photoStore;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("photos-%05d.blob", index));
+    }
+
+    private FileChannel openSegment(int index) throws IOException {
+        current = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.add(current);
+        mapped.add(null);
+        return current;
+    }
+
+    /**
+     * Index blobs of the segment, torn blob at the end is cut off
+     * Length of the last blob may be written before its bytes, so the last blob is kept only if its hash matches.
+     *
+     * @param channel - segment file
+     * @throws IOException - if segment cannot be read
+     */
+    private void index(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HASH + Integer.BYTES);
+        long position = 0;
+        long size = channel.size();
+        String last = null;
+        long lastPosition = 0;
+        while (position + header.capacity() <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(HASH);
+            if (length < 0 || position + header.capacity() + length > size) {
+                break;
+            }
+            byte[] hash = new byte[HASH];
+            header.get(0, hash);
+            last = PREFIX + hex(hash);
+            lastPosition = position;
+            blobs.put(last, new Blob(segments.size() - 1, position + header.capacity(), length));
+            position += header.capacity() + length;
+        }
+        if (last != null) {
+            Blob blob = blobs.get(last);
+            ByteBuffer content = ByteBuffer.allocate(blob.length);
+            readFully(channel, content, blob.position);
+            if (!last.equals(PREFIX + hex(sha256(content.array())))) {
+                blobs.remove(last);
+                position = lastPosition;
+            }
+        }
+        channel.truncate(position);
+    }
+
+    /**
+     * @param channel - segment file
+     * @param buffer - buffer, which is filled to its limit
+     * @param position - position in the file
+     * @throws IOException - if file ends before the buffer is filled
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Segment ends at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * @param photo - name of the photo
+     * @return true, if photo is a reference to contents in the photo store
+     */
+    static boolean isReference(String photo) {
+        return photo != null && photo.startsWith(PREFIX);
+    }
+
+    static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    /**
+     * Keep contents of the photo, the same contents are kept once
+     *
+     * @param content - bytes of the image
+     * @return reference to the contents
+     * @throws IOException - if photo cannot be written
+     */
+    public String put(byte[] content) throws IOException {
+        byte[] hash = sha256(content);
+        String reference = PREFIX + hex(hash);
+        if (blobs.containsKey(reference)) {
+            return reference;
+        }
+        synchronized (this) {
+            if (blobs.containsKey(reference)) {
+                return reference;
+            }
+            //Blob ends before Integer.MAX_VALUE, even if the segment is filled up to its size by smaller ones
+            long end = current == null ? 0 : current.size() + HASH + Integer.BYTES + content.length;
+            if (current == null || current.size() >= segmentSize || end > Integer.MAX_VALUE) {
+                openSegment(segments.size());
+            }
+            long position = current.size();
+            ByteBuffer blob = ByteBuffer.allocate(HASH + Integer.BYTES + content.length);
+            blob.put(hash).putInt(content.length).put(content).flip();
+            while (blob.hasRemaining()) {
+                current.write(blob, position + blob.position());
+            }
+            //Reference is given out only for the blob, which is on disk
+            current.force(false);
+            blobs.put(reference, new Blob(segments.size() - 1, position + HASH + Integer.BYTES, content.length));
+        }
+        return reference;
+    }
+
+    /**
+     * Read contents of the photo file into the store
+     *
+     * @param file - image file
+     * @return reference to the contents
+     * @throws IOException - if file cannot be read or photo cannot be written
+     */
+    public String put(Path file) throws IOException {
+        return put(Files.readAllBytes(file));
+    }
+
+    public boolean contains(String reference) {
+        return blobs.containsKey(reference);
+    }
+
+    public int size() {
+        return blobs.size();
+    }
+
+    private Blob blob(String reference) throws IOException {
+        Blob blob = blobs.get(reference);
+        if (blob == null) {
+            throw new IOException("No photo " + reference);
+        }
+        return blob;
+    }
+
+    /**
+     * Read-only view of the photo in mapped segment
+     *
+     * @param reference - reference to the contents
+     * @return contents of the photo
+     * @throws IOException - if there is no such photo
+     */
+    public ByteBuffer map(String reference) throws IOException {
+        Blob blob = blob(reference);
+        MappedByteBuffer segment;
+        synchronized (this) {
+            segment = mapped.get(blob.segment);
+            //Segment is mapped again, when it has grown since the last mapping
+            if (segment == null || segment.capacity() < blob.position + blob.length) {
+                FileChannel channel = segments.get(blob.segment);
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapped.set(blob.segment, segment);
+            }
+        }
+        return segment.slice((int) blob.position, blob.length);
+    }
+
+    /**
+     * Stream of the photo over mapped segment, for example for image decoding
+     *
+     * @param reference - reference to the contents
+     * @return stream of contents
+     * @throws IOException - if there is no such photo
+     */
+    public InputStream open(String reference) throws IOException {
+        ByteBuffer content = map(reference);
+        return new InputStream() {
+            @Override
+            public int read() {
+                return content.hasRemaining() ? content.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!content.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, content.remaining());
+                content.get(bytes, offset, count);
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Send the photo to the channel without copying it into the heap
+     *
+     * @param reference - reference to the contents
+     * @param target - channel, for example socket or file
+     * @throws IOException - if there is no such photo or it cannot be sent
+     */
+    public void transferTo(String reference, WritableByteChannel target) throws IOException {
+        Blob blob = blob(reference);
+        FileChannel channel;
+        synchronized (this) {
+            channel = segments.get(blob.segment);
+        }
+        long sent = 0;
+        while (sent < blob.length) {
+            sent += channel.transferTo(blob.position + sent, blob.length - sent, target);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel channel : segments) {
+            channel.close();
+        }
+    }
+}
+
+/**
+ * Generator of resized copies of photos, which are shown to voters instead of originals
+ * Photos are resized in parallel on own fork-join pool, its parallelism limits number of images decoded at once.
+ * Copies are cached in the directory by the photo, so every photo is resized once.
+ */
+class DerivativeGenerator implements AutoCloseable {
+    /**
+     * Kinds of resized copies by the longest side in pixels
+     */
+    enum Size {
+        THUMBNAIL(160),
+        PREVIEW(800);
+
+        final int pixels;
+
+        Size(int pixels) {
+            this.pixels = pixels;
+        }
+    }
+
+    private final Path directory;
+    private final PhotoStore photoStore;
+    private final ForkJoinPool pool;
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * @param directory - directory of cached copies
+     * @param photoStore - store, where photos sent as references are read from, null if photos are files
+     * @param concurrency - max number of photos resized at once
+     * @throws IOException - if directory cannot be created
+     */
+    DerivativeGenerator(Path directory, PhotoStore photoStore, int concurrency) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.photoStore = photoStore;
+        pool = new ForkJoinPool(concurrency);
+    }
+
+    /**
+     * Resize all photos in background
+     *
+     * @param photos - photos, which are shown to voters
+     * @return task, which is done when all copies are cached
+     */
+    public ForkJoinTask<Void> generate(List<String> photos) {
+        return pool.submit(new Resize(photos, 0, photos.size()));
+    }
+
+    /**
+     * Resizing of the range of photos, range is split until one photo is left
+     */
+    private class Resize extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<String> photos;
+        private final int from;
+        private final int to;
+
+        Resize(List<String> photos, int from, int to) {
+            this.photos = photos;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Resize(photos, from, middle), new Resize(photos, middle, to));
+            } else if (to > from) {
+                resize(photos.get(from));
+            }
+        }
+    }
+
+    /**
+     * File of the copy in cache: references are named by their hash, files by hash of the path
+     *
+     * @param photo - path to the image or reference to the photo store
+     * @param size - kind of copy
+     * @return path of the copy
+     */
+    public Path getPath(String photo, Size size) {
+        String key = PhotoStore.isReference(photo)
+                ? photo.substring(photo.indexOf(':') + 1)
+                : PhotoStore.hex(PhotoStore.sha256(photo.getBytes(StandardCharsets.UTF_8)));
+        return directory.resolve(key + "-" + size.name().toLowerCase(Locale.ROOT) + ".jpg");
+    }
+
+    /**
+     * Getter for cached copy
+     *
+     * @param photo - path to the image or reference to the photo store
+     * @param size - kind of copy
+     * @return path of the copy, or null if it is not generated yet
+     */
+    public Path getDerivative(String photo, Size size) {
+        Path path = getPath(photo, size);
+        return Files.exists(path) ? path : null;
+    }
+
+    /**
+     * Decode the photo once and write all missing copies
+     *
+     * @param photo - path to the image or reference to the photo store
+     */
+    private void resize(String photo) {
+        if (photo == null) {
+            return;
+        }
+        try {
+            BufferedImage image = null;
+            for (Size size : Size.values()) {
+                Path path = getPath(photo, size);
+                if (Files.exists(path)) {
+                    continue;
+                }
+                if (image == null) {
+                    image = photoStore != null && PhotoStore.isReference(photo)
+                            ? ImageIO.read(photoStore.open(photo))
+                            : ImageIO.read(new File(photo));
+                    if (image == null) {
+                        failed.increment();
+                        return;
+                    }
+                }
+                write(scale(image, size.pixels), path);
+            }
+            generated.increment();
+        } catch (IOException exc) {
+            failed.increment();
+        }
+    }
+
+    /**
+     * @param image - original image
+     * @param pixels - max length of the longest side
+     * @return image, which fits into the square, original is never enlarged
+     */
+    static BufferedImage scale(BufferedImage image, int pixels) {
+        double ratio = Math.min(1.0, (double) pixels / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    /**
+     * Write copy through temporary file, so readers never see a half-written image
+     *
+     * @param image - resized image
+     * @param path - path of the copy
+     * @throws IOException - if copy cannot be written
+     */
+    private static void write(BufferedImage image, Path path) throws IOException {
+        Path temporary = Files.createTempFile(path.getParent(), "derivative", ".tmp");
+        try {
+            ImageIO.write(image, "jpg", temporary.toFile());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public long getGenerated() {
+        return generated.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
+
+/**
+ * HTTP API of contests on the built-in JDK server
+ * POST /contests/{id}/register?name=&contact=    - registration of photographer by email or phone number
+ * POST /contests/{id}/photos?contact=&photo=     - photo by name, or contents of the photo in the body
+ * POST /contests/{id}/votes?photographer=&voter= - like of the voter for the photo of photographer with this contact
+ * GET  /contests/{id}/standings?top=             - the best photographers by live likes
+ * GET  /contests/{id}/stream                     - server-sent events with changes of standings during voting
+ * Every request is checked against the state of the contest, so the API follows the same rules as the console.
+ */
+class ContestServer {
+    //Max size of photo in the body
+    private static final int MAX_PHOTO = 32 << 20;
+
+    private final Admin admin;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    //Live standings of contests on voting, created for the first subscriber
+    private final ConcurrentHashMap<Long, StandingsFeed> feeds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "standings-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService writers;
+
+    /**
+     * @param admin - admin, whose contests are served
+     * @param address - address and port, port 0 for any free port
+     * @param threads - number of handler threads, if virtual threads are not supported by the runtime
+     * @throws IOException - if address cannot be bound
+     */
+    ContestServer(Admin admin, InetSocketAddress address, int threads) throws IOException {
+        this.admin = admin;
+        //Connections wait in the backlog, handlers are only busy while request is handled
+        server = HttpServer.create(address, 4096);
+        executor = newExecutor(threads);
+        writers = newExecutor(threads);
+        server.setExecutor(executor);
+        server.createContext("/contests/", this::handle);
+    }
+
+    /**
+     * Virtual thread for every request on runtimes, where they exist; fixed pool otherwise
+     *
+     * @param threads - size of fixed pool
+     * @return executor of requests
+     */
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException exc) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "http-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @param delay - seconds for requests in progress
+     */
+    public void stop(int delay) {
+        feeds.values().forEach(StandingsFeed::close);
+        ticker.shutdown();
+        server.stop(delay);
+        executor.shutdown();
+        writers.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Route request to the operation by path
+     *
+     * @param exchange - request and response
+     * @throws IOException - if response cannot be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        //Stream stays open after the handler
+        boolean streaming = false;
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            //Path is /contests/{id}/{operation}
+            if (path.length != 4) {
+                respond(exchange, 404, error("Unknown path"));
+                return;
+            }
+            PhotoContest photoContest;
+            try {
+                photoContest = admin.getContest(Long.parseLong(path[2]));
+            } catch (NumberFormatException exc) {
+                photoContest = null;
+            }
+            if (photoContest == null) {
+                respond(exchange, 404, error("No contest " + path[2]));
+                return;
+            }
+            HashMap<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+            switch (path[3]) {
+                case "register":
+                    if (method.equals("POST")) {
+                        register(exchange, photoContest, query);
+                        return;
+                    }
+                    break;
+                case "photos":
+                    if (method.equals("POST")) {
+                        sendPhoto(exchange, photoContest, query);
+                        return;
+                    }
+                    break;
+                case "votes":
+                    if (method.equals("POST")) {
+                        vote(exchange, photoContest, query);
+                        return;
+                    }
+                    break;
+                case "standings":
+                    if (method.equals("GET")) {
+                        standings(exchange, photoContest, query);
+                        return;
+                    }
+                    break;
+                case "stream":
+                    if (method.equals("GET")) {
+                        streaming = stream(exchange, photoContest);
+                        return;
+                    }
+                    break;
+                default:
+                    respond(exchange, 404, error("Unknown operation " + path[3]));
+                    return;
+            }
+            respond(exchange, 405, error("Method " + method + " is not allowed"));
+        } finally {
+            if (!streaming) {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Subscribe to live standings of the contest on voting
+     *
+     * @param exchange - request and response
+     * @param photoContest - concrete contest
+     * @return true, if stream is open
+     * @throws IOException - if response cannot be sent
+     */
+    private boolean stream(HttpExchange exchange, PhotoContest photoContest) throws IOException {
+        if (photoContest.contestState != ContestState.VOTE) {
+            respond(exchange, 409, error("Voting is not open"));
+            return false;
+        }
+        StandingsFeed feed = feeds.computeIfAbsent(photoContest.id, id -> {
+            StandingsFeed created = new StandingsFeed(photoContest, 20, 8, writers);
+            created.start(ticker, 250, () -> feeds.remove(id));
+            return created;
+        });
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        feed.subscribe(exchange);
+        return true;
+    }
+
+    private void register(HttpExchange exchange, PhotoContest photoContest, HashMap<String, String> query) throws IOException {
+        String name = query.get("name");
+        String contact = query.get("contact");
+        if (name == null || name.isEmpty() || contact == null) {
+            respond(exchange, 400, error("Name and contact are needed"));
+            return;
+        }
+        boolean isEmail = contact.contains("@");
+        ContactError contactError = isEmail ? ContactValidator.checkEmail(contact) : ContactValidator.checkPhoneNumber(contact);
+        if (contactError != null) {
+            respond(exchange, 400, error(contactError.message));
+            return;
+        }
+        //Subscribers of the contest are the same for the API, console and import,
+        //returning photographer is found without building a new one, subscribe resolves a race with the same contact
+        Photographer photographer = photoContest.getSubscribers().find(contact);
+        if (photographer == null) {
+            photographer = isEmail
+                    ? Photographer.imported(name, contact, null)
+                    : Photographer.imported(name, null, ContactValidator.phoneDigits(contact));
+        }
+        photographer.register(photoContest);
+        Participant participant = photographer.getParticipant(photoContest);
+        if (participant == null) {
+            respond(exchange, 409, error("Registration is closed"));
+            return;
+        }
+        respond(exchange, 200, "{\"photographer\":" + participant.photographer.id + ",\"state\":\"" + participant.getState() + "\"}");
+    }
+
+    private void sendPhoto(HttpExchange exchange, PhotoContest photoContest, HashMap<String, String> query) throws IOException {
+        String contact = query.get("contact");
+        Photographer photographer = contact == null ? null : photoContest.getSubscribers().find(contact);
+        if (photographer == null) {
+            respond(exchange, 404, error("Photographer is not registered"));
+            return;
+        }
+        String photo = query.get("photo");
+        boolean sent;
+        if (photo != null) {
+            sent = photographer.sendPhoto(photoContest, photo);
+        } else {
+            byte[] content = exchange.getRequestBody().readNBytes(MAX_PHOTO + 1);
+            if (content.length == 0 || content.length > MAX_PHOTO) {
+                respond(exchange, content.length == 0 ? 400 : 413, error("Photo is empty or too large"));
+                return;
+            }
+            sent = photographer.sendPhoto(photoContest, content);
+        }
+        //Of requests sent at the same time only one takes the photo
+        if (!sent) {
+            respond(exchange, 409, error("Photo cannot be submitted"));
+            return;
+        }
+        respond(exchange, 200, "{\"photo\":\"" + json(photographer.getParticipant(photoContest).getPhoto()) + "\"}");
+    }
+
+    private void vote(HttpExchange exchange, PhotoContest photoContest, HashMap<String, String> query) throws IOException {
+        String contact = query.get("photographer");
+        Photographer photographer = contact == null ? null : photoContest.getSubscribers().find(contact);
+        if (photographer == null) {
+            respond(exchange, 404, error("No such photographer in the contest"));
+            return;
+        }
+        int voter;
+        try {
+            voter = Integer.parseInt(query.getOrDefault("voter", ""));
+        } catch (NumberFormatException exc) {
+            voter = -1;
+        }
+        if (voter < 0) {
+            respond(exchange, 400, error("Voter id is needed"));
+            return;
+        }
+        Participant participant = photographer.getParticipant(photoContest);
+        if (participant != null && photoContest.getVoteTally().hasVoted(participant, voter)) {
+            respond(exchange, 409, error("Voter already liked this photo"));
+            return;
+        }
+        if (!photoContest.like(photographer, voter)) {
+            respond(exchange, 409, error("Voting is closed or photo is not promoted"));
+            return;
+        }
+        //Answer of the server means the like is on disk, thread of the request waits for the group commit
+        if (!photoContest.awaitLikes()) {
+            respond(exchange, 503, error("Like is not on disk, journal is closed"));
+            return;
+        }
+        respond(exchange, 200, "{\"likes\":" + photoContest.getVoteTally().getLikes(photographer.getParticipant(photoContest)) + "}");
+    }
+
+    private void standings(HttpExchange exchange, PhotoContest photoContest, HashMap<String, String> query) throws IOException {
+        int top = 10;
+        try {
+            top = Math.max(1, Math.min(1000, Integer.parseInt(query.getOrDefault("top", "10"))));
+        } catch (NumberFormatException exc) {
+            //Default number of places
+        }
+        StringBuilder body = new StringBuilder(64 * top);
+        body.append("{\"state\":\"").append(photoContest.contestState).append("\",\"standings\":[");
+        boolean first = true;
+        for (Leaderboard.Standing standing : photoContest.getVoteTally().getLeaderboard().top(top)) {
+            if (!first) {
+                body.append(',');
+            }
+            first = false;
+            body.append("{\"photographer\":").append(standing.participant.photographer.id)
+                    .append(",\"name\":\"").append(json(standing.participant.photographer.name))
+                    .append("\",\"likes\":").append(standing.rate).append('}');
+        }
+        respond(exchange, 200, body.append("]}").toString());
+    }
+
+    /**
+     * Parse query string, the last value of repeated parameter is kept
+     *
+     * @param rawQuery - encoded query, null if there is none
+     * @return parameters
+     */
+    private static HashMap<String, String> query(String rawQuery) {
+        HashMap<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + json(message) + "\"}";
+    }
+
+    /**
+     * Escape string for JSON
+     *
+     * @param value - string
+     * @return escaped string
+     */
+    static String json(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
+
+/**
+ * Live standings of one contest for server-sent events
+ * Every tick the top of the leaderboard is compared with the previous tick, and only changed places are
+ * encoded once into a delta frame, which is written to all subscribers by the pool of writers.
+ * Subscriber, who is still busy with an older frame, skips frames and gets a full snapshot when it is free;
+ * subscriber, who skipped too many ticks, is dropped, so slow clients never make frames pile up in memory.
+ */
+class StandingsFeed {
+    private final PhotoContest photoContest;
+    private final int places;
+    private final int maxSkipped;
+    private final ExecutorService writers;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    //Rank and rate of every photographer in the top by id of photographer, after the last tick
+    private HashMap<Integer, long[]> previous = new HashMap<>();
+    private List<Leaderboard.Standing> top = new ArrayList<>();
+    private long sequence;
+    private ScheduledFuture<?> tick;
+    private Runnable onClose;
+    private volatile boolean closed;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Stream of one client
+     */
+    private final class Client {
+        final HttpExchange exchange;
+        final OutputStream output;
+        //Frame is being written
+        final AtomicBoolean busy = new AtomicBoolean();
+        //Thread, which writes the frame, it is interrupted to stop blocked write
+        Thread writer;
+        volatile boolean needsSnapshot = true;
+        int skipped;
+
+        Client(HttpExchange exchange) {
+            this.exchange = exchange;
+            output = exchange.getResponseBody();
+        }
+    }
+
+    /**
+     * @param photoContest - contest on voting
+     * @param places - number of the best places in standings
+     * @param maxSkipped - number of ticks, which client may skip before it is dropped
+     * @param writers - threads, which write frames to clients
+     */
+    StandingsFeed(PhotoContest photoContest, int places, int maxSkipped, ExecutorService writers) {
+        this.photoContest = photoContest;
+        this.places = places;
+        this.maxSkipped = maxSkipped;
+        this.writers = writers;
+    }
+
+    /**
+     * @param ticker - scheduler of ticks
+     * @param tickMs - interval between frames in milliseconds
+     * @param onClose - action after the end of voting
+     */
+    void start(ScheduledExecutorService ticker, long tickMs, Runnable onClose) {
+        this.onClose = onClose;
+        tick = ticker.scheduleAtFixedRate(this::tick, 0, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param exchange - open response of server-sent events
+     */
+    void subscribe(HttpExchange exchange) {
+        Client client = new Client(exchange);
+        clients.add(client);
+        //Voting ended while client was coming
+        if (closed) {
+            drop(client);
+        }
+    }
+
+    public int getSubscribers() {
+        return clients.size();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Build frames of the tick and give them to clients
+     */
+    private synchronized void tick() {
+        if (photoContest.contestState != ContestState.VOTE) {
+            byte[] end = ("event: end\ndata: {\"state\":\"" + photoContest.contestState + "\"}\n\n").getBytes(StandardCharsets.UTF_8);
+            for (Client client : clients) {
+                send(client, end, true);
+            }
+            close();
+            return;
+        }
+        top = photoContest.getVoteTally().getLeaderboard().top(places);
+        HashMap<Integer, long[]> current = new HashMap<>();
+        StringBuilder changed = new StringBuilder();
+        for (int rank = 0; rank < top.size(); rank++) {
+            Leaderboard.Standing standing = top.get(rank);
+            int id = standing.participant.photographer.id;
+            current.put(id, new long[]{rank + 1, standing.rate});
+            long[] old = previous.get(id);
+            if (old == null || old[0] != rank + 1 || old[1] != standing.rate) {
+                place(changed.length() == 0 ? changed : changed.append(','), rank + 1, standing);
+            }
+        }
+        StringBuilder removed = new StringBuilder();
+        for (Integer id : previous.keySet()) {
+            if (!current.containsKey(id)) {
+                (removed.length() == 0 ? removed : removed.append(',')).append(id);
+            }
+        }
+        previous = current;
+        sequence++;
+        byte[] delta = changed.length() == 0 && removed.length() == 0 ? null
+                : frame("delta", "{\"changed\":[" + changed + "],\"removed\":[" + removed + "]}");
+        byte[] snapshot = null;
+        for (Client client : clients) {
+            if (client.busy.get()) {
+                //Skip ahead: the next frame of this client is the whole standings
+                client.needsSnapshot = true;
+                if (++client.skipped > maxSkipped) {
+                    drop(client);
+                }
+                continue;
+            }
+            client.skipped = 0;
+            if (client.needsSnapshot) {
+                if (snapshot == null) {
+                    snapshot = snapshot();
+                }
+                client.needsSnapshot = false;
+                send(client, snapshot, false);
+            } else if (delta != null) {
+                send(client, delta, false);
+            }
+        }
+    }
+
+    private byte[] snapshot() {
+        StringBuilder places = new StringBuilder();
+        for (int rank = 0; rank < top.size(); rank++) {
+            place(rank == 0 ? places : places.append(','), rank + 1, top.get(rank));
+        }
+        return frame("snapshot", "{\"standings\":[" + places + "]}");
+    }
+
+    private static void place(StringBuilder builder, int rank, Leaderboard.Standing standing) {
+        builder.append("{\"rank\":").append(rank)
+                .append(",\"photographer\":").append(standing.participant.photographer.id)
+                .append(",\"name\":\"").append(ContestServer.json(standing.participant.photographer.name))
+                .append("\",\"likes\":").append(standing.rate).append('}');
+    }
+
+    private byte[] frame(String event, String data) {
+        return ("id: " + sequence + "\nevent: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write frame in the pool of writers
+     *
+     * @param client - free client
+     * @param frame - encoded frame, shared by all clients
+     * @param last - true, if stream is closed after the frame
+     */
+    private void send(Client client, byte[] frame, boolean last) {
+        if (!client.busy.compareAndSet(false, true)) {
+            if (last) {
+                drop(client);
+            }
+            return;
+        }
+        try {
+            writers.execute(() -> {
+                synchronized (client) {
+                    client.writer = Thread.currentThread();
+                }
+                try {
+                    client.output.write(frame);
+                    client.output.flush();
+                    if (last) {
+                        clients.remove(client);
+                        client.exchange.close();
+                    }
+                } catch (IOException exc) {
+                    //Client went away
+                    drop(client);
+                } finally {
+                    boolean gone;
+                    synchronized (client) {
+                        client.writer = null;
+                        //Interrupt of dropped client is not left for the next task
+                        Thread.interrupted();
+                        gone = !clients.contains(client);
+                    }
+                    //Client was dropped while its write was finishing, interrupt did not close it
+                    if (gone) {
+                        client.exchange.close();
+                    }
+                    client.busy.set(false);
+                }
+            });
+        } catch (RejectedExecutionException exc) {
+            drop(client);
+        }
+    }
+
+    /**
+     * Close the stream of slow or gone client
+     * Write, which is blocked by full socket buffer, is interrupted, that closes the connection,
+     * the writer closes the stream itself, if the write has already finished
+     *
+     * @param client - client
+     */
+    private void drop(Client client) {
+        if (clients.remove(client)) {
+            dropped.increment();
+            synchronized (client) {
+                if (client.writer != null) {
+                    client.writer.interrupt();
+                    return;
+                }
+            }
+            client.exchange.close();
+        }
+    }
+
+    /**
+     * Stop ticks, clients, who did not get the last frame, are closed
+     */
+    void close() {
+        closed = true;
+        if (tick != null) {
+            tick.cancel(false);
+        }
+        for (Client client : clients) {
+            if (!client.busy.get()) {
+                clients.remove(client);
+                client.exchange.close();
+            }
+        }
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+}
+
+/**
+ * Histogram of latencies with buckets of about 12% width
+ * Values below 16 have own buckets, every next power of two is split into 8 buckets,
+ * so recording is one atomic increment without locks or allocation.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKETS = 8;
+    private static final int LINEAR = 16;
+    private final AtomicLongArray buckets = new AtomicLongArray(LINEAR + (Long.SIZE - 4) * SUB_BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value - not negative value, for example nanoseconds
+     */
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucket(value));
+        sum.add(value);
+        long old = max.get();
+        while (value > old && !max.compareAndSet(old, value)) {
+            old = max.get();
+        }
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @param bucket - index of bucket
+     * @return the biggest value of the bucket
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - 3);
+        return lower + (1L << (exponent - 3)) - 1;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile - from 0 to 100
+     * @return value, which is not exceeded by this part of records, 0 if there are none
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
+
+/**
+ * Metrics of contest phases and notifications, shared by all contests
+ * Latencies are kept in histograms, participants are counted by their state.
+ * Metrics are registered in the platform MBean server as com.company:type=ContestMetrics
+ * and can be dumped as text periodically.
+ */
+class ContestMetrics implements DynamicMBean {
+    private static final ContestMetrics shared = new ContestMetrics();
+
+    /**
+     * Measured operations
+     */
+    enum Phase {
+        CLOSE_APPLICATION("closeApplicationSession"),
+        PEER_REVIEW("peerReviewSession"),
+        VOTING("votingSession"),
+        CHOOSE_WINNER("chooseWinner"),
+        CONTEST_NOTIFICATION("contestNotification"),
+        PARTICIPANT_NOTIFICATION("participantNotification");
+
+        final String attribute;
+
+        Phase(String attribute) {
+            this.attribute = attribute;
+        }
+    }
+
+    private final EnumMap<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+    //Number of participants notified by one contest notification
+    private final LatencyHistogram fanOut = new LatencyHistogram();
+    private final LongAdder[] participants = new LongAdder[PhotographerState.values().length];
+    private ScheduledExecutorService dumper;
+
+    private ContestMetrics() {
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+        }
+        for (int i = 0; i < participants.length; i++) {
+            participants[i] = new LongAdder();
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.company:type=ContestMetrics"));
+        } catch (JMException exc) {
+            //Metrics are still available by dump
+        }
+    }
+
+    static ContestMetrics shared() {
+        return shared;
+    }
+
+    /**
+     * @param phase - measured operation
+     * @param start - System.nanoTime() at the start of operation
+     */
+    void record(Phase phase, long start) {
+        latencies.get(phase).record(System.nanoTime() - start);
+    }
+
+    /**
+     * @param notified - number of participants notified at once
+     */
+    void recordFanOut(int notified) {
+        fanOut.record(notified);
+    }
+
+    /**
+     * Participant changed its state
+     *
+     * @param from - old state, null for new participant
+     * @param to - new state, null for participant, who is released
+     */
+    void moved(PhotographerState from, PhotographerState to) {
+        if (from != null) {
+            participants[from.ordinal()].decrement();
+        }
+        if (to != null) {
+            participants[to.ordinal()].increment();
+        }
+    }
+
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    public LatencyHistogram getFanOut() {
+        return fanOut;
+    }
+
+    public long getParticipants(PhotographerState state) {
+        return participants[state.ordinal()].sum();
+    }
+
+    /**
+     * Text of all metrics, latencies are in microseconds
+     *
+     * @return one line for every metric
+     */
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = latencies.get(phase);
+            text.append(String.format(Locale.ROOT, "%-26s count=%d p50=%dus p99=%dus max=%dus%n", phase.attribute,
+                    histogram.getCount(), histogram.getPercentile(50) / 1000, histogram.getPercentile(99) / 1000,
+                    histogram.getMax() / 1000));
+        }
+        text.append(String.format(Locale.ROOT, "%-26s count=%d p50=%d p99=%d max=%d%n", "fanOut",
+                fanOut.getCount(), fanOut.getPercentile(50), fanOut.getPercentile(99), fanOut.getMax()));
+        for (PhotographerState state : PhotographerState.values()) {
+            text.append(String.format(Locale.ROOT, "%-26s %d%n", "participants." + state, getParticipants(state)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Give the dump to the consumer periodically
+     *
+     * @param periodMs - period in milliseconds
+     * @param consumer - where the dump goes, for example a log
+     */
+    public synchronized void startDump(long periodMs, Consumer<String> consumer) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> consumer.accept(dump()), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Attributes are phase.count, phase.p50, phase.p99, phase.max (nanoseconds),
+     * fanOut.* (participants) and participants.STATE
+     */
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (attribute.startsWith("participants.")) {
+            for (PhotographerState state : PhotographerState.values()) {
+                if (attribute.equals("participants." + state)) {
+                    return getParticipants(state);
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+        int dot = attribute.indexOf('.');
+        if (dot < 0) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        String name = attribute.substring(0, dot);
+        LatencyHistogram histogram = name.equals("fanOut") ? fanOut : null;
+        for (Phase phase : Phase.values()) {
+            if (phase.attribute.equals(name)) {
+                histogram = latencies.get(phase);
+            }
+        }
+        if (histogram == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        switch (attribute.substring(dot + 1)) {
+            case "count":
+                return histogram.getCount();
+            case "p50":
+                return histogram.getPercentile(50);
+            case "p99":
+                return histogram.getPercentile(99);
+            case "max":
+                return histogram.getMax();
+            default:
+                throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException exc) {
+                //Unknown attributes are skipped
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        return actionName.equals("dump") ? dump() : null;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        List<String> histograms = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            histograms.add(phase.attribute);
+        }
+        histograms.add("fanOut");
+        for (String histogram : histograms) {
+            for (String statistic : new String[]{"count", "p50", "p99", "max"}) {
+                attributes.add(new MBeanAttributeInfo(histogram + "." + statistic, "long",
+                        histogram + " " + statistic, true, false, false));
+            }
+        }
+        for (PhotographerState state : PhotographerState.values()) {
+            attributes.add(new MBeanAttributeInfo("participants." + state, "long",
+                    "Participants in state " + state, true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Latencies of contest phases and participants by state",
+                attributes.toArray(new MBeanAttributeInfo[0]), null,
+                new MBeanOperationInfo[]{new MBeanOperationInfo("dump",
+                        "Text of all metrics", null, "java.lang.String", MBeanOperationInfo.INFO)},
+                null);
+    }
+}
+
+/**
+ * Interpreter of operator commands from the console or a script
+ * Commands and answers to the questions of commands are read from the shared Input, one per line:
+ * <pre>
+ * contest &lt;contest&gt; &lt;topic&gt;            new contest with name for next commands
+ * photographer [&lt;name&gt; contact...]   new photographer, name and contacts are asked if there are none
+ * register &lt;name&gt; &lt;contest&gt;
+ * photo &lt;name&gt; [&lt;contest&gt; &lt;photo&gt;]    photo is asked if it is not given
+ * like &lt;contest&gt; &lt;name&gt; &lt;voter&gt;
+ * close-application | review | voting | close-voting | winner &lt;contest&gt;
+ * </pre>
+ * Lines starting with # are comments.
+ */
+class CommandInterpreter {
+    private final Admin admin;
+    private final HashMap<String, PhotoContest> contests = new HashMap<>();
+    private final HashMap<String, Photographer> photographers = new HashMap<>();
+
+    CommandInterpreter(Admin admin) {
+        this.admin = admin;
+    }
+
+    /**
+     * Execute commands until the end of input
+     *
+     * @return number of executed commands
+     */
+    int run() {
+        int count = 0;
+        String line;
+        while ((line = Input.readLine()) != null) {
+            if (execute(line)) {
+                count++;
+            }
+        }
+        Output.flush();
+        return count;
+    }
+
+    /**
+     * Execute one command
+     *
+     * @param line - command with arguments separated by spaces
+     * @return true, if the command was executed
+     */
+    boolean execute(String line) {
+        String[] words = line.trim().split("\\s+", 4);
+        if (words[0].isEmpty() || words[0].startsWith("#")) {
+            return false;
+        }
+        switch (words[0]) {
+            case "contest":
+                if (words.length < 3) {
+                    return unknown(line);
+                }
+                contests.put(words[1], admin.createNewContest(line.trim().split("\\s+", 3)[2]));
+                return true;
+            case "photographer":
+                return addPhotographer(line.trim().split("\\s+"));
+            case "register":
+                return withPhotographer(words, 3, (photographer, contest) -> photographer.register(contest));
+            case "photo":
+                if (words.length == 2) {
+                    return withPhotographer(words, 2, (photographer, contest) -> photographer.sendPhoto());
+                }
+                return withPhotographer(words, 4, (photographer, contest) -> photographer.sendPhoto(contest, words[3]));
+            case "like":
+                return like(words);
+            case "close-application":
+                return phase(words, admin::closeApplicationSession);
+            case "review":
+                return phase(words, admin::peerReviewSession);
+            case "voting":
+                return phase(words, admin::votingSession);
+            case "close-voting":
+                return phase(words, admin::closeVotingSession);
+            case "winner":
+                return phase(words, admin::chooseWinner);
+            default:
+                return unknown(line);
+        }
+    }
+
+    private boolean unknown(String line) {
+        Output.println("Unknown command: " + line);
+        return false;
+    }
+
+    private PhotoContest contest(String name) {
+        PhotoContest contest = contests.get(name);
+        if (contest == null) {
+            Output.println("Unknown contest: " + name);
+        }
+        return contest;
+    }
+
+    private Photographer photographer(String name) {
+        Photographer photographer = photographers.get(name);
+        if (photographer == null) {
+            Output.println("Unknown photographer: " + name);
+        }
+        return photographer;
+    }
+
+    /**
+     * New photographer with contacts from the command or from the following lines
+     *
+     * @param words - command, name and contacts
+     * @return true, if photographer was created
+     */
+    private boolean addPhotographer(String[] words) {
+        Photographer photographer;
+        switch (words.length) {
+            case 1:
+                photographer = new Photographer();
+                photographers.put(photographer.name, photographer);
+                return true;
+            case 2:
+                return unknown(String.join(" ", words));
+            case 3:
+                photographer = new Photographer(words[1], words[2]);
+                break;
+            default:
+                photographer = new Photographer(words[1], words[2], words[3]);
+                break;
+        }
+        photographers.put(words[1], photographer);
+        return true;
+    }
+
+    /**
+     * Action of photographer in the contest
+     *
+     * @param words - command, photographer, contest and other arguments
+     * @param length - required number of words, contest is not required for 2
+     * @param action - action with found photographer and contest
+     * @return true, if photographer and contest were found
+     */
+    private boolean withPhotographer(String[] words, int length, BiConsumer<Photographer, PhotoContest> action) {
+        if (words.length < length) {
+            return unknown(String.join(" ", words));
+        }
+        Photographer photographer = photographer(words[1]);
+        PhotoContest contest = length > 2 ? contest(words[2]) : null;
+        if (photographer == null || (length > 2 && contest == null)) {
+            return false;
+        }
+        action.accept(photographer, contest);
+        return true;
+    }
+
+    /**
+     * Like of the voter for the photo
+     *
+     * @param words - command, contest, photographer and id of voter
+     * @return true, if contest, photographer and voter are valid
+     */
+    private boolean like(String[] words) {
+        if (words.length < 4) {
+            return unknown(String.join(" ", words));
+        }
+        //Missing or bad voter is reported as a bad command, the rest of the script goes on
+        int voter;
+        try {
+            voter = Integer.parseInt(words[3]);
+        } catch (NumberFormatException exc) {
+            return unknown(String.join(" ", words));
+        }
+        if (voter < 0) {
+            return unknown(String.join(" ", words));
+        }
+        PhotoContest contest = contest(words[1]);
+        Photographer photographer = photographer(words[2]);
+        if (contest == null || photographer == null) {
+            return false;
+        }
+        contest.like(photographer, voter);
+        return true;
+    }
+
+    /**
+     * Next phase of the contest, output of notifications is waited to keep it in order of commands
+     *
+     * @param words - command and contest
+     * @param action - phase of admin by id of the contest
+     * @return true, if contest was found
+     */
+    private boolean phase(String[] words, Consumer<Long> action) {
+        if (words.length < 2) {
+            return unknown(String.join(" ", words));
+        }
+        PhotoContest contest = contest(words[1]);
+        if (contest == null) {
+            return false;
+        }
+        action.accept(contest.id);
+        contest.getNotificationDispatcher().awaitDelivery();
+        return true;
+    }
+}
+
+/**
+ * Headless driver of whole contests with synthetic photographers and voters
+ * Everything random comes from the seed: every photographer and every voter has own generator made of
+ * the seed and its number, so results do not depend on threads and runs with the same seed are equal.
+ */
+class ContestSimulator {
+    /**
+     * Parameters of simulation
+     */
+    static class Config {
+        long seed = 1;
+        int photographers = 10_000;
+        int voters = 100_000;
+        int likesPerVoter = 5;
+        //Part of photographers, who send a copy of another photo
+        double plagiarismRatio = 0.05;
+        //Part of photographers, who send the photo after application session
+        double lateRatio = 0.1;
+        //Part of photographers with phone number instead of email
+        double phoneRatio = 0.3;
+        //Exponent of Zipf distribution of likes over photos
+        double skew = 1.1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        //Processes of tally workers for simulation of distributed voting
+        int workers = 4;
+
+        /**
+         * @param args - "simulate" and parameters as key=value
+         * @return config, unknown keys are ignored
+         */
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (equals < 0) {
+                    continue;
+                }
+                String value = arg.substring(equals + 1);
+                switch (arg.substring(0, equals)) {
+                    case "seed":
+                        config.seed = Long.parseLong(value);
+                        break;
+                    case "photographers":
+                        config.photographers = Integer.parseInt(value);
+                        break;
+                    case "voters":
+                        config.voters = Integer.parseInt(value);
+                        break;
+                    case "likesPerVoter":
+                        config.likesPerVoter = Integer.parseInt(value);
+                        break;
+                    case "plagiarism":
+                        config.plagiarismRatio = Double.parseDouble(value);
+                        break;
+                    case "late":
+                        config.lateRatio = Double.parseDouble(value);
+                        break;
+                    case "phones":
+                        config.phoneRatio = Double.parseDouble(value);
+                        break;
+                    case "skew":
+                        config.skew = Double.parseDouble(value);
+                        break;
+                    case "threads":
+                        config.threads = Integer.parseInt(value);
+                        break;
+                    case "workers":
+                        config.workers = Integer.parseInt(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return config;
+        }
+    }
+
+    /**
+     * Results of simulation
+     */
+    static class Report {
+        final Config config;
+        //Phases in order of running and their durations in nanoseconds
+        final LinkedHashMap<String, Long> phases = new LinkedHashMap<>();
+        int registered;
+        int submitted;
+        int late;
+        int promoted;
+        long likes;
+        long rejectedLikes;
+        int winnerRate;
+        List<String> winners = new ArrayList<>();
+        //Hash of likes of every photographer, equal for equal runs
+        long fingerprint;
+
+        Report(Config config) {
+            this.config = config;
+        }
+
+        private double perSecond(long count, String phase) {
+            Long nanos = phases.get(phase);
+            return nanos == null || nanos == 0 ? 0 : count * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT, "seed=%d photographers=%d voters=%d threads=%d%n",
+                    config.seed, config.photographers, config.voters, config.threads));
+            text.append(String.format(Locale.ROOT, "registered=%d submitted=%d late=%d promoted=%d%n",
+                    registered, submitted, late, promoted));
+            text.append(String.format(Locale.ROOT, "likes=%d rejected=%d winnerRate=%d winners=%s fingerprint=%016x%n",
+                    likes, rejectedLikes, winnerRate, winners, fingerprint));
+            for (String phase : phases.keySet()) {
+                text.append(String.format(Locale.ROOT, "%-24s %10.3f ms%n", phase, phases.get(phase) / 1e6));
+            }
+            text.append(String.format(Locale.ROOT, "registrations/s=%.0f likes/s=%.0f%n",
+                    perSecond(registered, "application"), perSecond(likes + rejectedLikes, "likes")));
+            text.append(ContestMetrics.shared().dump());
+            return text.toString();
+        }
+    }
+
+    private final Config config;
+    private final Report report;
+
+    private ContestSimulator(Config config) {
+        this.config = config;
+        report = new Report(config);
+    }
+
+    /**
+     * Run one contest from creation to the winner, all messages are thrown away
+     *
+     * @param config - parameters of simulation
+     * @return report of the run
+     */
+    static Report run(Config config) {
+        OutputSink sink = Output.swapSink(new NullSink());
+        try {
+            return new ContestSimulator(config).simulate();
+        } finally {
+            Output.swapSink(sink);
+        }
+    }
+
+    /**
+     * Generator of the photographer or voter
+     *
+     * @param seed - seed of simulation
+     * @param stream - 0 for photographers, 1 for voters
+     * @param number - number of photographer or voter
+     * @return generator
+     */
+    static SplittableRandom random(long seed, int stream, long number) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + (number << 1 | stream));
+    }
+
+    /**
+     * Cumulative weights of Zipf distribution, the first rank is the most popular
+     *
+     * @param count - number of ranks
+     * @param skew - exponent of distribution
+     * @return cumulative weights
+     */
+    static double[] zipf(int count, double skew) {
+        double[] cumulative = new double[count];
+        double total = 0;
+        for (int rank = 0; rank < count; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * @param cumulative - cumulative weights, not empty
+     * @param random - generator of the voter
+     * @return random rank
+     */
+    static int pick(double[] cumulative, SplittableRandom random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+        return Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1);
+    }
+
+    private long measure(String phase, long start) {
+        long now = System.nanoTime();
+        report.phases.merge(phase, now - start, Long::sum);
+        return now;
+    }
+
+    /**
+     * Work is split into equal parts for threads
+     *
+     * @param count - number of items
+     * @param work - work for item by its number
+     */
+    private void parallel(int count, IntConsumer work) {
+        int threads = Math.max(1, config.threads);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            int from = (int) ((long) count * thread / threads);
+            int to = (int) ((long) count * (thread + 1) / threads);
+            pool.execute(() -> {
+                for (int i = from; i < to; i++) {
+                    work.accept(i);
+                }
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Report simulate() {
+        Admin admin = new Admin();
+        long time = System.nanoTime();
+        PhotoContest photoContest = admin.createNewContest("Simulation " + config.seed);
+        NotificationDispatcher dispatcher = photoContest.getNotificationDispatcher();
+
+        //Photographers are created in order, so ties of rates are broken equally in every run
+        int count = config.photographers;
+        Photographer[] photographers = new Photographer[count];
+        String[] photos = new String[count];
+        boolean[] late = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            SplittableRandom random = random(config.seed, 0, i);
+            String name = "Photographer " + i;
+            photographers[i] = random.nextDouble() < config.phoneRatio
+                    ? Photographer.imported(name, null, String.format("8%010d", i))
+                    : Photographer.imported(name, "photographer" + i + "@contest.ru", null);
+            late[i] = random.nextDouble() < config.lateRatio;
+            photos[i] = i > 0 && random.nextDouble() < config.plagiarismRatio
+                    ? "photo-" + random.nextInt(i) : "photo-" + i;
+        }
+        time = measure("generation", time);
+
+        parallel(count, i -> {
+            photographers[i].register(photoContest);
+            if (!late[i]) {
+                photographers[i].sendPhoto(photoContest, photos[i]);
+            }
+        });
+        report.registered = photoContest.getParticipantTable().size();
+        report.submitted = photoContest.getParticipants(PhotographerState.APPLICATION).size();
+        time = measure("application", time);
+
+        admin.closeApplicationSession(photoContest.id);
+        time = measure("closeApplicationSession", time);
+        //Late photographers try after the deadline and are refused
+        for (int i = 0; i < count; i++) {
+            if (late[i]) {
+                photographers[i].sendPhoto(photoContest, photos[i]);
+                report.late++;
+            }
+        }
+        time = measure("lateSubmissions", time);
+
+        admin.peerReviewSession(photoContest.id);
+        report.promoted = photoContest.getParticipants(PhotographerState.PROMOTED).size();
+        time = measure("peerReviewSession", time);
+
+        //Promoted photographers in order of their numbers, the first ones are the most popular
+        Participant[] promoted = new Participant[count];
+        int promotedCount = 0;
+        for (int i = 0; i < count; i++) {
+            Participant participant = photographers[i].getParticipant(photoContest);
+            if (participant.getState() == PhotographerState.PROMOTED) {
+                promoted[promotedCount++] = participant;
+            }
+        }
+        double[] cumulative = zipf(promotedCount, config.skew);
+        LongAdder rejected = new LongAdder();
+        parallel(promotedCount == 0 ? 0 : config.voters, voter -> {
+            SplittableRandom random = random(config.seed, 1, voter);
+            for (int like = 0; like < config.likesPerVoter; like++) {
+                int rank = pick(cumulative, random);
+                if (!photoContest.like(promoted[rank], voter)) {
+                    rejected.increment();
+                }
+            }
+        });
+        report.likes = photoContest.getVoteTally().getTotal();
+        report.rejectedLikes = rejected.sum();
+        time = measure("likes", time);
+
+        admin.closeVotingSession(photoContest.id);
+        time = measure("votingSession", time);
+        report.winnerRate = photoContest.winnerRate;
+        //Order of leaders depends on threads, numbers of photographers do not
+        List<Participant> leaders = new ArrayList<>(photoContest.getVoteTally().getLeaderboard().getLeaders());
+        leaders.sort(Comparator.comparingInt((Participant participant) -> participant.photographer.id));
+        for (Participant participant : leaders) {
+            report.winners.add(participant.photographer.name);
+        }
+        long fingerprint = 17;
+        for (int rank = 0; rank < promotedCount; rank++) {
+            fingerprint = fingerprint * 31 + promoted[rank].getRate();
+        }
+        report.fingerprint = fingerprint;
+        admin.chooseWinner(photoContest.id);
+        time = measure("chooseWinner", time);
+
+        dispatcher.awaitDelivery();
+        measure("notificationDelivery", time);
+        admin.getContestRegistry().remove(photoContest.id);
+        return report;
+    }
+}
+
+/**
+ * Protocol between tally workers and coordinator over loopback socket
+ * Coordinator starts with a new id of the worker, or with REJECTED, when it is closed. Then worker sends frames:
+ * DELTA [contest id][n] n * [photographer id][count] - current likes of the worker, not increments,
+ * FINAL [contest id] - last delta of the contest is sent, after CLOSE [contest id] of coordinator.
+ * Counts of one worker only grow, so coordinator keeps the maximum for every worker and photo (G-counter):
+ * repeated or late delta changes nothing, and the sum over workers is exact after all FINAL frames.
+ */
+final class TallyProtocol {
+    static final byte DELTA = 1;
+    static final byte CLOSE = 2;
+    static final byte FINAL = 3;
+    static final int REJECTED = -1;
+
+    private TallyProtocol() {
+    }
+}
+
+/**
+ * Process, which counts likes of its part of voters and ships the counts to the coordinator
+ * Voters are partitioned between workers by id, so repeated likes are rejected by the worker locally.
+ */
+class TallyWorker implements AutoCloseable {
+    /**
+     * Likes of one contest in the worker
+     */
+    private static class ContestCounts {
+        final ConcurrentHashMap<Integer, LongAdder> likes = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Integer, VoterSet> voters = new ConcurrentHashMap<>();
+        //Photos with likes, which are not shipped yet
+        final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+        boolean closed;
+    }
+
+    private final int workerId;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final ConcurrentHashMap<Long, ContestCounts> contests = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService shipper;
+    private final Thread reader;
+
+    /**
+     * Connect to the coordinator, take id from it and start shipping of deltas
+     * Id is given by the coordinator, so two workers never share counts of one id.
+     *
+     * @param port - port of the coordinator on loopback
+     * @param intervalMs - period of shipping of deltas
+     * @throws IOException - if coordinator is not available or rejected the worker
+     */
+    TallyWorker(int port, long intervalMs) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        workerId = in.readInt();
+        if (workerId == TallyProtocol.REJECTED) {
+            socket.close();
+            throw new IOException("Tally coordinator rejected the worker");
+        }
+        shipper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tally-shipper-" + workerId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        shipper.scheduleWithFixedDelay(this::shipAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        reader = new Thread(this::readCommands, "tally-worker-" + workerId);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Count like of the voter
+     *
+     * @param contestId - id of the contest
+     * @param photographerId - id of photographer whose photo is liked
+     * @param voter - id of the voter, not negative
+     * @return true, if like is counted; false, if voter id is negative, voter already liked the photo or voting is closed
+     */
+    public boolean like(long contestId, int photographerId, int voter) {
+        if (voter < 0) {
+            return false;
+        }
+        ContestCounts counts = contests.computeIfAbsent(contestId, key -> new ContestCounts());
+        //Like is counted either before its contest is closed or not at all
+        synchronized (counts) {
+            if (counts.closed) {
+                return false;
+            }
+            if (!counts.voters.computeIfAbsent(photographerId, key -> new VoterSet()).add(voter)) {
+                return false;
+            }
+            counts.likes.computeIfAbsent(photographerId, key -> new LongAdder()).increment();
+            //Photo is dirty before the contest can be closed, so the last delta has it
+            counts.dirty.add(photographerId);
+        }
+        return true;
+    }
+
+    /**
+     * Count likes from lines "contest photographer voter" until the end of input
+     *
+     * @param input - lines of likes
+     * @return number of counted likes
+     * @throws IOException - if input cannot be read
+     */
+    public long run(BufferedReader input) throws IOException {
+        long counted = 0;
+        String line;
+        while ((line = input.readLine()) != null) {
+            String[] words = line.trim().split("\\s+");
+            if (words.length < 3 || words[0].startsWith("#")) {
+                continue;
+            }
+            if (like(Long.parseLong(words[0]), Integer.parseInt(words[1]), Integer.parseInt(words[2]))) {
+                counted++;
+            }
+        }
+        return counted;
+    }
+
+    private void shipAll() {
+        try {
+            for (Map.Entry<Long, ContestCounts> entry : contests.entrySet()) {
+                ship(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException exc) {
+            //Coordinator is gone, counts stay local
+            shipper.shutdown();
+        }
+    }
+
+    /**
+     * Send current counts of changed photos
+     * Photo is taken from dirty set before its count is read, so like during sending is sent next time.
+     * Dirty set is drained under the lock of the stream, so delta of the shipper is never sent after FINAL.
+     *
+     * @param contestId - id of the contest
+     * @param counts - likes of the contest
+     * @throws IOException - if delta cannot be sent
+     */
+    private void ship(long contestId, ContestCounts counts) throws IOException {
+        synchronized (out) {
+            if (counts.dirty.isEmpty()) {
+                return;
+            }
+            List<Integer> photos = new ArrayList<>(counts.dirty.size());
+            for (Iterator<Integer> iterator = counts.dirty.iterator(); iterator.hasNext(); ) {
+                photos.add(iterator.next());
+                iterator.remove();
+            }
+            out.writeByte(TallyProtocol.DELTA);
+            out.writeLong(contestId);
+            out.writeInt(photos.size());
+            for (int photo : photos) {
+                out.writeInt(photo);
+                out.writeLong(counts.likes.get(photo).sum());
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Close contests on command of the coordinator and answer with the last delta
+     */
+    private void readCommands() {
+        try (in) {
+            while (true) {
+                byte type = in.readByte();
+                long contestId = in.readLong();
+                if (type != TallyProtocol.CLOSE) {
+                    continue;
+                }
+                ContestCounts counts = contests.computeIfAbsent(contestId, key -> new ContestCounts());
+                synchronized (counts) {
+                    counts.closed = true;
+                }
+                synchronized (out) {
+                    ship(contestId, counts);
+                    out.writeByte(TallyProtocol.FINAL);
+                    out.writeLong(contestId);
+                    out.flush();
+                }
+            }
+        } catch (IOException exc) {
+            //Coordinator closed connection
+        }
+    }
+
+    /**
+     * Wait until the coordinator closes connection, after it collected all contests
+     */
+    public void awaitCoordinator() throws InterruptedException {
+        reader.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        shipper.shutdown();
+        shipAll();
+        socket.close();
+    }
+}
+
+/**
+ * Coordinator of tally workers, which merges their counts into vote tallies of contests
+ * Merged likes go to VoteTally, so closeVotingSession sets rates and rate of winner as for likes of one process.
+ */
+class TallyCoordinator implements AutoCloseable {
+    /**
+     * Merged counts of one contest
+     */
+    private static class Merge {
+        final PhotoContest photoContest;
+        final HashMap<Integer, Participant> participants = new HashMap<>();
+        //Maximal count by worker id and photographer id
+        final HashMap<Long, Long> counts = new HashMap<>();
+        //Keys of counts, whose photographer is not promoted in the contest, they are not in the vote tally yet
+        final Set<Long> unmatched = new HashSet<>();
+
+        Merge(PhotoContest photoContest) {
+            this.photoContest = photoContest;
+            refresh();
+        }
+
+        private void refresh() {
+            photoContest.getParticipants(PhotographerState.PROMOTED)
+                    .forEach(participant -> participants.put(participant.photographer.id, participant));
+        }
+
+        /**
+         * Keep the maximal count and add its growth to the vote tally, guarded by this
+         *
+         * @param key - worker id and photographer id
+         * @param count - count of likes in the worker
+         */
+        void add(long key, long count) {
+            long previous = counts.getOrDefault(key, 0L);
+            if (count <= previous) {
+                return;
+            }
+            counts.put(key, count);
+            Participant participant = participants.get((int) key);
+            if (participant == null) {
+                unmatched.add(key);
+            } else if (unmatched.remove(key)) {
+                photoContest.getVoteTally().add(participant, count);
+            } else {
+                photoContest.getVoteTally().add(participant, count - previous);
+            }
+        }
+
+        /**
+         * Add kept counts of photographers, who are promoted after their counts came, guarded by this
+         *
+         * @return true, if all counts are in the vote tally
+         */
+        boolean settle() {
+            if (unmatched.isEmpty()) {
+                return true;
+            }
+            refresh();
+            for (Iterator<Long> iterator = unmatched.iterator(); iterator.hasNext(); ) {
+                long key = iterator.next();
+                Participant participant = participants.get((int) key);
+                if (participant != null) {
+                    photoContest.getVoteTally().add(participant, counts.get(key));
+                    iterator.remove();
+                }
+            }
+            return unmatched.isEmpty();
+        }
+    }
+
+    /**
+     * Connection of one worker
+     */
+    private class Connection {
+        final Socket socket;
+        final DataOutputStream out;
+        int workerId = TallyProtocol.REJECTED;
+        //Contests, for which the worker sent FINAL
+        final Set<Long> finished = ConcurrentHashMap.newKeySet();
+        volatile boolean closed;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void read() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                workerId = assign(this);
+                synchronized (out) {
+                    out.writeInt(workerId);
+                    out.flush();
+                }
+                if (workerId == TallyProtocol.REJECTED) {
+                    return;
+                }
+                signal();
+                while (true) {
+                    byte type = in.readByte();
+                    long contestId = in.readLong();
+                    if (type == TallyProtocol.DELTA) {
+                        int size = in.readInt();
+                        int[] photos = new int[size];
+                        long[] counts = new long[size];
+                        for (int i = 0; i < size; i++) {
+                            photos[i] = in.readInt();
+                            counts[i] = in.readLong();
+                        }
+                        merge(contestId, workerId, photos, counts);
+                    } else if (type == TallyProtocol.FINAL) {
+                        finished.add(contestId);
+                        signal();
+                    }
+                }
+            } catch (IOException exc) {
+                //Worker is gone, its shipped counts stay merged
+            } finally {
+                closed = true;
+                connections.remove(this);
+                signal();
+                try {
+                    socket.close();
+                } catch (IOException exc) {
+                    //Socket is already closed
+                }
+            }
+        }
+
+        void send(byte type, long contestId) {
+            try {
+                synchronized (out) {
+                    out.writeByte(type);
+                    out.writeLong(contestId);
+                    out.flush();
+                }
+            } catch (IOException exc) {
+                closed = true;
+            }
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    //Guarded by this, id of the next worker
+    private int nextWorkerId;
+    private final ConcurrentHashMap<Long, Merge> merges = new ConcurrentHashMap<>();
+    //Guarded by itself, maximal counts of contests, which are not opened yet, by worker id and photographer id
+    private final HashMap<Long, HashMap<Long, Long>> pending = new HashMap<>();
+    //Contests, whose last deltas are collected, later deltas are not merged
+    private final Set<Long> collected = ConcurrentHashMap.newKeySet();
+    private final LongAdder deltas = new LongAdder();
+    //Guarded by this, worker accepted during closing is rejected
+    private boolean closed;
+
+    /**
+     * Start accepting workers on loopback
+     *
+     * @param port - port, 0 for any free port
+     * @throws IOException - if port cannot be bound
+     */
+    TallyCoordinator(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 64, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "tally-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getWorkers() {
+        return connections.size();
+    }
+
+    /**
+     * @return number of received deltas
+     */
+    public long getDeltas() {
+        return deltas.sum();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                Thread thread = new Thread(connection::read, "tally-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException exc) {
+                //Coordinator is closed
+            }
+        }
+    }
+
+    /**
+     * Wait for connection of workers
+     *
+     * @param workers - number of workers
+     * @param timeoutMs - maximal time of waiting
+     * @return true, if all workers are connected
+     * @throws InterruptedException - if waiting is interrupted
+     */
+    public synchronized boolean awaitWorkers(int workers, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (connections.size() < workers) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(Math.min(left, 10));
+        }
+        return true;
+    }
+
+    private synchronized void signal() {
+        notifyAll();
+    }
+
+    /**
+     * Give id to the worker in handshake and add its connection
+     * Counts are kept by worker id and ids are never given twice, so a restarted worker,
+     * which counts from zero again, does not hide the likes counted before the restart.
+     *
+     * @param connection - connection of the worker
+     * @return id of the worker, or REJECTED, if the coordinator is closed
+     */
+    private synchronized int assign(Connection connection) {
+        if (closed) {
+            return TallyProtocol.REJECTED;
+        }
+        int workerId = nextWorkerId++;
+        connections.add(connection);
+        return workerId;
+    }
+
+    /**
+     * Accept counts of workers for the contest on voting
+     * Counts, which came before the contest is opened, are merged now
+     *
+     * @param photoContest - contest after peer review session
+     */
+    public void open(PhotoContest photoContest) {
+        Merge merge;
+        HashMap<Long, Long> early;
+        synchronized (pending) {
+            if (collected.contains(photoContest.id)) {
+                return;
+            }
+            merge = merges.computeIfAbsent(photoContest.id, key -> new Merge(photoContest));
+            early = pending.remove(photoContest.id);
+        }
+        if (early == null) {
+            return;
+        }
+        //Maximum does not depend on order, so deltas merged meanwhile are not lost
+        synchronized (merge) {
+            early.forEach(merge::add);
+        }
+    }
+
+    /**
+     * Keep the maximal count of the worker and add growth to the vote tally
+     * Worker does not send the photo again until it gets a new like,
+     * so counts of the contest, which is not opened yet, are kept until open()
+     *
+     * @param contestId - id of the contest
+     * @param workerId - id of the worker
+     * @param photos - ids of photographers
+     * @param counts - counts of likes in the worker
+     */
+    private void merge(long contestId, int workerId, int[] photos, long[] counts) {
+        deltas.increment();
+        Merge merge;
+        synchronized (pending) {
+            merge = merges.get(contestId);
+            if (merge == null) {
+                //Worker sends nothing after FINAL, so delta of collected contest is not a like of it
+                if (!collected.contains(contestId)) {
+                    HashMap<Long, Long> early = pending.computeIfAbsent(contestId, key -> new HashMap<>());
+                    for (int i = 0; i < photos.length; i++) {
+                        early.merge(key(workerId, photos[i]), counts[i], Math::max);
+                    }
+                }
+                return;
+            }
+        }
+        synchronized (merge) {
+            for (int i = 0; i < photos.length; i++) {
+                merge.add(key(workerId, photos[i]), counts[i]);
+            }
+        }
+    }
+
+    private static long key(int workerId, int photographerId) {
+        return (long) workerId << 32 | (photographerId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Stop counting of the contest in all workers and wait for their last deltas
+     * After it closeVotingSession sets exact rates
+     *
+     * @param photoContest - contest on voting
+     * @param timeoutMs - maximal time of waiting
+     * @return true, if all connected workers sent their last delta; false, if time is out, a worker is gone before it
+     * or workers counted likes of photographers, who are not promoted in the contest
+     * @throws InterruptedException - if waiting is interrupted
+     */
+    public boolean collect(PhotoContest photoContest, long timeoutMs) throws InterruptedException {
+        //Workers connected later do not know about the contest
+        List<Connection> closing = new ArrayList<>(connections);
+        for (Connection connection : closing) {
+            connection.send(TallyProtocol.CLOSE, photoContest.id);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            while (true) {
+                boolean done = true;
+                //Gone worker will not answer, waiting stops, but its last likes may be lost
+                boolean settled = true;
+                for (Connection connection : closing) {
+                    boolean finished = connection.finished.contains(photoContest.id);
+                    done &= finished;
+                    settled &= finished || connection.closed;
+                }
+                long left = deadline - System.currentTimeMillis();
+                if (settled || left <= 0) {
+                    Merge merge;
+                    synchronized (pending) {
+                        collected.add(photoContest.id);
+                        pending.remove(photoContest.id);
+                        merge = merges.remove(photoContest.id);
+                    }
+                    if (merge != null) {
+                        synchronized (merge) {
+                            done &= merge.settle();
+                        }
+                    }
+                    return done;
+                }
+                wait(left);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        //Connections added before are closed below, later ones are rejected
+        synchronized (this) {
+            closed = true;
+        }
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.socket.close();
+        }
+    }
+}
+
+/**
+ * Source of current time for deadlines
+ */
+interface Clock {
+    /**
+     * @return current time in milliseconds
+     */
+    long millis();
+}
+
+/**
+ * Wall-clock time
+ */
+class SystemClock implements Clock {
+    @Override
+    public long millis() {
+        return System.currentTimeMillis();
+    }
+}
+
+/**
+ * Time, which is moved only by hand, for deterministic run of deadlines
+ */
+class ManualClock implements Clock {
+    private final AtomicLong now;
+
+    /**
+     * @param start - initial time in milliseconds
+     */
+    ManualClock(long start) {
+        now = new AtomicLong(start);
+    }
+
+    @Override
+    public long millis() {
+        return now.get();
+    }
+
+    /**
+     * Move time forward
+     *
+     * @param millis - number of milliseconds
+     */
+    public void advance(long millis) {
+        now.addAndGet(millis);
+    }
+}
+
+/**
+ * Scheduler of contest deadlines based on hierarchical timing wheel
+ * Every wheel has a fixed number of buckets of equal time span; deadlines beyond the wheel go to the
+ * next wheel with buckets as large as the whole lower wheel. Only non-empty buckets are kept in the
+ * priority queue, so scheduling and cancelling are O(1) and waiting deadlines cost nothing until their bucket is due.
+ * When the bucket of an upper wheel is due, its deadlines go down to the lower wheels or fire.
+ */
+class DeadlineScheduler {
+    private final Clock clock;
+    private final long tickMs;
+    private final Object lock = new Object();
+    private final PriorityQueue<Bucket> queue = new PriorityQueue<>(Comparator.comparingLong((Bucket bucket) -> bucket.expiration));
+    private final TimingWheel wheel;
+    //Deadlines within the current tick, they fire as soon as the clock reaches their time
+    private final ArrayList<Deadline> ready = new ArrayList<>();
+    private int pending;
+    private volatile Thread ticker;
+
+    /**
+     * Scheduler with wall-clock time, 10 milliseconds tick and 64 buckets per wheel
+     */
+    DeadlineScheduler() {
+        this(new SystemClock(), 10, 64);
+    }
+
+    /**
+     * @param clock - source of time
+     * @param tickMs - time span of bucket in the lowest wheel
+     * @param wheelSize - number of buckets in every wheel
+     */
+    DeadlineScheduler(Clock clock, long tickMs, int wheelSize) {
+        this.clock = clock;
+        this.tickMs = tickMs;
+        wheel = new TimingWheel(tickMs, wheelSize, clock.millis());
+    }
+
+    /**
+     * Action, which should be done at the deadline
+     */
+    final class Deadline {
+        final long time;
+        final Runnable action;
+        private Bucket bucket;
+        private Deadline prev;
+        private Deadline next;
+        private boolean cancelled;
+
+        Deadline(long time, Runnable action) {
+            this.time = time;
+            this.action = action;
+        }
+
+        /**
+         * Cancel the deadline, if its action has not started yet
+         */
+        public void cancel() {
+            synchronized (lock) {
+                if (!cancelled) {
+                    cancelled = true;
+                    if (bucket != null) {
+                        bucket.remove(this);
+                        pending--;
+                    } else if (ready.remove(this)) {
+                        pending--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Bucket of wheel: doubly linked list of deadlines with common expiration
+     */
+    private static final class Bucket {
+        private final Deadline head;
+        long expiration = -1;
+
+        Bucket(DeadlineScheduler scheduler) {
+            head = scheduler.new Deadline(-1, null);
+            head.prev = head;
+            head.next = head;
+        }
+
+        void add(Deadline deadline) {
+            deadline.bucket = this;
+            deadline.prev = head.prev;
+            deadline.next = head;
+            head.prev.next = deadline;
+            head.prev = deadline;
+        }
+
+        void remove(Deadline deadline) {
+            deadline.prev.next = deadline.next;
+            deadline.next.prev = deadline.prev;
+            deadline.prev = null;
+            deadline.next = null;
+            deadline.bucket = null;
+        }
+
+        /**
+         * Take all deadlines out of the bucket
+         *
+         * @param action - action with every deadline
+         */
+        void flush(Consumer<Deadline> action) {
+            while (head.next != head) {
+                Deadline deadline = head.next;
+                remove(deadline);
+                action.accept(deadline);
+            }
+            expiration = -1;
+        }
+    }
+
+    /**
+     * One level of the timing wheel
+     */
+    private final class TimingWheel {
+        final long tickMs;
+        final int wheelSize;
+        final long interval;
+        final Bucket[] buckets;
+        long currentTime;
+        TimingWheel overflowWheel;
+
+        TimingWheel(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            interval = tickMs * wheelSize;
+            buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket(DeadlineScheduler.this);
+            }
+            currentTime = startMs - startMs % tickMs;
+        }
+
+        /**
+         * Put deadline into the bucket of this wheel or upper one
+         *
+         * @param deadline - concrete deadline
+         * @return false, if deadline is within the current tick and should be checked on every advance
+         */
+        boolean add(Deadline deadline) {
+            if (deadline.time < currentTime + tickMs) {
+                return false;
+            }
+            if (deadline.time < currentTime + interval) {
+                long virtualId = deadline.time / tickMs;
+                Bucket bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(deadline);
+                //Bucket is queued once per round of the wheel
+                if (bucket.expiration != virtualId * tickMs) {
+                    bucket.expiration = virtualId * tickMs;
+                    queue.add(bucket);
+                }
+                return true;
+            }
+            if (overflowWheel == null) {
+                overflowWheel = new TimingWheel(interval, wheelSize, currentTime);
+            }
+            return overflowWheel.add(deadline);
+        }
+
+        void advanceClock(long time) {
+            if (time >= currentTime + tickMs) {
+                currentTime = time - time % tickMs;
+                if (overflowWheel != null) {
+                    overflowWheel.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedule action at the deadline
+     *
+     * @param time - deadline in milliseconds of the scheduler clock
+     * @param action - action to do
+     * @return deadline, which can be cancelled
+     */
+    public Deadline schedule(long time, Runnable action) {
+        Deadline deadline = new Deadline(time, action);
+        synchronized (lock) {
+            if (!wheel.add(deadline)) {
+                ready.add(deadline);
+            }
+            pending++;
+        }
+        return deadline;
+    }
+
+    /**
+     * Register deadlines for every phase of the contest
+     * At each deadline admin closes the phase and notifications are sent; phases, which were closed
+     * by hand before, are skipped. Voting is closed with live likes only.
+     *
+     * @param admin - admin of the contest
+     * @param photoContest - concrete contest
+     * @param applicationDeadline - end of application session
+     * @param reviewDeadline - end of plagiarism checking
+     * @param votingDeadline - end of voting
+     * @param awardingDeadline - time of choosing the winner
+     * @return scheduled deadlines in order of phases
+     */
+    public List<Deadline> scheduleContest(Admin admin, PhotoContest photoContest, long applicationDeadline,
+                                          long reviewDeadline, long votingDeadline, long awardingDeadline) {
+        long contestId = photoContest.id;
+        ArrayList<Deadline> deadlines = new ArrayList<>(4);
+        deadlines.add(schedule(applicationDeadline, () -> admin.closeApplicationSession(contestId)));
+        deadlines.add(schedule(reviewDeadline, () -> admin.peerReviewSession(contestId)));
+        deadlines.add(schedule(votingDeadline, () -> admin.closeVotingSession(contestId)));
+        deadlines.add(schedule(awardingDeadline, () -> admin.chooseWinner(contestId)));
+        return deadlines;
+    }
+
+    /**
+     * Fire all deadlines, which are due by the clock
+     * Actions are done on the calling thread in order of deadlines
+     *
+     * @return number of fired deadlines
+     */
+    public int advance() {
+        long now = clock.millis();
+        ArrayList<Deadline> due;
+        synchronized (lock) {
+            Bucket bucket;
+            while ((bucket = queue.peek()) != null && bucket.expiration <= now) {
+                queue.poll();
+                wheel.advanceClock(bucket.expiration);
+                //Deadlines of upper wheels go down or wait for their time in the current tick
+                bucket.flush(deadline -> {
+                    if (!wheel.add(deadline)) {
+                        ready.add(deadline);
+                    }
+                });
+            }
+            //Bucket starts at the beginning of its tick, so only deadlines, which are reached, fire
+            due = new ArrayList<>(ready.size());
+            for (Iterator<Deadline> iterator = ready.iterator(); iterator.hasNext(); ) {
+                Deadline deadline = iterator.next();
+                if (deadline.time <= now) {
+                    due.add(deadline);
+                    iterator.remove();
+                }
+            }
+            pending -= due.size();
+        }
+        due.sort(Comparator.comparingLong((Deadline deadline) -> deadline.time));
+        int fired = 0;
+        for (Deadline deadline : due) {
+            //Deadline can be cancelled after it was taken out
+            synchronized (lock) {
+                if (deadline.cancelled) {
+                    continue;
+                }
+            }
+            try {
+                deadline.action.run();
+            } catch (RuntimeException exc) {
+                Output.println("Deadline action failed: " + exc);
+            }
+            fired++;
+        }
+        return fired;
+    }
+
+    /**
+     * Number of deadlines, which have not fired yet
+     *
+     * @return number of deadlines
+     */
+    public int pending() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    /**
+     * Start daemon thread, which fires deadlines every tick by the clock
+     */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                advance();
+                try {
+                    Thread.sleep(tickMs);
+                } catch (InterruptedException exc) {
+                    return;
+                }
+            }
+        }, "deadline-scheduler");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Stop thread of the scheduler
+     */
+    public synchronized void stop() {
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker = null;
+        }
+    }
+}
+
+/**
+ * Example of system usage
+ * Some photographers should be created
+ */
+public class Main {
+    public static void main(String[] args) {
+        //Headless run: simulate key=value ...
+        if (args.length > 0 && args[0].equals("simulate")) {
+            Output.println(ContestSimulator.run(ContestSimulator.Config.parse(args)).toString());
+            Output.flush();
+            return;
+        }
+        //Operator commands: run [script] [record=file], from stdin if there is no script
+        if (args.length > 0 && args[0].equals("run")) {
+            runCommands(args);
+            return;
+        }
+        //Voting counted by worker processes: tally workers=.. key=value ...
+        if (args.length > 0 && args[0].equals("tally")) {
+            Output.println(runTally(ContestSimulator.Config.parse(args)));
+            Output.flush();
+            return;
+        }
+        //One worker process: tally-worker <port>, id is given by the coordinator, likes are read from stdin
+        if (args.length > 1 && args[0].equals("tally-worker")) {
+            runTallyWorker(Integer.parseInt(args[1]));
+            return;
+        }
+        Admin admin = new Admin();
+        PhotoContest photoContest = admin.createNewContest("Innopolis");
+        //Notifications are delivered asynchronously, wait for them to keep output in order
+        NotificationDispatcher dispatcher = photoContest.getNotificationDispatcher();
+        Output.println("");
+        ArrayList<Photographer> photographers = new ArrayList<>();
+
+        photographers.add(new Photographer());
+        photographers.add(new Photographer());
+//        add photographers directly
+        photographers.add(new Photographer("Georgy", "g@mail.ru"));
+        photographers.add(new Photographer("Fedor", "89224224421"));
+        photographers.add(new Photographer("Petr I", "velikiy@russia.rf", "00000000000"));
+        photographers.add(new Photographer("Teacher", "t@t.t"));
+
+
+//        PG0 registers and sends a photo
+        photographers.get(0).register(photoContest);
+        photographers.get(0).sendPhoto();
+//      PG3 sends a photo before registration
+        photographers.get(3).sendPhoto();
+//        PG3 registers and sends a photo
+        photographers.get(3).register(photoContest);
+        photographers.get(3).sendPhoto();
+//        Let PG2 & PG5 send the same photo
+        photographers.get(1).register(photoContest);
+        photographers.get(5).register(photoContest);
+        photographers.get(5).sendPhoto("PhotoWithPlagiarism");
+        photographers.get(1).sendPhoto("PhotoWithPlagiarism");
+        Output.println("");
+
+//        The deadline for registration and sending photos
+        admin.closeApplicationSession();
+        dispatcher.awaitDelivery();
+
+//        PG2 didn't get into deadline
+        photographers.get(2).sendPhoto();
+//        PG4 cannot register after the deadline
+        photographers.get(4).register(photoContest);
+//        PG6 can be created, but cannot register and send photo after the deadline
+        photographers.add(new Photographer());
+        photographers.get(6).register(photoContest);
+        photographers.get(6).sendPhoto();
+
+        Output.println("");
+        admin.peerReviewSession();
+        dispatcher.awaitDelivery();
+
+        Output.println("");
+        admin.votingSession();
+        dispatcher.awaitDelivery();
+
+
+        Output.println("");
+        admin.chooseWinner();
+        dispatcher.awaitDelivery();
+        Output.flush();
+    }
+
+    private static void runTallyWorker(int port) {
+        try (TallyWorker worker = new TallyWorker(port, 50)) {
+            long counted = worker.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+            //All likes are read, voting can be closed
+            Output.println(String.valueOf(counted));
+            Output.flush();
+            worker.awaitCoordinator();
+        } catch (IOException exc) {
+            //Coordinator reads the line instead of the number of likes
+            Output.println("Tally worker failed: " + exc);
+            Output.flush();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Voting of synthetic voters, which are partitioned between worker processes by id
+     * Rates merged by the coordinator are compared with likes counted in this process.
+     *
+     * @param config - parameters of simulation
+     * @return report
+     */
+    private static String runTally(ContestSimulator.Config config) {
+        OutputSink sink = Output.swapSink(new NullSink());
+        List<Process> processes = new ArrayList<>();
+        try (TallyCoordinator coordinator = new TallyCoordinator(0)) {
+            Admin admin = new Admin();
+            PhotoContest photoContest = admin.createNewContest("Tally " + config.seed);
+            Participant[] promoted = new Participant[config.photographers];
+            for (int i = 0; i < config.photographers; i++) {
+                Photographer photographer = Photographer.imported("Photographer " + i, "photographer" + i + "@contest.ru", null);
+                photographer.register(photoContest);
+                photographer.sendPhoto(photoContest, "photo-" + i);
+                promoted[i] = photographer.getParticipant(photoContest);
+            }
+            admin.closeApplicationSession(photoContest.id);
+            admin.peerReviewSession(photoContest.id);
+            coordinator.open(photoContest);
+
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            List<BufferedWriter> inputs = new ArrayList<>();
+            for (int worker = 0; worker < config.workers; worker++) {
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        Main.class.getName(), "tally-worker", String.valueOf(coordinator.getPort()))
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(process);
+                inputs.add(new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)));
+            }
+            if (!coordinator.awaitWorkers(config.workers, 30_000)) {
+                return "Only " + coordinator.getWorkers() + " of " + config.workers + " tally workers connected";
+            }
+
+            long start = System.nanoTime();
+            double[] cumulative = ContestSimulator.zipf(promoted.length, config.skew);
+            long[] expected = new long[promoted.length];
+            VoterSet[] voters = new VoterSet[promoted.length];
+            long likes = 0;
+            for (int voter = 0; voter < config.voters && promoted.length > 0; voter++) {
+                SplittableRandom random = ContestSimulator.random(config.seed, 1, voter);
+                BufferedWriter input = inputs.get(voter % config.workers);
+                for (int like = 0; like < config.likesPerVoter; like++) {
+                    int rank = ContestSimulator.pick(cumulative, random);
+                    input.write(photoContest.id + " " + promoted[rank].photographer.id + " " + voter + "\n");
+                    likes++;
+                    if (voters[rank] == null) {
+                        voters[rank] = new VoterSet();
+                    }
+                    if (voters[rank].add(voter)) {
+                        expected[rank]++;
+                    }
+                }
+            }
+            for (BufferedWriter input : inputs) {
+                input.close();
+            }
+            //Each worker prints number of its likes after reading all of them, or its failure
+            List<String> failures = new ArrayList<>();
+            for (Process process : processes) {
+                String answer = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                if (answer == null || answer.isEmpty() || !answer.chars().allMatch(Character::isDigit)) {
+                    failures.add(answer == null ? "Tally worker exited" : answer);
+                }
+            }
+            boolean collected = coordinator.collect(photoContest, 60_000);
+            long elapsed = System.nanoTime() - start;
+            admin.closeVotingSession(photoContest.id);
+
+            boolean exact = collected && failures.isEmpty();
+            long top = 0;
+            for (int rank = 0; rank < promoted.length; rank++) {
+                exact &= promoted[rank].getRate() == expected[rank];
+                top = Math.max(top, expected[rank]);
+            }
+            exact &= photoContest.winnerRate == top;
+            admin.chooseWinner(photoContest.id);
+            photoContest.getNotificationDispatcher().awaitDelivery();
+            String report = String.format(Locale.ROOT, "workers=%d likes=%d counted=%d deltas=%d winnerRate=%d exact=%b %.3f ms",
+                    config.workers, likes, photoContest.getVoteTally().getTotal(), coordinator.getDeltas(),
+                    photoContest.winnerRate, exact, elapsed / 1e6);
+            return failures.isEmpty() ? report : report + System.lineSeparator() + String.join(System.lineSeparator(), failures);
+        } catch (IOException exc) {
+            return "Tally failed: " + exc;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return "Tally interrupted";
+        } finally {
+            for (Process process : processes) {
+                try {
+                    process.waitFor(10, TimeUnit.SECONDS);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                }
+                process.destroy();
+            }
+            Output.swapSink(sink);
+        }
+    }
+
+    private static void runCommands(String[] args) {
+        Writer recorder = null;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("record=")) {
+                    recorder = Files.newBufferedWriter(Path.of(args[i].substring("record=".length())), StandardCharsets.UTF_8);
+                    Input.record(recorder);
+                } else {
+                    Input.setReader(Files.newBufferedReader(Path.of(args[i]), StandardCharsets.UTF_8));
+                }
+            }
+            long start = System.nanoTime();
+            int count = new CommandInterpreter(new Admin()).run();
+            Output.println(String.format(Locale.ROOT, "%d commands in %.3f ms", count, (System.nanoTime() - start) / 1e6));
+        } catch (IOException exc) {
+            Output.println("Cannot open " + exc.getMessage());
+        } finally {
+            Input.record(null);
+            if (recorder != null) {
+                try {
+                    recorder.close();
+                } catch (IOException ignored) {
+                    //Every line is already flushed
+                }
+            }
+            Output.flush();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Script of commands is read from the shared Input together with answers to the questions of photographers
+ */
+class CommandInterpreterTest {
+    private static final String SCRIPT = String.join("\n",
+            "contest nature Nature around us",
+            "# comment and empty line are skipped",
+            "",
+            "photographer Anna anna@contest.ru",
+            "photographer",
+            "Boris",
+            "5",
+            "1",
+            "bad-email",
+            "boris@contest.ru",
+            "register Anna nature",
+            "register Boris nature",
+            "register Nobody nature",
+            "photo Anna nature sea.png",
+            "photo Boris",
+            "forest.png",
+            "dance nature",
+            "like nature Anna voter",
+            "close-application nature") + "\n";
+
+    /**
+     * Sink, which keeps lines of dialog
+     */
+    private static final class LinesSink implements OutputSink {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public synchronized void write(String prefix, MessageTemplate template, String argument) {
+        }
+
+        @Override
+        public synchronized void println(String line) {
+            lines.add(line);
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+
+    private LinesSink sink;
+
+    @BeforeEach
+    void setUp() {
+        sink = new LinesSink();
+        Output.setSink(sink);
+    }
+
+    @AfterEach
+    void restore() {
+        Input.record(null);
+        Input.setReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        Output.setSink(new NullSink());
+    }
+
+    @Test
+    void scriptIsExecutedWithAnswersInBetween() {
+        Input.setReader(new StringReader(SCRIPT));
+        StringWriter record = new StringWriter();
+        Input.record(record);
+        Admin admin = new Admin();
+        CommandInterpreter interpreter = new CommandInterpreter(admin);
+        //contest, two photographers, two registrations, two photos and closing of application session
+        assertEquals(8, interpreter.run());
+        assertNull(Input.readLine());
+        //Every line is recorded, so the session can be replayed
+        assertEquals(SCRIPT, record.toString());
+        assertTrue(sink.lines.contains("Unknown photographer: Nobody"));
+        assertTrue(sink.lines.contains("Unknown command: dance nature"));
+        assertTrue(sink.lines.contains("Unknown command: like nature Anna voter"));
+        assertTrue(sink.lines.contains("Try to enter your email again, please: "));
+    }
+
+    @Test
+    void photosAreSentByScriptAndByAnswer() {
+        Input.setReader(new StringReader(SCRIPT.substring(0, SCRIPT.indexOf("dance"))));
+        List<PhotoContest> created = new ArrayList<>();
+        Admin admin = new Admin() {
+            @Override
+            PhotoContest createNewContest(String topic) {
+                PhotoContest photoContest = super.createNewContest(topic);
+                created.add(photoContest);
+                return photoContest;
+            }
+        };
+        CommandInterpreter interpreter = new CommandInterpreter(admin);
+        assertEquals(7, interpreter.run());
+        assertEquals(1, created.size());
+        PhotoContest contest = created.get(0);
+        List<String> photos = new ArrayList<>();
+        contest.getParticipants(PhotographerState.APPLICATION).forEach(participant -> photos.add(participant.getPhoto()));
+        photos.sort(null);
+        assertEquals(List.of("forest.png", "sea.png"), photos);
+    }
+
+    @Test
+    void questionAfterEndOfInputFails() {
+        Input.setReader(new StringReader("photographer\nCarl\n"));
+        CommandInterpreter interpreter = new CommandInterpreter(new Admin());
+        assertThrows(NoSuchElementException.class, interpreter::run);
+    }
+}
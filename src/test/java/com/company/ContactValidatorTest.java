@@ -0,0 +1,209 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Table-based checks of contacts give the same answers as the console checks they replaced
+ */
+class ContactValidatorTest {
+    private static final String ALPHABET = "abcxyzABZ019_.@-+() éЖ\t";
+
+    /**
+     * Console check of email before the validator, messages are returned instead of being printed
+     */
+    private static String oldEmailCheck(String newMail) {
+        if (newMail.equals("")) {
+            return "Oh, you didn't enter your email!";
+        } else if (!"abcdefghijklmnopqrstuvwxyz".contains(newMail.toLowerCase().substring(0, 1))) {
+            return "First letter have to start with the english character";
+        } else if (!newMail.contains("@")) {
+            return "Email have to have an @";
+        }
+        String[] st = newMail.split("@");
+        if (st.length < 2 || st[1].length() < 3) {
+            return "Email have to have at least one english letter before '.' and one after";
+        } else if (!st[1].contains(".")) {
+            return "Email have to have an . after the @ sign";
+        }
+        for (int i = 0; i < st[0].length(); i++) {
+            if (!"abcdefghijklmnopqrstuvwxyz1234567890_.".contains(newMail.substring(i, i + 1))) {
+                return "You can use only english letters, digits, '.' or '_' before the @ sign";
+            }
+        }
+        for (int i = st[0].length() + 1; i < newMail.indexOf('.'); i++) {
+            if (!"abcdefghijklmnopqrstuvwxyz".contains(newMail.substring(i, i + 1))) {
+                return "You can use only english letters and only one . after the @ sign";
+            }
+        }
+        for (int i = newMail.indexOf('.') + 1; i < newMail.length() - 1; i++) {
+            if (!"abcdefghijklmnopqrstuvwxyz".contains(newMail.substring(i, i + 1))) {
+                return "You can use only english letters or '.' after the @ sign";
+            }
+        }
+        if (!"abcdefghijklmnopqrstuvwxyz".contains(newMail.substring(newMail.length() - 1))) {
+            return "You can use only english letters and only one '.' after the @ sign";
+        }
+        return null;
+    }
+
+    /**
+     * Console check of phone number before the validator
+     */
+    private static String oldPhoneCheck(String newPhone) {
+        if (newPhone.equals("")) {
+            return "Oh, you didn't enter your phone number!";
+        }
+        String phoneNumber = "";
+        for (char c : newPhone.toCharArray()) {
+            if ("0123456789".contains(String.valueOf(c))) {
+                phoneNumber = phoneNumber.concat(String.valueOf(c));
+            } else if (!"()- +".contains(String.valueOf(c))) {
+                return "Phone number can contain only '+','(',')','-' and digits";
+            }
+            if (phoneNumber.length() > 11) {
+                return "Phone number have to have exactly 11 digits";
+            }
+        }
+        if (phoneNumber.length() != 11) {
+            return "Phone number have to have exactly 11 digits";
+        }
+        return null;
+    }
+
+    private static String message(ContactError error) {
+        return error == null ? null : error.message;
+    }
+
+    private static String randomText(SplittableRandom random, String alphabet, int maxLength) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Valid email with one changed, inserted or deleted character, so all checks are reached
+     */
+    private static String mutatedEmail(SplittableRandom random) {
+        StringBuilder mail = new StringBuilder(randomText(random, "abz", 4)).insert(0, 'a')
+                .append('@').append(randomText(random, "abz", 4)).append('.').append(randomText(random, "abz", 3));
+        int mutations = random.nextInt(3);
+        for (int i = 0; i < mutations && mail.length() > 0; i++) {
+            int at = random.nextInt(mail.length());
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            switch (random.nextInt(3)) {
+                case 0:
+                    mail.setCharAt(at, c);
+                    break;
+                case 1:
+                    mail.insert(at, c);
+                    break;
+                default:
+                    mail.deleteCharAt(at);
+                    break;
+            }
+        }
+        return mail.toString();
+    }
+
+    @Test
+    void emailChecksAsBefore() {
+        SplittableRandom random = new SplittableRandom(10);
+        int valid = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String mail = i % 2 == 0 ? mutatedEmail(random) : randomText(random, ALPHABET, 16);
+            String expected = oldEmailCheck(mail);
+            assertEquals(expected, message(ContactValidator.checkEmail(mail)), "email '" + mail + "'");
+            if (expected == null) {
+                valid++;
+            }
+        }
+        //Fuzzing reaches valid emails, not only the first checks
+        assertTrue(valid > 10_000, "valid emails: " + valid);
+    }
+
+    @Test
+    void phoneChecksAsBefore() {
+        SplittableRandom random = new SplittableRandom(11);
+        int valid = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String phone = randomText(random, i % 2 == 0 ? "0123456789()- +" : "0123456789()- +a.", 18);
+            String expected = oldPhoneCheck(phone);
+            assertEquals(expected, message(ContactValidator.checkPhoneNumber(phone)), "phone '" + phone + "'");
+            if (expected == null) {
+                valid++;
+                assertEquals(phone.replaceAll("[^0-9]", ""), ContactValidator.phoneDigits(phone));
+            }
+        }
+        assertTrue(valid > 1_000, "valid phone numbers: " + valid);
+    }
+
+    @Test
+    void edgeCasesOfEmail() {
+        for (String mail : new String[]{"a@", "a@@bcd.e", "a@bcd.", "a.b@cd.ef", "A@bcd.ef", "a@bcdef",
+                "a@b.c", "a@bc.d.e", "a_1.b@mail.ru", "a@mail.r1", "a@mail.ru@x"}) {
+            assertEquals(oldEmailCheck(mail), message(ContactValidator.checkEmail(mail)), "email '" + mail + "'");
+        }
+        assertNull(ContactValidator.checkEmail("photographer_1@contest.ru"));
+    }
+
+    @Test
+    void importReportsRowsWithMistakes() throws IOException {
+        String csv = "name,email,phone\n"
+                + "Anna,anna@contest.ru,\n"
+                + "Boris,,8 (999) 123-45-67\n"
+                + "\n"
+                + "\"Clara, junior\",clara@contest.ru,89991234567\n"
+                + ",nobody@contest.ru,\n"
+                + "Dmitry,,\n"
+                + "Egor,egor@contest,\n"
+                + "Fedor,,8999\n"
+                + "Only two,fields\n";
+        ImportResult result = PhotographerImport.importCsv(new BufferedReader(new StringReader(csv)));
+        assertEquals(3, result.photographers.size());
+        assertEquals("Anna", result.photographers.get(0).name);
+        assertEquals("89991234567", result.photographers.get(1).phoneNumber);
+        assertEquals("Clara, junior", result.photographers.get(2).name);
+        assertEquals(5, result.errors.size());
+        assertEquals("Row 6: Name is empty", result.errors.get(0).toString());
+        assertEquals("Row 7: At least one contact is needed", result.errors.get(1).toString());
+        assertEquals(8, result.errors.get(2).row);
+        assertEquals(ContactError.EMAIL_NO_DOT.message, result.errors.get(2).message);
+        assertEquals(ContactError.PHONE_LENGTH.message, result.errors.get(3).message);
+        assertEquals(10, result.errors.get(4).row);
+    }
+
+    @Test
+    void importKeepsOrderOfRowsAcrossBatches() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        int rows = 20_000;
+        for (int i = 0; i < rows; i++) {
+            csv.append("Photographer ").append(i).append(',');
+            csv.append(i % 1000 == 0 ? "broken" : "photographer" + i + "@contest.ru").append(",\n");
+        }
+        ImportResult result = PhotographerImport.importCsv(new BufferedReader(new StringReader(csv.toString())));
+        assertEquals(rows / 1000, result.errors.size());
+        assertEquals(rows - rows / 1000, result.photographers.size());
+        for (int i = 0; i < result.errors.size(); i++) {
+            assertEquals(i * 1000L + 1, result.errors.get(i).row);
+        }
+        //Rows of parallel batches are added in order of the file
+        int next = 0;
+        for (int i = 0; i < rows; i++) {
+            if (i % 1000 != 0) {
+                assertEquals("Photographer " + i, result.photographers.get(next++).name);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Snapshots of closed contests are written by admin, the archive is opened again and read back
+ */
+class ContestArchiveTest {
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void quiet() {
+        Output.setSink(new NullSink());
+    }
+
+    /**
+     * Contest after choosing of winner, photographers 1 and 2 have the most likes
+     *
+     * @return participants of the contest, photographers leave it after archiving
+     */
+    private static Participant[] closedContest(Admin admin, String topic, Photographer[] photographers) {
+        PhotoContest photoContest = admin.createNewContest(topic);
+        for (int i = 0; i < photographers.length; i++) {
+            photographers[i].register(photoContest);
+            photographers[i].sendPhoto(photoContest, topic + "-photo-" + i);
+        }
+        admin.closeApplicationSession(photoContest.id);
+        admin.peerReviewSession(photoContest.id);
+        for (int voter = 0; voter < 3; voter++) {
+            photoContest.like(photographers[1], voter);
+            photoContest.like(photographers[2], voter);
+        }
+        photoContest.like(photographers[0], 0);
+        admin.closeVotingSession(photoContest.id);
+        Participant[] participants = new Participant[photographers.length];
+        for (int i = 0; i < photographers.length; i++) {
+            participants[i] = photographers[i].getParticipant(photoContest);
+        }
+        admin.chooseWinner(photoContest.id);
+        photoContest.getNotificationDispatcher().awaitDelivery();
+        return participants;
+    }
+
+    private static Photographer[] photographers(String prefix) {
+        return new Photographer[]{
+                Photographer.imported("Анна " + prefix, prefix + "anna@contest.ru", null),
+                Photographer.imported("Boris " + prefix, null, "8999123456" + prefix.length()),
+                Photographer.imported("Clara " + prefix, prefix + "clara@contest.ru", "8999765432" + prefix.length()),
+        };
+    }
+
+    @Test
+    void snapshotRoundTrip() throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        Admin admin = new Admin.Builder(contestRegistry).archive(ContestArchive.open(directory)).build();
+        Photographer[] photographers = photographers("a");
+        Participant[] participants = closedContest(admin, "Осень", photographers);
+        long id = participants[0].photoContest.id;
+        assertNull(contestRegistry.get(id));
+
+        ArchivedContest archived = ContestArchive.open(directory).get(id);
+        assertNotNull(archived);
+        assertEquals("Осень", archived.getTopic());
+        assertEquals(3, archived.getWinnerRate());
+        assertEquals(photographers.length, archived.size());
+        for (int row = 0; row < archived.size(); row++) {
+            int i = 0;
+            while (photographers[i].id != archived.getPhotographerId(row)) {
+                i++;
+            }
+            Photographer photographer = photographers[i];
+            Participant participant = participants[i];
+            assertEquals(photographer.name, archived.getName(row));
+            assertEquals(photographer.email, archived.getEmail(row));
+            assertEquals(photographer.phoneNumber, archived.getPhoneNumber(row));
+            assertEquals("Осень-photo-" + i, archived.getPhoto(row));
+            assertEquals(i == 0 ? 1 : 3, archived.getRate(row));
+            assertEquals(participant.getState(), archived.getState(row));
+            assertEquals(participant.isAccepted(), archived.isAccepted(row));
+        }
+        List<String> winners = archived.getWinners();
+        assertEquals(2, winners.size());
+        assertTrue(winners.contains("Boris a") && winners.contains("Clara a"));
+    }
+
+    @Test
+    void contestWithoutParticipantsRoundTrip() throws IOException {
+        ContestArchive archive = ContestArchive.open(directory);
+        PhotoContest photoContest = new PhotoContest("Empty", new DuplicateIndex());
+        archive.store(photoContest);
+        ArchivedContest archived = ContestArchive.open(directory).get(photoContest.id);
+        assertEquals("Empty", archived.getTopic());
+        assertEquals(0, archived.size());
+        assertTrue(archived.getWinners().isEmpty());
+    }
+
+    @Test
+    void damagedSnapshotIsNotRead() throws IOException {
+        ContestArchive archive = ContestArchive.open(directory);
+        PhotoContest photoContest = new PhotoContest("Damaged", new DuplicateIndex());
+        archive.store(photoContest);
+        Path file = directory.resolve("contest-" + photoContest.id + ".snap");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0}), 0);
+        }
+        ArchivedContest archived = ContestArchive.open(directory).get(photoContest.id);
+        assertThrows(IllegalStateException.class, archived::getTopic);
+    }
+
+    @Test
+    void snapshotIsNeverReplacedAndItsIdIsReserved() throws IOException {
+        ContestArchive archive = ContestArchive.open(directory);
+        PhotoContest first = new PhotoContest("First", new DuplicateIndex());
+        archive.store(first);
+        assertThrows(FileAlreadyExistsException.class, () -> archive.store(first));
+        //Archive opened after restart knows the file too
+        assertThrows(FileAlreadyExistsException.class, () -> ContestArchive.open(directory).store(first));
+        //Temporary file of a crashed store and foreign files are not snapshots
+        Files.write(directory.resolve("contest-" + (first.id + 1000) + ".tmp"), new byte[]{1, 2, 3});
+        Files.write(directory.resolve("contest-notes.snap"), new byte[]{1, 2, 3});
+        //Snapshot of another process with id, which is not given in this one yet
+        long foreign = first.id + 5000;
+        Files.copy(directory.resolve("contest-" + first.id + ".snap"), directory.resolve("contest-" + foreign + ".snap"));
+        ContestArchive reopened = ContestArchive.open(directory);
+        assertEquals(2, reopened.size());
+        assertEquals("First", reopened.get(first.id).getTopic());
+        assertTrue(new PhotoContest("Next", new DuplicateIndex()).id > foreign);
+    }
+}
@@ -0,0 +1,387 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contests are written to the journal, the journal is closed and opened again into a new registry,
+ * as after restart of the process
+ */
+class ContestJournalTest {
+    private static final int SEGMENT = 4096;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void quiet() {
+        Output.setSink(new NullSink());
+    }
+
+    private ContestJournal open(ContestRegistry contestRegistry) throws IOException {
+        return ContestJournal.open(directory, contestRegistry, SEGMENT, 2);
+    }
+
+    private static Photographer[] join(PhotoContest photoContest, String prefix, int count) {
+        Photographer[] photographers = new Photographer[count];
+        for (int i = 0; i < count; i++) {
+            photographers[i] = Photographer.imported(prefix + i, prefix + i + "@contest.ru", null);
+            photographers[i].register(photoContest);
+            photographers[i].sendPhoto(photoContest, prefix + "-photo-" + i);
+        }
+        return photographers;
+    }
+
+    private static Participant participant(PhotoContest photoContest, String email) {
+        return photoContest.getSubscribers().find(email).getParticipant(photoContest);
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    void replayRebuildsStatesLikesAndRates() throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        long voting;
+        long closed;
+        try (ContestJournal journal = open(contestRegistry)) {
+            Admin admin = new Admin.Builder(contestRegistry).journal(journal).build();
+            PhotoContest onVote = admin.createNewContest("On vote");
+            Photographer[] photographers = join(onVote, "v", 3);
+            admin.closeApplicationSession(onVote.id);
+            admin.peerReviewSession(onVote.id);
+            for (int voter = 0; voter < 10; voter++) {
+                assertTrue(onVote.like(photographers[voter % 3], voter));
+            }
+            assertFalse(onVote.like(photographers[0], 0));
+            voting = onVote.id;
+
+            PhotoContest onAwarding = admin.createNewContest("On awarding");
+            Photographer[] others = join(onAwarding, "a", 2);
+            admin.closeApplicationSession(onAwarding.id);
+            admin.peerReviewSession(onAwarding.id);
+            onAwarding.like(others[1], 1);
+            onAwarding.like(others[1], 2);
+            onAwarding.like(others[0], 1);
+            admin.closeVotingSession(onAwarding.id);
+            closed = onAwarding.id;
+        }
+
+        ContestRegistry recovered = new ContestRegistry();
+        try (ContestJournal journal = open(recovered)) {
+            assertEquals(2, recovered.size());
+            PhotoContest onVote = recovered.get(voting);
+            assertEquals("On vote", onVote.topic);
+            assertEquals(ContestState.VOTE, onVote.contestState);
+            assertEquals(10, onVote.getVoteTally().getTotal());
+            Participant first = participant(onVote, "v0@contest.ru");
+            assertEquals(4, onVote.getVoteTally().getLikes(first));
+            assertEquals(PhotographerState.PROMOTED, first.getState());
+            assertEquals("v-photo-0", first.getPhoto());
+            //Voters are recovered too, so repeated like is still rejected
+            assertFalse(onVote.like(first, 3));
+            assertTrue(onVote.like(first, 100));
+
+            PhotoContest onAwarding = recovered.get(closed);
+            assertEquals(ContestState.AWARDING, onAwarding.contestState);
+            assertEquals(2, onAwarding.winnerRate);
+            assertEquals(2, participant(onAwarding, "a1@contest.ru").getRate());
+            assertEquals(1, participant(onAwarding, "a0@contest.ru").getRate());
+        }
+    }
+
+    @Test
+    void plagiarismCheckerIsRecovered() throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        long exact;
+        long perceptual;
+        try (ContestJournal journal = open(contestRegistry)) {
+            Admin admin = new Admin.Builder(contestRegistry).journal(journal).build();
+            exact = admin.createNewContest("Exact").id;
+            perceptual = admin.createNewContest("Perceptual", new PerceptualDuplicateIndex(7)).id;
+        }
+
+        ContestRegistry recovered = new ContestRegistry();
+        try (ContestJournal journal = open(recovered)) {
+            assertInstanceOf(DuplicateIndex.class, recovered.get(exact).getPlagiarismChecker());
+            PlagiarismChecker plagiarismChecker = recovered.get(perceptual).getPlagiarismChecker();
+            assertInstanceOf(PerceptualDuplicateIndex.class, plagiarismChecker);
+            assertEquals(7, ((PerceptualDuplicateIndex) plagiarismChecker).getThreshold());
+        }
+    }
+
+    /**
+     * @param reversed - gradient from right to left
+     * @param shift - brightness added to every pixel
+     * @return PNG with horizontal gradient
+     */
+    private static byte[] gradient(boolean reversed, int shift) throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 64; x++) {
+            int grey = Math.min(255, (reversed ? 63 - x : x) * 3 + shift);
+            for (int y = 0; y < 64; y++) {
+                image.setRGB(x, y, grey * 0x010101);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    @Test
+    void recoveredContestsReadPhotosOfStore(@TempDir Path storeDirectory) throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        long id;
+        try (PhotoStore photoStore = PhotoStore.open(storeDirectory);
+             DerivativeGenerator derivativeGenerator = new DerivativeGenerator(storeDirectory.resolve("derivatives"), photoStore, 1);
+             ContestJournal journal = ContestJournal.open(directory, contestRegistry, photoStore, derivativeGenerator, SEGMENT, 2)) {
+            Admin admin = new Admin.Builder(contestRegistry).journal(journal).photoStore(photoStore)
+                    .derivativeGenerator(derivativeGenerator).build();
+            PhotoContest photoContest = admin.createNewContest("Store", new PerceptualDuplicateIndex(10, photoStore));
+            String[] names = {"original", "brighter", "mirrored"};
+            byte[][] photos = {gradient(false, 0), gradient(false, 20), gradient(true, 0)};
+            for (int i = 0; i < names.length; i++) {
+                Photographer photographer = Photographer.imported(names[i], names[i] + "@contest.ru", null);
+                photographer.register(photoContest);
+                assertTrue(photographer.sendPhoto(photoContest, photos[i]));
+            }
+            id = photoContest.id;
+        }
+
+        ContestRegistry recovered = new ContestRegistry();
+        try (PhotoStore photoStore = PhotoStore.open(storeDirectory);
+             DerivativeGenerator derivativeGenerator = new DerivativeGenerator(storeDirectory.resolve("derivatives"), photoStore, 1);
+             ContestJournal journal = ContestJournal.open(directory, recovered, photoStore, derivativeGenerator, SEGMENT, 2)) {
+            PhotoContest photoContest = recovered.get(id);
+            assertSame(photoStore, photoContest.photoStore);
+            assertSame(derivativeGenerator, photoContest.derivativeGenerator);
+            //Images of references are hashed again, so brighter copy is still a near-duplicate of the original
+            Collection<? extends Collection<Participant>> groups = photoContest.getPlagiarismChecker().getDuplicateGroups();
+            assertEquals(1, groups.size());
+            Set<String> grouped = new HashSet<>();
+            for (Participant participant : groups.iterator().next()) {
+                grouped.add(participant.photographer.name);
+            }
+            assertEquals(Set.of("original", "brighter"), grouped);
+            //Uploads go on after recovery
+            Photographer late = Photographer.imported("late", "late@contest.ru", null);
+            late.register(photoContest);
+            assertTrue(late.sendPhoto(photoContest, gradient(true, 40)));
+            assertEquals(PhotographerState.APPLICATION, late.getParticipant(photoContest).getState());
+        }
+    }
+
+    @Test
+    void tornTailIsCutAndOverwritten() throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        long kept;
+        long torn;
+        try (ContestJournal journal = open(contestRegistry)) {
+            Admin admin = new Admin.Builder(contestRegistry).journal(journal).build();
+            kept = admin.createNewContest("Kept").id;
+            torn = admin.createNewContest("Torn").id;
+            journal.sync();
+        }
+        //Last record is CONTEST of the second contest, its data is damaged as by a crash in the middle of writing
+        Path segment = directory.resolve("journal-00000.log");
+        int last = lastRecord(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), last + 9);
+        }
+
+        ContestRegistry recovered = new ContestRegistry();
+        long next;
+        try (ContestJournal journal = open(recovered)) {
+            assertNotNull(recovered.get(kept));
+            assertNull(recovered.get(torn));
+            //Writing goes on in place of the torn record
+            next = new Admin.Builder(recovered).journal(journal).build().createNewContest("After crash").id;
+            journal.sync();
+            assertEquals(last, lastRecord(segment));
+        }
+
+        ContestRegistry again = new ContestRegistry();
+        try (ContestJournal journal = open(again)) {
+            assertEquals(2, again.size());
+            assertNotNull(again.get(kept));
+            assertEquals("After crash", again.get(next).topic);
+        }
+    }
+
+    @Test
+    void likesDoNotWaitForGroupCommit() throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        long id;
+        CompletableFuture<Boolean> committed;
+        //Like, which waits for its commit, would take a second
+        try (ContestJournal journal = ContestJournal.open(directory, contestRegistry, SEGMENT, 1_000)) {
+            Admin admin = new Admin.Builder(contestRegistry).journal(journal).build();
+            PhotoContest photoContest = admin.createNewContest("Fast likes");
+            Photographer[] photographers = join(photoContest, "f", 2);
+            admin.closeApplicationSession(photoContest.id);
+            admin.peerReviewSession(photoContest.id);
+            id = photoContest.id;
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                for (int voter = 0; voter < 500; voter++) {
+                    assertTrue(photoContest.like(photographers[voter % 2], voter));
+                }
+            });
+            committed = journal.committed();
+            assertEquals(500, photoContest.getVoteTally().getTotal());
+        }
+        //Commit after the likes puts them on disk
+        assertTrue(committed.join());
+
+        ContestRegistry recovered = new ContestRegistry();
+        try (ContestJournal journal = open(recovered)) {
+            assertEquals(500, recovered.get(id).getVoteTally().getTotal());
+        }
+    }
+
+    @Test
+    void recordLongerThanSegmentIsRejected() throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        long kept;
+        try (ContestJournal journal = open(contestRegistry)) {
+            Admin admin = new Admin.Builder(contestRegistry).journal(journal).build();
+            String topic = "T".repeat(SEGMENT);
+            IllegalArgumentException exc = assertThrows(IllegalArgumentException.class, () -> admin.createNewContest(topic));
+            assertTrue(exc.getMessage().contains("does not fit"));
+            //Rejected record does not damage the journal
+            PhotoContest photoContest = admin.createNewContest("Short");
+            Photographer photographer = Photographer.imported("L".repeat(SEGMENT), "long@contest.ru", null);
+            assertThrows(IllegalArgumentException.class, () -> photographer.register(photoContest));
+            assertTrue(photoContest.getPhotographersList().isEmpty());
+            assertNull(photoContest.getSubscribers().find("long@contest.ru"));
+            //Rejected photo is not taken, the participant can send another one
+            Photographer sender = Photographer.imported("Sender", "sender@contest.ru", null);
+            sender.register(photoContest);
+            assertThrows(IllegalArgumentException.class, () -> sender.sendPhoto(photoContest, "P".repeat(SEGMENT)));
+            Participant participant = sender.getParticipant(photoContest);
+            assertEquals(PhotographerState.REGISTRATION, participant.getState());
+            assertNull(participant.getPhoto());
+            assertTrue(sender.sendPhoto(photoContest, "short.png"));
+            kept = photoContest.id;
+        }
+
+        ContestRegistry recovered = new ContestRegistry();
+        try (ContestJournal journal = open(recovered)) {
+            assertEquals(1, recovered.size());
+            assertEquals("Short", recovered.get(kept).topic);
+            assertEquals("short.png", participant(recovered.get(kept), "sender@contest.ru").getPhoto());
+        }
+    }
+
+    @Test
+    void closedJournalDoesNotReportRecordsAsDurable() throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        ContestJournal journal = open(contestRegistry);
+        Admin admin = new Admin.Builder(contestRegistry).journal(journal).build();
+        admin.createNewContest("Before close");
+        journal.sync();
+        assertTrue(journal.awaitCommit());
+        journal.close();
+        assertFalse(journal.awaitCommit());
+        //Record after close is in mapped memory only
+        admin.createNewContest("After close");
+        assertThrows(IllegalStateException.class, journal::sync);
+    }
+
+    /**
+     * @param segment - segment file
+     * @return position of the last record before the end mark
+     */
+    private static int lastRecord(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int last = -1;
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0) {
+                break;
+            }
+            last = buffer.position();
+            buffer.position(buffer.position() + 8 + length);
+        }
+        return last;
+    }
+
+    @Test
+    void archivedContestsAreNotReplayedAndTheirSegmentsRetire(@TempDir Path archiveDirectory) throws IOException {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        long live;
+        long maxSegments = 0;
+        Photographer returning = null;
+        long fresh;
+        try (ContestJournal journal = open(contestRegistry)) {
+            Admin admin = new Admin.Builder(contestRegistry).journal(journal).archive(ContestArchive.open(archiveDirectory)).build();
+            PhotoContest keep = admin.createNewContest("Live");
+            Photographer[] kept = join(keep, "k", 2);
+            admin.closeApplicationSession(keep.id);
+            admin.peerReviewSession(keep.id);
+            keep.like(kept[0], 1);
+            live = keep.id;
+            for (int round = 0; round < 20; round++) {
+                PhotoContest photoContest = admin.createNewContest("Closed " + round);
+                Photographer[] photographers = join(photoContest, "c" + round + "-", 8);
+                if (round == 0) {
+                    returning = photographers[0];
+                }
+                admin.closeApplicationSession(photoContest.id);
+                admin.peerReviewSession(photoContest.id);
+                for (int voter = 0; voter < 24; voter++) {
+                    photoContest.like(photographers[voter % 8], voter);
+                }
+                admin.closeVotingSession(photoContest.id);
+                admin.chooseWinner(photoContest.id);
+                photoContest.getNotificationDispatcher().awaitDelivery();
+                maxSegments = Math.max(maxSegments, segments());
+            }
+            keep.like(kept[1], 2);
+            PhotoContest next = admin.createNewContest("Fresh");
+            //Record of the photographer was in a deleted segment
+            returning.register(next);
+            fresh = next.id;
+        }
+        assertTrue(maxSegments <= 4, "segments of archived contests are not deleted: " + maxSegments);
+
+        ContestRegistry recovered = new ContestRegistry();
+        try (ContestJournal journal = open(recovered)) {
+            assertEquals(2, recovered.size());
+            PhotoContest keep = recovered.get(live);
+            assertEquals(ContestState.VOTE, keep.contestState);
+            assertEquals(2, keep.getVoteTally().getTotal());
+            assertEquals(1, recovered.get(fresh).getPhotographersList().size());
+            assertNotNull(recovered.get(fresh).getSubscribers().find("c0-0@contest.ru"));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Histograms keep percentiles within width of their buckets, shared metrics are seen through JMX
+ * Metrics are shared by all contests of the process, so counters are compared with their values before the test
+ */
+class ContestMetricsTest {
+    @BeforeEach
+    void quiet() {
+        Output.setSink(new NullSink());
+    }
+
+    @Test
+    void percentilesAreWithinBucketWidth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000L * 10_001 / 2, histogram.getSum());
+        assertEquals(10_000, histogram.getMax());
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 5_000 && median <= 5_000 * 1.13, "p50 " + median);
+        long tail = histogram.getPercentile(99);
+        assertTrue(tail >= 9_900 && tail <= 10_000, "p99 " + tail);
+        assertEquals(10_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    void smallAndNegativeValuesHaveExactBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(15);
+        assertEquals(4, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(25));
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(15, histogram.getPercentile(100));
+        //The biggest value is in the last bucket
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(200_000, histogram.getCount());
+        assertEquals(49_999, histogram.getMax());
+    }
+
+    @Test
+    void attributesAreReadThroughMBeanServer() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.company:type=ContestMetrics");
+        ContestMetrics metrics = ContestMetrics.shared();
+        long registered = (Long) server.getAttribute(name, "participants.REGISTRATION");
+        long fanOuts = (Long) server.getAttribute(name, "fanOut.count");
+        PhotoContest photoContest = new Admin().createNewContest("Metrics");
+        photoContest.subscribe(Photographer.imported("Anna", "metrics@contest.ru", null));
+        metrics.recordFanOut(3);
+        assertEquals(registered + 1, server.getAttribute(name, "participants.REGISTRATION"));
+        assertEquals(fanOuts + 1, server.getAttribute(name, "fanOut.count"));
+        assertEquals(metrics.getLatency(ContestMetrics.Phase.VOTING).getCount(), server.getAttribute(name, "votingSession.count"));
+        assertEquals(2, server.getAttributes(name, new String[]{"fanOut.max", "unknown.count", "chooseWinner.p99"}).size());
+        assertThrows(AttributeNotFoundException.class, () -> metrics.getAttribute("fanOut.p75"));
+        assertThrows(AttributeNotFoundException.class, () -> metrics.getAttribute("participants.NOBODY"));
+        assertTrue(((String) server.invoke(name, "dump", null, null)).contains("participants.REGISTRATION"));
+    }
+
+    @Test
+    void dumpIsGivenPeriodically() throws InterruptedException {
+        BlockingQueue<String> dumps = new ArrayBlockingQueue<>(16);
+        ContestMetrics metrics = ContestMetrics.shared();
+        metrics.startDump(10, dumps::offer);
+        try {
+            String dump = dumps.poll(5, TimeUnit.SECONDS);
+            assertNotNull(dump);
+            assertTrue(dump.contains("peerReviewSession"));
+            assertNotNull(dumps.poll(5, TimeUnit.SECONDS));
+        } finally {
+            metrics.stopDump();
+        }
+    }
+}
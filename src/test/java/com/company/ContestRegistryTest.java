@@ -0,0 +1,87 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many contests are created and moved through their states from several threads at once
+ */
+class ContestRegistryTest {
+    private static final int THREADS = 8;
+    private static final int CONTESTS = 2000;
+
+    @BeforeEach
+    void quiet() {
+        Output.setSink(new NullSink());
+    }
+
+    @Test
+    void contestsCreatedAtOnceAreFoundById() throws Exception {
+        ContestRegistry contestRegistry = new ContestRegistry();
+        Admin admin = new Admin.Builder(contestRegistry).build();
+        ConcurrentHashMap<Long, PhotoContest> created = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int from = thread;
+            tasks.add(executor.submit(() -> {
+                for (int i = from; i < CONTESTS; i += THREADS) {
+                    PhotoContest photoContest = admin.createNewContest("Contest " + i);
+                    created.put(photoContest.id, photoContest);
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+        assertEquals(CONTESTS, created.size());
+        assertEquals(CONTESTS, contestRegistry.size());
+        created.forEach((id, photoContest) -> assertSame(photoContest, admin.getContest(id)));
+        long any = created.keySet().iterator().next();
+        assertSame(created.get(any), contestRegistry.remove(any));
+        assertNull(admin.getContest(any));
+        assertEquals(CONTESTS - 1, contestRegistry.size());
+    }
+
+    @Test
+    void concurrentDeadlinesAreNotLost() throws Exception {
+        PhotoContest[] contests = new PhotoContest[20 * CONTESTS];
+        for (int i = 0; i < contests.length; i++) {
+            contests[i] = new PhotoContest("Contest " + i);
+        }
+        //Three threads finish the state of every contest at once
+        int threads = 3;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            executor.submit(() -> {
+                start.await();
+                for (PhotoContest photoContest : contests) {
+                    photoContest.deadline();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        for (PhotoContest photoContest : contests) {
+            assertEquals(ContestState.AWARDING, photoContest.contestState);
+        }
+    }
+}
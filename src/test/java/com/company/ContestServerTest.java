@@ -0,0 +1,192 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Thousands of clients register, send photos and vote at the same time, every operation is taken exactly once
+ */
+class ContestServerTest {
+    private static final int CLIENTS = 3000;
+    //Clients, who repeat their request at the same time
+    private static final int REPEATED = 300;
+    private static final Pattern PHOTOGRAPHER = Pattern.compile("\"photographer\":(\\d+)");
+    private static final Pattern LIKES = Pattern.compile("\"likes\":(\\d+)");
+
+    private Admin admin;
+    private PhotoContest photoContest;
+    private ContestServer server;
+    private ExecutorService clientThreads;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Output.setSink(new NullSink());
+        admin = new Admin();
+        photoContest = admin.createNewContest("Server");
+        server = new ContestServer(admin, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 8);
+        server.start();
+        clientThreads = Executors.newFixedThreadPool(4);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientThreads)
+                .connectTimeout(Duration.ofSeconds(30)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        clientThreads.shutdownNow();
+    }
+
+    private CompletableFuture<HttpResponse<String>> request(String method, String operation, String... parameters) {
+        StringBuilder uri = new StringBuilder("http://127.0.0.1:").append(server.getPort())
+                .append("/contests/").append(photoContest.id).append('/').append(operation);
+        for (int i = 0; i < parameters.length; i += 2) {
+            uri.append(i == 0 ? '?' : '&').append(parameters[i]).append('=')
+                    .append(URLEncoder.encode(parameters[i + 1], StandardCharsets.UTF_8));
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri.toString())).timeout(Duration.ofSeconds(60))
+                .method(method, HttpRequest.BodyPublishers.noBody()).build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<HttpResponse<String>> all(List<CompletableFuture<HttpResponse<String>>> requests) {
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).join();
+        List<HttpResponse<String>> responses = new ArrayList<>(requests.size());
+        for (CompletableFuture<HttpResponse<String>> request : requests) {
+            responses.add(request.join());
+        }
+        return responses;
+    }
+
+    private static long number(Pattern pattern, HttpResponse<String> response) {
+        Matcher matcher = pattern.matcher(response.body());
+        assertTrue(matcher.find(), response.body());
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static String phone(int i) {
+        return String.format("8999%07d", i);
+    }
+
+    @Test
+    void concurrentClientsRegisterSendPhotosAndVoteOnce() {
+        //The same person registers twice at once, with the phone number in another notation
+        List<CompletableFuture<HttpResponse<String>>> registrations = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            registrations.add(request("POST", "register", "name", "Photographer " + i, "contact", phone(i)));
+            if (i < REPEATED) {
+                String digits = phone(i);
+                registrations.add(request("POST", "register", "name", "Photographer " + i, "contact",
+                        digits.charAt(0) + " (" + digits.substring(1, 4) + ") " + digits.substring(4, 7) + "-" + digits.substring(7)));
+            }
+        }
+        HashSet<Long> ids = new HashSet<>();
+        List<HttpResponse<String>> registered = all(registrations);
+        for (HttpResponse<String> response : registered) {
+            assertEquals(200, response.statusCode(), response.body());
+            ids.add(number(PHOTOGRAPHER, response));
+        }
+        assertEquals(CLIENTS, ids.size());
+        for (int i = 0, response = 0; i < REPEATED; i++, response += 2) {
+            assertEquals(number(PHOTOGRAPHER, registered.get(response)), number(PHOTOGRAPHER, registered.get(response + 1)));
+        }
+        assertEquals(CLIENTS, photoContest.getPhotographersList().size());
+
+        //Two different photos of one photographer at once, only one is taken
+        List<CompletableFuture<HttpResponse<String>>> photos = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            photos.add(request("POST", "photos", "contact", phone(i), "photo", "photo-" + i + "-a"));
+            photos.add(request("POST", "photos", "contact", phone(i), "photo", "photo-" + i + "-b"));
+        }
+        List<HttpResponse<String>> sent = all(photos);
+        for (int i = 0; i < CLIENTS; i++) {
+            int first = sent.get(2 * i).statusCode();
+            int second = sent.get(2 * i + 1).statusCode();
+            assertTrue(first == 200 && second == 409 || first == 409 && second == 200,
+                    "photos of photographer " + i + ": " + first + ", " + second);
+        }
+        assertEquals(CLIENTS, photoContest.getParticipants(PhotographerState.APPLICATION).size());
+
+        admin.closeApplicationSession(photoContest.id);
+        admin.peerReviewSession(photoContest.id);
+        assertEquals(ContestState.VOTE, photoContest.contestState);
+
+        //Every voter likes one of ten photos, some voters press twice
+        List<CompletableFuture<HttpResponse<String>>> votes = new ArrayList<>();
+        for (int voter = 0; voter < CLIENTS; voter++) {
+            votes.add(request("POST", "votes", "photographer", phone(voter % 10), "voter", String.valueOf(voter)));
+            if (voter < REPEATED) {
+                votes.add(request("POST", "votes", "photographer", phone(voter % 10), "voter", String.valueOf(voter)));
+            }
+        }
+        List<HttpResponse<String>> voted = all(votes);
+        for (int voter = 0, response = 0; voter < CLIENTS; voter++) {
+            int first = voted.get(response++).statusCode();
+            int second = voter < REPEATED ? voted.get(response++).statusCode() : 409;
+            assertTrue(first == 200 && second == 409 || first == 409 && second == 200,
+                    "likes of voter " + voter + ": " + first + ", " + second);
+        }
+        assertEquals(CLIENTS, photoContest.getVoteTally().getTotal());
+        assertEquals(400, request("POST", "votes", "photographer", phone(1), "voter", "-1").join().statusCode());
+
+        HttpResponse<String> standings = request("GET", "standings", "top", "10").join();
+        assertEquals(200, standings.statusCode());
+        Matcher likes = LIKES.matcher(standings.body());
+        int places = 0;
+        while (likes.find()) {
+            assertEquals(CLIENTS / 10, Long.parseLong(likes.group(1)));
+            places++;
+        }
+        assertEquals(10, places);
+    }
+
+    @Test
+    void photographerRegisteredOutsideApiIsNotRegisteredTwice() {
+        Photographer console = Photographer.imported("Console", "console@contest.ru", "89990001122");
+        console.register(photoContest);
+        HttpResponse<String> byEmail = request("POST", "register", "name", "Console", "contact", "console@contest.ru").join();
+        HttpResponse<String> byPhone = request("POST", "register", "name", "Console", "contact", "8 (999) 000-11-22").join();
+        assertEquals(200, byEmail.statusCode(), byEmail.body());
+        assertEquals(console.id, number(PHOTOGRAPHER, byEmail));
+        assertEquals(console.id, number(PHOTOGRAPHER, byPhone));
+        assertEquals(1, photoContest.getPhotographersList().size());
+        assertEquals(200, request("POST", "photos", "contact", "console@contest.ru", "photo", "console-photo").join().statusCode());
+        assertEquals("console-photo", console.getParticipant(photoContest).getPhoto());
+    }
+
+    @Test
+    void requestsFollowStateOfContest() {
+        assertEquals(400, request("POST", "register", "name", "Nobody", "contact", "nobody@contest").join().statusCode());
+        assertEquals(404, request("POST", "photos", "contact", "unknown@contest.ru", "photo", "x").join().statusCode());
+        assertEquals(200, request("POST", "register", "name", "Early", "contact", "early@contest.ru").join().statusCode());
+        //Voting is not open yet
+        assertEquals(409, request("POST", "votes", "photographer", "early@contest.ru", "voter", "1").join().statusCode());
+        assertEquals(405, request("GET", "register").join().statusCode());
+        admin.closeApplicationSession(photoContest.id);
+        assertEquals(409, request("POST", "register", "name", "Late", "contact", "late@contest.ru").join().statusCode());
+        assertEquals(409, request("POST", "photos", "contact", "early@contest.ru", "photo", "late").join().statusCode());
+    }
+}
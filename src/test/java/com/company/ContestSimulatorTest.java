@@ -0,0 +1,64 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Whole contests are simulated with small numbers, results depend on the seed only, not on threads
+ */
+class ContestSimulatorTest {
+    private static ContestSimulator.Config config(long seed, int threads) {
+        return ContestSimulator.Config.parse(new String[]{"simulate", "seed=" + seed, "photographers=300",
+                "voters=2000", "likesPerVoter=3", "threads=" + threads});
+    }
+
+    @Test
+    void parametersAreParsed() {
+        ContestSimulator.Config config = ContestSimulator.Config.parse(new String[]{"simulate", "seed=7",
+                "plagiarism=0.5", "late=0", "phones=1", "skew=2", "workers=2", "unknown=1"});
+        assertEquals(7, config.seed);
+        assertEquals(0.5, config.plagiarismRatio);
+        assertEquals(0, config.lateRatio);
+        assertEquals(1, config.phoneRatio);
+        assertEquals(2, config.skew);
+        assertEquals(2, config.workers);
+        assertEquals(10_000, config.photographers);
+    }
+
+    @Test
+    void runsWithTheSameSeedAreEqual() {
+        ContestSimulator.Report single = ContestSimulator.run(config(42, 1));
+        ContestSimulator.Report parallel = ContestSimulator.run(config(42, 4));
+        assertEquals(300, single.registered);
+        assertEquals(single.registered, single.submitted + single.late);
+        assertTrue(single.promoted > 0 && single.promoted < single.submitted);
+        assertEquals(2000 * 3, single.likes + single.rejectedLikes);
+        assertFalse(single.winners.isEmpty());
+        assertEquals(single.submitted, parallel.submitted);
+        assertEquals(single.promoted, parallel.promoted);
+        assertEquals(single.likes, parallel.likes);
+        assertEquals(single.winnerRate, parallel.winnerRate);
+        assertEquals(single.winners, parallel.winners);
+        assertEquals(single.fingerprint, parallel.fingerprint);
+        assertTrue(single.toString().contains("seed=42"));
+        assertNotEquals(single.fingerprint, ContestSimulator.run(config(43, 4)).fingerprint);
+    }
+
+    @Test
+    void zipfPicksTheFirstRanksMostOften() {
+        double[] cumulative = ContestSimulator.zipf(100, 1.1);
+        int[] picks = new int[100];
+        SplittableRandom random = ContestSimulator.random(1, 1, 0);
+        for (int i = 0; i < 100_000; i++) {
+            picks[ContestSimulator.pick(cumulative, random)]++;
+        }
+        assertTrue(picks[0] > picks[1] && picks[1] > picks[10] && picks[10] > picks[99]);
+        assertEquals(0, ContestSimulator.pick(ContestSimulator.zipf(1, 1.1), random));
+    }
+}
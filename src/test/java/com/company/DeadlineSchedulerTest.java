@@ -0,0 +1,149 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deadlines are driven by ManualClock millisecond by millisecond, so every deadline must fire exactly
+ * at the step, when the clock reaches its time, neither one tick early nor late.
+ */
+class DeadlineSchedulerTest {
+    private static final long START = 1_000;
+    private static final long TICK = 10;
+    private static final int WHEEL = 8;
+
+    private final ManualClock clock = new ManualClock(START);
+    private final DeadlineScheduler scheduler = new DeadlineScheduler(clock, TICK, WHEEL);
+    //Pairs of deadline and time of the clock, when it fired
+    private final List<long[]> fired = new ArrayList<>();
+
+    private DeadlineScheduler.Deadline schedule(long time) {
+        return scheduler.schedule(time, () -> fired.add(new long[]{time, clock.millis()}));
+    }
+
+    /**
+     * Move the clock by one millisecond and fire due deadlines after every step
+     *
+     * @param until - last time of the clock
+     */
+    private void stepTo(long until) {
+        while (clock.millis() < until) {
+            clock.advance(1);
+            scheduler.advance();
+        }
+    }
+
+    private void assertFiredOnTime(long... deadlines) {
+        assertEquals(deadlines.length, fired.size());
+        for (int i = 0; i < deadlines.length; i++) {
+            assertEquals(deadlines[i], fired.get(i)[0]);
+            assertEquals(deadlines[i], fired.get(i)[1], "deadline " + deadlines[i] + " fired at another time");
+        }
+    }
+
+    @Test
+    void firesAtDeadlineAroundTickBoundaries() {
+        //Within the current tick, first and last millisecond of the next tick, start of the tick after it
+        long[] deadlines = {START + 5, START + TICK - 1, START + TICK, START + 2 * TICK - 1, START + 2 * TICK};
+        for (long deadline : deadlines) {
+            schedule(deadline);
+        }
+        assertEquals(deadlines.length, scheduler.pending());
+        stepTo(START + 3 * TICK);
+        assertFiredOnTime(deadlines);
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    void firesDeadlineOfCurrentTickWithoutWaitingForBucket() {
+        clock.advance(3);
+        schedule(START + 4);
+        scheduler.advance();
+        assertTrue(fired.isEmpty());
+        stepTo(START + 4);
+        assertFiredOnTime(START + 4);
+    }
+
+    @Test
+    void firesDeadlinesFromOverflowWheelsAtDeadline() {
+        long interval = TICK * WHEEL;
+        //Last bucket of the lowest wheel, first and second overflow wheel, and deadline far beyond them
+        long[] deadlines = {START + interval - 1, START + interval, START + interval + 7,
+                START + interval * WHEEL + 3, START + interval * WHEEL * WHEEL + 1, START + 100_003};
+        for (int i = deadlines.length - 1; i >= 0; i--) {
+            schedule(deadlines[i]);
+        }
+        stepTo(START + 100_010);
+        assertFiredOnTime(deadlines);
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    void firesInOrderOfDeadlinesAfterLongPause() {
+        long[] deadlines = {START + 3, START + 15, START + 95, START + 700, START + 701};
+        for (int i = deadlines.length - 1; i >= 0; i--) {
+            schedule(deadlines[i]);
+        }
+        clock.advance(1_000);
+        assertEquals(deadlines.length, scheduler.advance());
+        assertEquals(deadlines.length, fired.size());
+        for (int i = 0; i < deadlines.length; i++) {
+            assertEquals(deadlines[i], fired.get(i)[0]);
+        }
+    }
+
+    @Test
+    void cancelledDeadlinesNeverFire() {
+        DeadlineScheduler.Deadline ready = schedule(START + 2);
+        DeadlineScheduler.Deadline bucket = schedule(START + 25);
+        schedule(START + 26);
+        DeadlineScheduler.Deadline overflow = schedule(START + 300);
+        schedule(START + 301);
+        ready.cancel();
+        bucket.cancel();
+        overflow.cancel();
+        //Cancel twice changes nothing
+        overflow.cancel();
+        assertEquals(2, scheduler.pending());
+        stepTo(START + 400);
+        assertFiredOnTime(START + 26, START + 301);
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    void cancelAfterBucketIsDueStopsDeadline() {
+        DeadlineScheduler.Deadline late = schedule(START + 35);
+        schedule(START + 36);
+        //Bucket of the tick is flushed, both deadlines wait for their millisecond
+        stepTo(START + 34);
+        assertTrue(fired.isEmpty());
+        late.cancel();
+        assertEquals(1, scheduler.pending());
+        stepTo(START + 40);
+        assertFiredOnTime(START + 36);
+    }
+
+    @Test
+    void startNotAlignedToTick() {
+        ManualClock unaligned = new ManualClock(START + 7);
+        DeadlineScheduler scheduler = new DeadlineScheduler(unaligned, TICK, WHEEL);
+        List<Long> times = new ArrayList<>();
+        long[] deadlines = {START + 9, START + 10, START + 17, START + 97, START + 1_234};
+        for (long deadline : deadlines) {
+            scheduler.schedule(deadline, () -> times.add(unaligned.millis()));
+        }
+        while (unaligned.millis() < START + 1_300) {
+            unaligned.advance(1);
+            scheduler.advance();
+        }
+        assertEquals(deadlines.length, times.size());
+        for (int i = 0; i < deadlines.length; i++) {
+            assertEquals(deadlines[i], times.get(i));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Photos are resized on the pool of the generator, copies fit their size and are made once
+ */
+class DerivativeGeneratorTest {
+    @TempDir
+    Path directory;
+
+    private Path image(String name, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, x * height / width, 0xFFFFFF);
+        }
+        Path path = directory.resolve(name);
+        ImageIO.write(image, "png", path.toFile());
+        return path;
+    }
+
+    private static int[] sides(Path path) throws IOException {
+        BufferedImage image = ImageIO.read(path.toFile());
+        return new int[]{image.getWidth(), image.getHeight()};
+    }
+
+    @Test
+    void copiesFitTheirSizes() throws IOException {
+        List<String> photos = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            photos.add(image("wide" + i + ".png", 1600 + i, 900).toString());
+        }
+        photos.add(image("small.png", 100, 50).toString());
+        try (DerivativeGenerator generator = new DerivativeGenerator(directory.resolve("cache"), null, 4)) {
+            generator.generate(photos).join();
+            assertEquals(photos.size(), generator.getGenerated());
+            assertEquals(0, generator.getFailed());
+            assertEquals(160, sides(generator.getDerivative(photos.get(0), DerivativeGenerator.Size.THUMBNAIL))[0]);
+            assertEquals(90, sides(generator.getDerivative(photos.get(0), DerivativeGenerator.Size.THUMBNAIL))[1]);
+            assertEquals(800, sides(generator.getDerivative(photos.get(0), DerivativeGenerator.Size.PREVIEW))[0]);
+            //Small photo is not enlarged
+            String small = photos.get(photos.size() - 1);
+            assertEquals(100, sides(generator.getDerivative(small, DerivativeGenerator.Size.PREVIEW))[0]);
+        }
+    }
+
+    @Test
+    void cachedCopiesAreNotMadeAgain() throws IOException {
+        String photo = image("once.png", 400, 400).toString();
+        try (DerivativeGenerator generator = new DerivativeGenerator(directory.resolve("cache"), null, 2)) {
+            generator.generate(List.of(photo)).join();
+            Path thumbnail = generator.getDerivative(photo, DerivativeGenerator.Size.THUMBNAIL);
+            FileTime old = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(thumbnail, old);
+            generator.generate(List.of(photo)).join();
+            assertEquals(old, Files.getLastModifiedTime(thumbnail));
+        }
+    }
+
+    @Test
+    void unreadablePhotosAreCountedAsFailed() throws IOException {
+        Path text = Files.writeString(directory.resolve("note.png"), "not an image");
+        String missing = directory.resolve("missing.png").toString();
+        try (DerivativeGenerator generator = new DerivativeGenerator(directory.resolve("cache"), null, 2)) {
+            generator.generate(Arrays.asList(text.toString(), missing, null)).join();
+            assertEquals(0, generator.getGenerated());
+            assertEquals(2, generator.getFailed());
+            assertNull(generator.getDerivative(missing, DerivativeGenerator.Size.THUMBNAIL));
+        }
+    }
+
+    @Test
+    void photosOfStoreAreResized() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB), "png", png);
+        try (PhotoStore photoStore = PhotoStore.open(directory.resolve("store"));
+             DerivativeGenerator generator = new DerivativeGenerator(directory.resolve("cache"), photoStore, 2)) {
+            String reference = photoStore.put(png.toByteArray());
+            generator.generate(List.of(reference)).join();
+            Path preview = generator.getDerivative(reference, DerivativeGenerator.Size.PREVIEW);
+            assertNotNull(preview);
+            assertEquals(400, sides(preview)[1]);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ranking follows rates of photos, equal rates are in order of photographers, every photo is in it once
+ */
+class LeaderboardTest {
+    private static final int PHOTOS = 20;
+
+    private Leaderboard leaderboard;
+    private Participant[] participants;
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        PhotoContest photoContest = new PhotoContest("Leaders");
+        leaderboard = new Leaderboard();
+        participants = new Participant[PHOTOS];
+        for (int i = 0; i < PHOTOS; i++) {
+            participants[i] = new Participant(Photographer.imported("Photographer " + i, "l" + i + "@contest.ru", null), photoContest);
+            leaderboard.add(participants[i]);
+        }
+    }
+
+    @Test
+    void rankingIsOrderedByRateAndPhotographer() {
+        assertEquals(0, leaderboard.getTopRate());
+        assertEquals(PHOTOS, leaderboard.getLeaders().size());
+        leaderboard.update(participants[3], () -> 5);
+        leaderboard.update(participants[7], () -> 9);
+        leaderboard.update(participants[1], () -> 9);
+        leaderboard.update(participants[3], () -> 2);
+        List<Leaderboard.Standing> top = leaderboard.top(3);
+        assertEquals(3, top.size());
+        assertEquals(participants[1], top.get(0).participant);
+        assertEquals(participants[7], top.get(1).participant);
+        assertEquals(participants[3], top.get(2).participant);
+        assertEquals(2, top.get(2).rate);
+        assertEquals(9, leaderboard.getTopRate());
+        assertEquals(List.of(participants[1], participants[7]), leaderboard.getLeaders());
+        assertEquals(PHOTOS, leaderboard.top(100).size());
+    }
+
+    @Test
+    void concurrentUpdatesLeaveActualRates() throws InterruptedException {
+        AtomicLongArray rates = new AtomicLongArray(PHOTOS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exc) {
+                    return;
+                }
+                for (int like = 0; like < 20_000; like++) {
+                    //Few hot photos get most likes, as in voting
+                    int photo = random.nextInt(4) == 0 ? random.nextInt(PHOTOS) : random.nextInt(3);
+                    rates.incrementAndGet(photo);
+                    leaderboard.update(participants[photo], () -> rates.get(photo));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        List<Leaderboard.Standing> top = leaderboard.top(PHOTOS);
+        assertEquals(PHOTOS, top.size());
+        for (int place = 0; place < PHOTOS; place++) {
+            Leaderboard.Standing standing = top.get(place);
+            int photo = List.of(participants).indexOf(standing.participant);
+            assertEquals(rates.get(photo), standing.rate, "rate of photo " + photo);
+            if (place > 0) {
+                assertTrue(Leaderboard.Standing.ORDER.compare(top.get(place - 1), standing) < 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Notifications go through stand-in channels, which hold, drop or fail deliveries
+ */
+class NotificationDispatcherTest {
+    /**
+     * Channel, which keeps delivered notices and sizes of batches
+     * Deliveries wait for the gate; plan gives the result of every delivery: number of delivered notices,
+     * -1 for IOException, all notices are delivered when plan is over
+     */
+    private static final class StandInChannel implements DeliveryChannel {
+        final List<String> delivered = new ArrayList<>();
+        final List<Integer> batches = new ArrayList<>();
+        final CountDownLatch gate;
+        final int[] plan;
+        int calls;
+
+        StandInChannel(CountDownLatch gate, int... plan) {
+            this.gate = gate;
+            this.plan = plan;
+        }
+
+        @Override
+        public synchronized int deliver(List<Notice> batch) throws IOException {
+            try {
+                gate.await();
+            } catch (InterruptedException exc) {
+                throw new IOException(exc);
+            }
+            batches.add(batch.size());
+            int count = calls < plan.length ? Math.min(plan[calls], batch.size()) : batch.size();
+            calls++;
+            if (count < 0) {
+                throw new IOException("Channel is down");
+            }
+            for (int i = 0; i < count; i++) {
+                delivered.add(batch.get(i).argument);
+            }
+            return count;
+        }
+
+        synchronized List<String> getDelivered() {
+            return new ArrayList<>(delivered);
+        }
+    }
+
+    private static final CountDownLatch OPEN = new CountDownLatch(0);
+    private Photographer byEmail;
+    private Photographer byPhone;
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        byEmail = Photographer.imported("Mail", "mail@contest.ru", null);
+        byPhone = Photographer.imported("Phone", null, "89990000000");
+    }
+
+    private static List<String> numbers(int count) {
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            numbers.add(String.valueOf(i));
+        }
+        return numbers;
+    }
+
+    @Test
+    void noticesAreDeliveredInBatchesByTheirChannels() {
+        CountDownLatch gate = new CountDownLatch(1);
+        StandInChannel email = new StandInChannel(gate);
+        StandInChannel sms = new StandInChannel(OPEN);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(2, 100, 8, 3, email, sms);
+        //Notices are queued while the first delivery waits, so the next ones are delivered in full batches
+        for (String number : numbers(50)) {
+            dispatcher.send(byEmail, "", MessageTemplate.RATE, number);
+        }
+        dispatcher.send(byPhone, "", MessageTemplate.RATE, "sms");
+        gate.countDown();
+        dispatcher.awaitDelivery();
+        assertEquals(numbers(50), email.getDelivered());
+        assertEquals(List.of("sms"), sms.getDelivered());
+        assertTrue(email.batches.stream().allMatch(size -> size <= 8), email.batches.toString());
+        assertTrue(email.batches.size() <= 8, email.batches.toString());
+        assertEquals(51, dispatcher.getDelivered());
+        assertEquals(dispatcher.getBatches(), email.batches.size() + sms.batches.size());
+        assertEquals(0, dispatcher.getFailed());
+        assertTrue(dispatcher.getThroughput() > 0);
+    }
+
+    @Test
+    void onlyUndeliveredNoticesAreRetried() {
+        //Two of the batch are delivered, then channel fails once, then the rest is delivered
+        StandInChannel email = new StandInChannel(OPEN, 2, -1);
+        CountDownLatch gate = new CountDownLatch(1);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(1, 100, 5, 3, email, new StandInChannel(gate));
+        //The only thread is held by SMS, so all emails are queued before the first batch is taken
+        dispatcher.send(byPhone, "", MessageTemplate.RATE, "sms");
+        for (String number : numbers(5)) {
+            dispatcher.send(byEmail, "", MessageTemplate.RATE, number);
+        }
+        gate.countDown();
+        dispatcher.awaitDelivery();
+        assertEquals(numbers(5), email.getDelivered());
+        assertEquals(List.of(5, 3, 3), email.batches);
+        //Five emails and one SMS
+        assertEquals(6, dispatcher.getDelivered());
+        assertEquals(0, dispatcher.getFailed());
+        assertEquals(2, dispatcher.getRetried());
+    }
+
+    @Test
+    void failedNoticesAreCountedAndDoNotBlockWaiting() {
+        StandInChannel email = new StandInChannel(OPEN, -1, -1, -1, -1, -1, -1);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(1, 100, 10, 3, email, new StandInChannel(OPEN));
+        for (String number : numbers(4)) {
+            dispatcher.send(byEmail, "", MessageTemplate.RATE, number);
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), dispatcher::awaitDelivery);
+        assertEquals(0, dispatcher.getDelivered());
+        assertEquals(4, dispatcher.getFailed());
+        assertTrue(email.getDelivered().isEmpty());
+    }
+
+    @Test
+    void fullQueueMakesSenderWait() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        StandInChannel email = new StandInChannel(gate);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(1, 4, 2, 3, email, new StandInChannel(OPEN));
+        AtomicInteger sent = new AtomicInteger();
+        Thread sender = new Thread(() -> {
+            for (String number : numbers(20)) {
+                dispatcher.send(byEmail, "", MessageTemplate.RATE, number);
+                sent.incrementAndGet();
+            }
+        });
+        sender.start();
+        //Queue of 4 and one batch of 2 in the held delivery
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sender.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, sender.getState());
+        assertTrue(sent.get() <= 6, "sent " + sent.get());
+        gate.countDown();
+        sender.join();
+        dispatcher.awaitDelivery();
+        assertEquals(numbers(20), email.getDelivered());
+    }
+}
@@ -0,0 +1,99 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Messages go through the buffered sink, replaced sink is closed and stops flushing
+ */
+class OutputTest {
+    /**
+     * Channel, which keeps written bytes and counts writes
+     */
+    private static final class RecordingChannel implements WritableByteChannel {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final AtomicInteger writes = new AtomicInteger();
+
+        @Override
+        public synchronized int write(ByteBuffer source) {
+            writes.incrementAndGet();
+            int length = source.remaining();
+            byte[] chunk = new byte[length];
+            source.get(chunk);
+            bytes.write(chunk, 0, length);
+            return length;
+        }
+
+        synchronized String text() {
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @AfterEach
+    void quiet() {
+        Output.setSink(new NullSink());
+    }
+
+    @Test
+    void messagesAreWrittenInOrderByFlusher() throws InterruptedException {
+        RecordingChannel channel = new RecordingChannel();
+        Output.setSink(new BufferedChannelSink(channel, 64, 5));
+        Output.write("Anna: ", MessageTemplate.RATE, "7");
+        Output.println("Контест 📷");
+        while (channel.writes.get() == 0) {
+            Thread.sleep(1);
+        }
+        Output.flush();
+        assertEquals("Anna: Your rate is 7.\nКонтест 📷\n", channel.text());
+    }
+
+    @Test
+    void replacedSinkIsClosed() throws InterruptedException {
+        RecordingChannel channel = new RecordingChannel();
+        BufferedChannelSink sink = new BufferedChannelSink(channel, 1024, 5);
+        Output.setSink(sink);
+        Output.println("before");
+        Output.setSink(new NullSink());
+        //Rest of messages is written on closing
+        assertEquals("before\n", channel.text());
+        int writes = channel.writes.get();
+        sink.println("after");
+        Thread.sleep(50);
+        //Flusher is stopped, so nothing is written without flush
+        assertEquals(writes, channel.writes.get());
+        sink.flush();
+        assertEquals("before\nafter\n", channel.text());
+    }
+
+    @Test
+    void swappedSinkIsKeptOpen() throws InterruptedException {
+        RecordingChannel channel = new RecordingChannel();
+        BufferedChannelSink sink = new BufferedChannelSink(channel, 1024, 5);
+        Output.setSink(sink);
+        assertSame(sink, Output.swapSink(new NullSink()));
+        Output.println("thrown away");
+        Output.swapSink(sink);
+        Output.println("kept");
+        while (!channel.text().equals("kept\n")) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Results of closed contests are written by admin, the history file is opened again and queried by contacts
+ */
+class ParticipantHistoryTest {
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        file = directory.resolve("history.bin");
+    }
+
+    /**
+     * Contest, where the second photographer wins with likes of two voters and the first one has one like
+     *
+     * @return contest after choosing of winner
+     */
+    private static PhotoContest close(ParticipantHistory history, String topic) {
+        Admin admin = new Admin.Builder(new ContestRegistry()).history(history).build();
+        PhotoContest photoContest = admin.createNewContest(topic);
+        Photographer[] photographers = {
+                Photographer.imported("Anna", "anna@contest.ru", null),
+                Photographer.imported("Борис", null, "89991234567"),
+        };
+        for (Photographer photographer : photographers) {
+            photographer.register(photoContest);
+            photographer.sendPhoto(photoContest, topic + "-" + photographer.name);
+        }
+        admin.closeApplicationSession(photoContest.id);
+        admin.peerReviewSession(photoContest.id);
+        photoContest.like(photographers[0], 0);
+        photoContest.like(photographers[1], 0);
+        photoContest.like(photographers[1], 1);
+        admin.closeVotingSession(photoContest.id);
+        admin.chooseWinner(photoContest.id);
+        photoContest.getNotificationDispatcher().awaitDelivery();
+        return photoContest;
+    }
+
+    @Test
+    void resultsSurviveReopening() throws IOException {
+        long first;
+        long second;
+        try (ParticipantHistory history = ParticipantHistory.open(file, 8)) {
+            first = close(history, "Spring").id;
+            //Cached list must be dropped, when the next contest is recorded
+            assertEquals(1, history.getResults("ANNA@contest.ru").size());
+            second = close(history, "Лето").id;
+            assertEquals(2, history.getResults("anna@contest.ru").size());
+        }
+        try (ParticipantHistory history = ParticipantHistory.open(file, 8)) {
+            List<ParticipantHistory.Result> anna = history.getResults("anna@contest.ru");
+            assertEquals(2, anna.size());
+            assertEquals(first, anna.get(0).contestId);
+            assertEquals("Spring", anna.get(0).topic);
+            assertEquals("Spring-Anna", anna.get(0).photo);
+            assertEquals(1, anna.get(0).rate);
+            assertTrue(anna.get(0).accepted);
+            assertFalse(anna.get(0).winner);
+            assertNull(anna.get(0).phoneNumber);
+            assertEquals(second, anna.get(1).contestId);
+            assertEquals("Лето", anna.get(1).topic);
+
+            //Phone number is found in any notation
+            List<ParticipantHistory.Result> boris = history.getResults("8(999)123-45-67");
+            assertEquals(2, boris.size());
+            assertEquals("Борис", boris.get(1).name);
+            assertNull(boris.get(1).email);
+            assertEquals(2, boris.get(1).rate);
+            assertTrue(boris.get(1).winner);
+
+            List<ParticipantHistory.Result> winners = history.getWinners();
+            assertEquals(2, winners.size());
+            assertEquals("Борис", winners.get(0).name);
+            assertTrue(history.getResults("nobody@contest.ru").isEmpty());
+        }
+    }
+
+    @Test
+    void tornRecordIsCutAndHistoryGoesOn() throws IOException {
+        long complete;
+        try (ParticipantHistory history = ParticipantHistory.open(file, 8)) {
+            complete = close(history, "Complete").id;
+            close(history, "Torn");
+        }
+        //Crash in the middle of the last record
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+        long after;
+        try (ParticipantHistory history = ParticipantHistory.open(file, 8)) {
+            assertTrue(Files.size(file) < size - 5, "torn record is not cut off");
+            List<ParticipantHistory.Result> anna = history.getResults("anna@contest.ru");
+            List<ParticipantHistory.Result> boris = history.getResults("89991234567");
+            //Only the last record of the torn contest is lost
+            assertEquals(3, anna.size() + boris.size());
+            assertEquals(complete, anna.get(0).contestId);
+            assertEquals(complete, boris.get(0).contestId);
+            after = close(history, "After crash").id;
+        }
+        try (ParticipantHistory history = ParticipantHistory.open(file, 8)) {
+            List<ParticipantHistory.Result> anna = history.getResults("anna@contest.ru");
+            List<ParticipantHistory.Result> boris = history.getResults("89991234567");
+            assertEquals(5, anna.size() + boris.size());
+            assertEquals(after, anna.get(anna.size() - 1).contestId);
+            assertEquals("After crash", boris.get(boris.size() - 1).topic);
+        }
+    }
+
+    @Test
+    void zeroTailIsCut() throws IOException {
+        try (ParticipantHistory history = ParticipantHistory.open(file, 8)) {
+            close(history, "Before zeros");
+        }
+        long size = Files.size(file);
+        //Space of the file was allocated, but the record was not written
+        Files.write(file, new byte[64], StandardOpenOption.APPEND);
+        try (ParticipantHistory history = ParticipantHistory.open(file, 8)) {
+            assertEquals(size, Files.size(file));
+            assertEquals(1, history.getResults("anna@contest.ru").size());
+            assertEquals(1, history.getWinners().size());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cells of participants are kept in columns, rows are added from many threads and cross chunks of 1024 rows
+ */
+class ParticipantTableTest {
+    private PhotoContest photoContest;
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        photoContest = new PhotoContest("Table");
+    }
+
+    private Participant participant(int i) {
+        return new Participant(Photographer.imported("Photographer " + i, "t" + i + "@contest.ru", null), photoContest);
+    }
+
+    @Test
+    void cellsOfRowAreKeptSeparately() {
+        ParticipantTable table = new ParticipantTable();
+        int first = table.add(participant(0));
+        int second = table.add(participant(1));
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(2, table.size());
+        assertEquals(PhotographerState.INITIAL, table.getState(first));
+        assertFalse(table.isAccepted(first));
+        assertEquals(0, table.getRate(first));
+        assertNull(table.getPhoto(first));
+        table.setState(second, PhotographerState.APPLICATION);
+        table.setAccepted(second, true);
+        table.setRate(second, 42);
+        table.setPhoto(second, "sea.png");
+        assertEquals(PhotographerState.INITIAL, table.getState(first));
+        assertEquals(PhotographerState.APPLICATION, table.getState(second));
+        assertTrue(table.isAccepted(second));
+        assertEquals(42, table.getRate(second));
+        assertEquals("sea.png", table.getPhoto(second));
+        table.setPhoto(second, null);
+        assertNull(table.getPhoto(second));
+    }
+
+    @Test
+    void equalPhotosAreKeptOnce() {
+        ParticipantTable table = new ParticipantTable();
+        int first = table.add(participant(0));
+        int second = table.add(participant(1));
+        table.setPhoto(first, new String("mountain.png"));
+        table.setPhoto(second, new String("mountain.png"));
+        assertSame(table.getPhoto(first), table.getPhoto(second));
+    }
+
+    @Test
+    void concurrentRowsCrossChunks() throws InterruptedException {
+        ParticipantTable table = new ParticipantTable();
+        int threads = 4;
+        int perThread = 3000;
+        List<Participant> participants = new ArrayList<>();
+        for (int i = 0; i < threads * perThread; i++) {
+            participants.add(participant(i));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentHashMap<Integer, Integer> owners = new ConcurrentHashMap<>();
+        AtomicInteger misread = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exc) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    int id = thread * perThread + i;
+                    int row = table.add(participants.get(id));
+                    table.setRate(row, id);
+                    table.setState(row, PhotographerState.REGISTRATION);
+                    owners.put(row, id);
+                    //Rows of other threads may be in chunks added after ours, they are read as well
+                    int other = table.size() - 1;
+                    if (table.getState(other) == PhotographerState.REGISTRATION
+                            && owners.containsKey(other) && table.getRate(other) != owners.get(other)) {
+                        misread.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(threads * perThread, table.size());
+        assertEquals(threads * perThread, owners.size());
+        assertEquals(0, misread.get());
+        for (int row = 0; row < table.size(); row++) {
+            assertEquals((int) owners.get(row), table.getRate(row));
+            assertEquals(PhotographerState.REGISTRATION, table.getState(row));
+        }
+    }
+}
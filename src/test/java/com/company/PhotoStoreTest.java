@@ -0,0 +1,106 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Photos are put into the store, the store is closed and opened again, as after restart of the process
+ */
+class PhotoStoreTest {
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] read(ByteBuffer buffer) {
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        return content;
+    }
+
+    @Test
+    void equalContentsAreKeptOnce() throws IOException {
+        try (PhotoStore photoStore = PhotoStore.open(directory)) {
+            String first = photoStore.put(bytes("sunset"));
+            String again = photoStore.put(bytes("sunset"));
+            String other = photoStore.put(bytes("sunrise"));
+            assertEquals(first, again);
+            assertTrue(PhotoStore.isReference(first));
+            assertNotEquals(first, other);
+            assertEquals(2, photoStore.size());
+            assertArrayEquals(bytes("sunrise"), read(photoStore.map(other)));
+            assertThrows(IOException.class, () -> photoStore.map("sha256:missing"));
+        }
+    }
+
+    @Test
+    void blobsAreReadFromAllSegmentsAfterReopening() throws IOException {
+        String[] references = new String[20];
+        //Small segments, so every few blobs go to the next one
+        try (PhotoStore photoStore = PhotoStore.open(directory, 64)) {
+            for (int i = 0; i < references.length; i++) {
+                references[i] = photoStore.put(bytes("photo number " + i));
+            }
+        }
+        try (PhotoStore photoStore = PhotoStore.open(directory, 64)) {
+            assertEquals(references.length, photoStore.size());
+            for (int i = 0; i < references.length; i++) {
+                assertArrayEquals(bytes("photo number " + i), read(photoStore.map(references[i])));
+                ByteArrayOutputStream sent = new ByteArrayOutputStream();
+                photoStore.transferTo(references[i], Channels.newChannel(sent));
+                assertArrayEquals(bytes("photo number " + i), sent.toByteArray());
+                try (InputStream in = photoStore.open(references[i])) {
+                    assertArrayEquals(bytes("photo number " + i), in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    void tornLastBlobIsCutOff() throws IOException {
+        String kept;
+        String torn;
+        try (PhotoStore photoStore = PhotoStore.open(directory)) {
+            kept = photoStore.put(bytes("kept photo"));
+            torn = photoStore.put(bytes("torn photo"));
+        }
+        //Last byte of the last blob is damaged as by a crash in the middle of writing
+        Path segment = directory.resolve("photos-00000.blob");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0}), channel.size() - 1);
+        }
+        try (PhotoStore photoStore = PhotoStore.open(directory)) {
+            assertTrue(photoStore.contains(kept));
+            assertFalse(photoStore.contains(torn));
+            //Photo is written again in place of the torn blob
+            assertEquals(torn, photoStore.put(bytes("torn photo")));
+            assertArrayEquals(bytes("torn photo"), read(photoStore.map(torn)));
+        }
+    }
+
+    @Test
+    void segmentIsNotLongerThanIntPositions() throws IOException {
+        try (PhotoStore photoStore = PhotoStore.open(directory, 3L << 30)) {
+            assertEquals(Integer.MAX_VALUE, photoStore.getSegmentSize());
+        }
+    }
+}
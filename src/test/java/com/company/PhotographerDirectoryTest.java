@@ -0,0 +1,97 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * One person is one subscriber of the contest, whatever notation of contact and however many times it registers
+ */
+class PhotographerDirectoryTest {
+    @BeforeEach
+    void quiet() {
+        Output.setSink(new NullSink());
+    }
+
+    @Test
+    void contactsAreFoundInAnyNotation() {
+        PhotographerDirectory directory = new PhotographerDirectory();
+        Photographer anna = Photographer.imported("Anna", "anna@contest.ru", "89991234567");
+        assertSame(anna, directory.add(anna));
+        assertSame(anna, directory.find("  ANNA@contest.ru "));
+        assertSame(anna, directory.find("8 (999) 123-45-67"));
+        //Same phone number with another email leads to the known photographer, and so does the new email
+        Photographer again = Photographer.imported("Anna", "anna.work@contest.ru", "8-999-123-45-67");
+        assertSame(anna, directory.add(again));
+        assertSame(anna, directory.find("anna.work@contest.ru"));
+        assertNull(directory.find("nobody@contest.ru"));
+        directory.remove(anna);
+        assertNull(directory.find("anna@contest.ru"));
+        assertNull(directory.find("89991234567"));
+    }
+
+    @Test
+    void repeatedRegistrationKeepsOneParticipant() {
+        PhotoContest photoContest = new Admin().createNewContest("Once");
+        Photographer photographer = Photographer.imported("Ivan", "ivan@contest.ru", null);
+        Participant first = photoContest.subscribe(photographer);
+        assertSame(first, photoContest.subscribe(photographer));
+        photographer.register(photoContest);
+        //Another object of the same person joins the existing participation
+        Photographer twin = Photographer.imported("Ivan", "Ivan@Contest.ru", null);
+        assertSame(first, photoContest.subscribe(twin));
+        assertSame(first, twin.getParticipant(photoContest));
+        assertEquals(1, photoContest.getPhotographersList().size());
+        assertEquals(PhotographerState.REGISTRATION, first.getState());
+    }
+
+    @Test
+    void concurrentRegistrationsOfOnePersonAreOne() throws InterruptedException {
+        PhotoContest photoContest = new Admin().createNewContest("At once");
+        int people = 500;
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Participant> participants = ConcurrentHashMap.newKeySet();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exc) {
+                    return;
+                }
+                for (int i = 0; i < people; i++) {
+                    //Every thread writes contacts in its own notation, odd threads also give phone number
+                    String email = (thread % 2 == 0 ? "person" : " PERSON") + i + "@contest.ru";
+                    String phone = thread % 2 == 0 ? null : (thread == 1 ? "8999" : "8 (999) ") + String.format("%07d", i);
+                    Photographer photographer = Photographer.imported("Person " + i, email, phone);
+                    participants.add(photoContest.subscribe(photographer));
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(people, participants.size());
+        assertEquals(people, photoContest.getPhotographersList().size());
+        assertEquals(people, photoContest.getParticipants(PhotographerState.REGISTRATION).size());
+        Set<Photographer> photographers = new HashSet<>();
+        for (Participant participant : participants) {
+            photographers.add(participant.photographer);
+        }
+        assertEquals(people, photographers.size());
+    }
+}
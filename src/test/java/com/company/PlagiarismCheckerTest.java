@@ -0,0 +1,147 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Groups of the same photos by name and of near-duplicate images by distance of their hashes
+ * Images are 9x8 pixels, the size of the hash, so every bit of the hash is set by two neighbour pixels
+ */
+class PlagiarismCheckerTest {
+    private static final long BASE = 0x5A3C_96E1_0FF0_33CCL;
+
+    @TempDir
+    Path directory;
+    private PhotoContest photoContest;
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        photoContest = new PhotoContest("Plagiarism");
+    }
+    /**
+     * @param bits - count of the lowest bits
+     * @param from - the lowest flipped bit
+     * @return mask of bits from the given one
+     */
+    private static long bits(int bits, int from) {
+        return ((1L << bits) - 1) << from;
+    }
+
+    /**
+     * Write image, which difference hash is the given one
+     *
+     * @param name - file name
+     * @param hash - wanted hash
+     * @return path to the image
+     */
+    private String image(String name, long hash) throws IOException {
+        BufferedImage image = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 8; y++) {
+            int grey = 128;
+            image.getRaster().setSample(0, y, 0, grey);
+            for (int x = 0; x < 8; x++) {
+                //The first bit of hash is the highest one
+                boolean brighter = (hash >>> (63 - (y * 8 + x)) & 1) == 1;
+                grey += brighter ? -10 : 10;
+                image.getRaster().setSample(x + 1, y, 0, grey);
+            }
+        }
+        Path path = directory.resolve(name + ".png");
+        ImageIO.write(image, "png", path.toFile());
+        return path.toString();
+    }
+
+    private Participant participant(String name, String photo) {
+        Participant participant = new Participant(Photographer.imported(name, name + "@contest.ru", null), photoContest);
+        participant.setPhoto(photo);
+        return participant;
+    }
+
+    private static Set<Set<String>> names(Collection<? extends Collection<Participant>> groups) {
+        Set<Set<String>> names = new HashSet<>();
+        for (Collection<Participant> group : groups) {
+            Set<String> members = new HashSet<>();
+            for (Participant participant : group) {
+                members.add(participant.photographer.name);
+            }
+            names.add(members);
+        }
+        return names;
+    }
+
+    @Test
+    void equalNamesAreOneGroup() {
+        DuplicateIndex duplicateIndex = new DuplicateIndex();
+        duplicateIndex.add(participant("first", "sea.png"));
+        duplicateIndex.add(participant("unique", "mountain.png"));
+        assertTrue(duplicateIndex.getDuplicateGroups().isEmpty());
+        duplicateIndex.add(participant("second", " SEA.png"));
+        duplicateIndex.add(participant("third", "sea.PNG "));
+        assertEquals(Set.of(Set.of("first", "second", "third")), names(duplicateIndex.getDuplicateGroups()));
+    }
+
+    @Test
+    void imagesAreGroupedWithinThreshold() throws IOException {
+        assertEquals(BASE, PerceptualDuplicateIndex.dHash(ImageIO.read(Path.of(image("check", BASE)).toFile())));
+        PerceptualDuplicateIndex index = new PerceptualDuplicateIndex(10);
+        index.add(participant("original", image("original", BASE)));
+        //Just inside and just outside of the threshold, far from each other
+        index.add(participant("inside", image("inside", BASE ^ bits(10, 0))));
+        index.add(participant("outside", image("outside", BASE ^ bits(11, 30))));
+        assertEquals(Set.of(Set.of("original", "inside")), names(index.getDuplicateGroups()));
+    }
+
+    @Test
+    void chainsOfNearDuplicatesAreJoined() throws IOException {
+        PerceptualDuplicateIndex index = new PerceptualDuplicateIndex(10);
+        //The ends of the chain are 16 bits apart, the middle photo is 8 bits from both and comes last
+        index.add(participant("first", image("first", BASE)));
+        index.add(participant("last", image("last", BASE ^ bits(16, 0))));
+        index.add(participant("far", image("far", ~BASE)));
+        assertTrue(index.getDuplicateGroups().isEmpty());
+        index.add(participant("middle", image("middle", BASE ^ bits(8, 0))));
+        assertEquals(Set.of(Set.of("first", "middle", "last")), names(index.getDuplicateGroups()));
+    }
+
+    @Test
+    void unreadableImagesAreCheckedByName() throws IOException {
+        PerceptualDuplicateIndex index = new PerceptualDuplicateIndex(10);
+        index.add(participant("image", image("image", BASE)));
+        index.add(participant("first", "missing.png"));
+        index.add(participant("second", "Missing.png"));
+        assertEquals(Set.of(Set.of("first", "second")), names(index.getDuplicateGroups()));
+    }
+
+    @Test
+    void everyMemberOfGroupIsRejectedOnReview() throws IOException {
+        Admin admin = new Admin();
+        PhotoContest contest = admin.createNewContest("Review", new PerceptualDuplicateIndex(10));
+        String[] names = {"original", "copy", "edited", "own"};
+        String[] photos = {image("original", BASE), image("copy", BASE), image("edited", BASE ^ bits(5, 40)), image("own", ~BASE)};
+        Photographer[] photographers = new Photographer[names.length];
+        for (int i = 0; i < names.length; i++) {
+            photographers[i] = Photographer.imported(names[i], names[i] + "@contest.ru", null);
+            photographers[i].register(contest);
+            assertTrue(photographers[i].sendPhoto(contest, photos[i]));
+        }
+        admin.closeApplicationSession(contest.id);
+        admin.peerReviewSession(contest.id);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(PhotographerState.FAILURE, photographers[i].getParticipant(contest).getState(), names[i]);
+        }
+        assertEquals(PhotographerState.PROMOTED, photographers[3].getParticipant(contest).getState());
+    }
+}
@@ -0,0 +1,335 @@
+package com.company;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Thousand subscribers rebuild standings from snapshot and delta frames, slow subscriber is dropped
+ */
+class StandingsFeedTest {
+    private static final int PHOTOGRAPHERS = 30;
+    private static final int PLACES = 20;
+    private static final int SUBSCRIBERS = 1000;
+    private static final Pattern PLACE = Pattern.compile("\\{\"rank\":(\\d+),\"photographer\":(\\d+),\"name\":\"[^\"]*\",\"likes\":(\\d+)}");
+    private static final Pattern REMOVED = Pattern.compile("\"removed\":\\[([0-9,]*)]");
+
+    private Admin admin;
+    private PhotoContest photoContest;
+    private Photographer[] photographers;
+    private ScheduledExecutorService ticker;
+    private ExecutorService writers;
+    private StandingsFeed feed;
+    private final AtomicBoolean ended = new AtomicBoolean();
+
+    /**
+     * Response of server-sent events, which keeps everything written to it
+     */
+    private static class Subscriber extends HttpExchange {
+        final StringBuilder text = new StringBuilder();
+        volatile boolean closed;
+        final OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                accept(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            }
+        };
+
+        void accept(String frame) {
+            synchronized (text) {
+                text.append(frame);
+            }
+        }
+
+        String text() {
+            synchronized (text) {
+                return text.toString();
+            }
+        }
+
+        @Override
+        public Headers getRequestHeaders() {
+            return new Headers();
+        }
+
+        @Override
+        public Headers getResponseHeaders() {
+            return new Headers();
+        }
+
+        @Override
+        public URI getRequestURI() {
+            return URI.create("/contests/0/stream");
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return "GET";
+        }
+
+        @Override
+        public HttpContext getHttpContext() {
+            return null;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public InputStream getRequestBody() {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return output;
+        }
+
+        @Override
+        public void sendResponseHeaders(int code, long length) {
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return 200;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public String getProtocol() {
+            return "HTTP/1.1";
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+        }
+
+        @Override
+        public void setStreams(InputStream input, OutputStream output) {
+        }
+
+        @Override
+        public HttpPrincipal getPrincipal() {
+            return null;
+        }
+    }
+
+    /**
+     * Client, whose socket buffer is full: write blocks until the writer is interrupted
+     */
+    private static class StuckSubscriber extends Subscriber {
+        @Override
+        public OutputStream getResponseBody() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws InterruptedIOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws InterruptedIOException {
+                    try {
+                        Thread.sleep(Long.MAX_VALUE);
+                    } catch (InterruptedException exc) {
+                        throw new InterruptedIOException("Write is interrupted");
+                    }
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        admin = new Admin();
+        photoContest = admin.createNewContest("Standings");
+        photographers = new Photographer[PHOTOGRAPHERS];
+        for (int i = 0; i < PHOTOGRAPHERS; i++) {
+            photographers[i] = Photographer.imported("Photographer " + i, "photographer" + i + "@contest.ru", null);
+            photographers[i].register(photoContest);
+            photographers[i].sendPhoto(photoContest, "photo-" + i);
+        }
+        admin.closeApplicationSession(photoContest.id);
+        admin.peerReviewSession(photoContest.id);
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        writers = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ticker.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, what);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Apply frames of the stream to the standings, as a browser would do
+     *
+     * @param text - everything, which is written to the subscriber
+     * @return likes by photographer id, ids of frames must grow
+     */
+    private static HashMap<Integer, Long> standings(String text) {
+        HashMap<Integer, Long> likes = new HashMap<>();
+        long lastId = -1;
+        for (String frame : text.split("\n\n")) {
+            if (frame.isEmpty() || frame.startsWith("event: end")) {
+                continue;
+            }
+            String[] lines = frame.split("\n");
+            long id = Long.parseLong(lines[0].substring("id: ".length()));
+            assertTrue(id > lastId, "frame " + id + " after " + lastId);
+            lastId = id;
+            String data = lines[2];
+            if (lines[1].equals("event: snapshot")) {
+                likes.clear();
+            } else {
+                Matcher removed = REMOVED.matcher(data);
+                assertTrue(removed.find(), data);
+                for (String photographer : removed.group(1).split(",")) {
+                    if (!photographer.isEmpty()) {
+                        likes.remove(Integer.parseInt(photographer));
+                    }
+                }
+            }
+            Matcher place = PLACE.matcher(data);
+            while (place.find()) {
+                likes.put(Integer.parseInt(place.group(2)), Long.parseLong(place.group(3)));
+            }
+        }
+        return likes;
+    }
+
+    /**
+     * @param maxSkipped - number of ticks, which subscriber may skip before it is dropped
+     */
+    private void start(int maxSkipped) {
+        feed = new StandingsFeed(photoContest, PLACES, maxSkipped, writers);
+        feed.start(ticker, 10, () -> ended.set(true));
+    }
+
+    private HashMap<Integer, Long> expected() {
+        HashMap<Integer, Long> likes = new HashMap<>();
+        for (Leaderboard.Standing standing : photoContest.getVoteTally().getLeaderboard().top(PLACES)) {
+            likes.put(standing.participant.photographer.id, standing.rate);
+        }
+        return likes;
+    }
+
+    @Test
+    void subscribersFollowStandingsAndGetEnd() throws InterruptedException {
+        List<Subscriber> subscribers = new ArrayList<>();
+        //Writers of a thousand streams on a busy machine may lag for many ticks, only stuck streams are dropped
+        start(1_000);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            Subscriber subscriber = new Subscriber();
+            subscribers.add(subscriber);
+            feed.subscribe(subscriber);
+        }
+        assertEquals(SUBSCRIBERS, feed.getSubscribers());
+        SplittableRandom random = new SplittableRandom(19);
+        for (int voter = 0; voter < 3000; voter++) {
+            //Photographers with higher numbers get more likes, so places keep changing
+            photoContest.like(photographers[random.nextInt(1 + voter % PHOTOGRAPHERS)], voter);
+            if (voter % 100 == 0) {
+                Thread.sleep(5);
+            }
+        }
+        await(() -> subscribers.stream().allMatch(subscriber -> standings(subscriber.text()).equals(expected())),
+                "subscribers do not reach the standings");
+        //Standings are changed by deltas, not only by snapshots
+        assertTrue(subscribers.get(0).text().contains("event: delta"));
+        assertEquals(0, feed.getDropped());
+
+        admin.closeVotingSession(photoContest.id);
+        await(() -> subscribers.stream().allMatch(subscriber -> subscriber.closed), "streams are not closed");
+        for (Subscriber subscriber : subscribers) {
+            assertTrue(subscriber.text().endsWith("event: end\ndata: {\"state\":\"AWARDING\"}\n\n"));
+        }
+        assertTrue(ended.get());
+        assertEquals(0, feed.getSubscribers());
+    }
+
+    @Test
+    void stuckSubscriberIsDroppedAndOthersGoOn() throws InterruptedException {
+        start(8);
+        StuckSubscriber stuck = new StuckSubscriber();
+        Subscriber fast = new Subscriber();
+        feed.subscribe(stuck);
+        feed.subscribe(fast);
+        photoContest.like(photographers[0], 0);
+        await(() -> stuck.closed, "stuck subscriber is not dropped");
+        assertEquals(1, feed.getDropped());
+        assertEquals(1, feed.getSubscribers());
+        //Stream of the fast subscriber is not delayed by the stuck one
+        photoContest.like(photographers[1], 1);
+        photoContest.like(photographers[1], 2);
+        await(() -> standings(fast.text()).equals(expected()), "fast subscriber does not get deltas");
+        assertFalse(fast.closed);
+    }
+
+    @Test
+    void subscriberAfterEndIsClosed() throws InterruptedException {
+        start(8);
+        admin.closeVotingSession(photoContest.id);
+        await(ended::get, "feed is not closed after voting");
+        Subscriber late = new Subscriber();
+        feed.subscribe(late);
+        assertTrue(late.closed);
+        assertEquals(0, feed.getSubscribers());
+    }
+}
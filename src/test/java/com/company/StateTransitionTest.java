@@ -0,0 +1,153 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Transitions of contests and photographers come from tables, every participant is in the set of its state only
+ */
+class StateTransitionTest {
+    private PhotoContest photoContest;
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        photoContest = new Admin().createNewContest("States");
+    }
+
+    @Test
+    void contestGoesThroughAllStatesAndStaysClosed() {
+        assertEquals(ContestState.CHOICE, ContestState.APPLICATION.next());
+        assertEquals(ContestState.VOTE, ContestState.CHOICE.next());
+        assertEquals(ContestState.AWARDING, ContestState.VOTE.next());
+        assertEquals(ContestState.CLOSED, ContestState.AWARDING.next());
+        assertEquals(ContestState.CLOSED, ContestState.CLOSED.next());
+    }
+
+    @Test
+    void photographerTransitionsFollowTheTable() {
+        EnumMap<PhotographerState, PhotographerState> accepted = new EnumMap<>(PhotographerState.class);
+        accepted.put(PhotographerState.INITIAL, PhotographerState.REGISTRATION);
+        accepted.put(PhotographerState.REGISTRATION, PhotographerState.APPLICATION);
+        accepted.put(PhotographerState.APPLICATION, PhotographerState.PROMOTED);
+        accepted.put(PhotographerState.PROMOTED, PhotographerState.WINNER);
+        accepted.put(PhotographerState.WINNER, PhotographerState.INITIAL);
+        accepted.put(PhotographerState.FAILURE, PhotographerState.INITIAL);
+        EnumMap<PhotographerState, PhotographerState> failed = new EnumMap<>(PhotographerState.class);
+        failed.put(PhotographerState.INITIAL, PhotographerState.INITIAL);
+        failed.put(PhotographerState.REGISTRATION, PhotographerState.FAILURE);
+        failed.put(PhotographerState.APPLICATION, PhotographerState.FAILURE);
+        failed.put(PhotographerState.PROMOTED, PhotographerState.FAILURE);
+        failed.put(PhotographerState.WINNER, PhotographerState.WINNER);
+        failed.put(PhotographerState.FAILURE, PhotographerState.FAILURE);
+        for (PhotographerState state : PhotographerState.values()) {
+            assertEquals(accepted.get(state), state.accepted(), "accepted from " + state);
+            assertEquals(failed.get(state), state.failed(), "failed from " + state);
+        }
+    }
+
+    @Test
+    void participantMovesBetweenSetsOfStates() {
+        Participant participant = photoContest.subscribe(Photographer.imported("Anna", "anna@contest.ru", null));
+        assertEquals(PhotographerState.REGISTRATION, participant.getState());
+        assertEquals(1, photoContest.getParticipants(PhotographerState.REGISTRATION).size());
+        participant.accepted();
+        participant.accepted();
+        assertEquals(PhotographerState.PROMOTED, participant.getState());
+        assertEquals(0, photoContest.getParticipants(PhotographerState.REGISTRATION).size());
+        assertEquals(0, photoContest.getParticipants(PhotographerState.APPLICATION).size());
+        assertEquals(1, photoContest.getParticipants(PhotographerState.PROMOTED).size());
+        participant.failed();
+        assertEquals(1, photoContest.getParticipants(PhotographerState.FAILURE).size());
+        assertEquals(0, photoContest.getParticipants(PhotographerState.PROMOTED).size());
+    }
+
+    @Test
+    void setKeepsOrderAndSkipsParticipantsLeavingDuringIteration() {
+        ParticipantSet set = new ParticipantSet();
+        List<Participant> participants = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Participant participant = new Participant(Photographer.imported("P" + i, "p" + i + "@contest.ru", null), photoContest);
+            participants.add(participant);
+            set.add(participant);
+        }
+        List<Participant> visited = new ArrayList<>();
+        set.forEach(participant -> {
+            visited.add(participant);
+            //Every participant removes the next one
+            int next = participants.indexOf(participant) + 1;
+            if (next < participants.size() && participants.get(next).slot >= 0) {
+                set.remove(participants.get(next));
+            }
+        });
+        assertEquals(10, visited.size());
+        assertEquals(10, set.size());
+        //Emptied slots are squeezed out, order stays
+        for (int i = 0; i < 20; i++) {
+            set.add(new Participant(Photographer.imported("Q" + i, "q" + i + "@contest.ru", null), photoContest));
+        }
+        List<Participant> order = new ArrayList<>();
+        set.forEach(order::add);
+        assertEquals(30, order.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(participants.get(i * 2), order.get(i));
+        }
+    }
+
+    @Test
+    void concurrentTransitionsLeaveParticipantInOneSet() throws InterruptedException {
+        int count = 200;
+        List<Participant> participants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            participants.add(photoContest.subscribe(Photographer.imported("C" + i, "c" + i + "@contest.ru", null)));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exc) {
+                    return;
+                }
+                for (int step = 0; step < 20_000; step++) {
+                    Participant participant = participants.get(random.nextInt(count));
+                    if (random.nextBoolean()) {
+                        participant.accepted();
+                    } else {
+                        participant.failed();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<Participant, PhotographerState> found = new IdentityHashMap<>();
+        int total = 0;
+        for (PhotographerState state : PhotographerState.values()) {
+            ParticipantSet set = photoContest.getParticipants(state);
+            total += set.size();
+            set.forEach(participant -> assertNull(found.put(participant, state), "participant in two sets"));
+        }
+        assertEquals(count, total);
+        assertEquals(count, found.size());
+        for (Participant participant : participants) {
+            assertEquals(participant.getState(), found.get(participant));
+        }
+    }
+}
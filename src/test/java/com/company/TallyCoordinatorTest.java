@@ -0,0 +1,254 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coordinator merges current counts of workers as G-counter: the maximum per worker and photo, summed over workers
+ */
+class TallyCoordinatorTest {
+    private TallyCoordinator coordinator;
+    private Admin admin;
+    private PhotoContest photoContest;
+    private Participant first;
+    private Participant second;
+
+    /**
+     * Worker, which writes frames of the protocol by hand, so deltas can be repeated and reordered
+     */
+    private final class RawWorker implements AutoCloseable {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final int workerId;
+
+        RawWorker() throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.getPort());
+            in = new DataInputStream(socket.getInputStream());
+            out = new DataOutputStream(socket.getOutputStream());
+            workerId = in.readInt();
+        }
+
+        RawWorker delta(Participant participant, long count) throws IOException {
+            return delta(participant.photographer.id, count);
+        }
+
+        RawWorker delta(int photographerId, long count) throws IOException {
+            out.writeByte(TallyProtocol.DELTA);
+            out.writeLong(photoContest.id);
+            out.writeInt(1);
+            out.writeInt(photographerId);
+            out.writeLong(count);
+            out.flush();
+            return this;
+        }
+
+        void finish() throws IOException {
+            out.writeByte(TallyProtocol.FINAL);
+            out.writeLong(photoContest.id);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Output.setSink(new NullSink());
+        coordinator = new TallyCoordinator(0);
+        admin = new Admin();
+        promote("Tally");
+        coordinator.open(photoContest);
+    }
+
+    /**
+     * Create contest with two photographers after peer review session, it is not opened in the coordinator
+     *
+     * @param topic - topic of the contest
+     */
+    private void promote(String topic) {
+        photoContest = admin.createNewContest(topic);
+        Photographer[] photographers = {
+                Photographer.imported("First", "first-" + topic + "@contest.ru", null),
+                Photographer.imported("Second", "second-" + topic + "@contest.ru", null),
+        };
+        for (Photographer photographer : photographers) {
+            photographer.register(photoContest);
+            photographer.sendPhoto(photoContest, "photo-" + photographer.name);
+        }
+        admin.closeApplicationSession(photoContest.id);
+        admin.peerReviewSession(photoContest.id);
+        first = photographers[0].getParticipant(photoContest);
+        second = photographers[1].getParticipant(photoContest);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        coordinator.close();
+    }
+
+    private long likes(Participant participant) {
+        return photoContest.getVoteTally().getLikes(participant);
+    }
+
+    @Test
+    void repeatedAndLateDeltasChangeNothing() throws Exception {
+        try (RawWorker worker = new RawWorker()) {
+            worker.delta(first, 3).delta(first, 3).delta(second, 1).delta(first, 2).delta(first, 5).delta(second, 1);
+            worker.finish();
+            assertTrue(coordinator.collect(photoContest, 5_000));
+        }
+        assertEquals(6, coordinator.getDeltas());
+        assertEquals(5, likes(first));
+        assertEquals(1, likes(second));
+        assertEquals(6, photoContest.getVoteTally().getTotal());
+    }
+
+    @Test
+    void countsOfWorkersAreSummed() throws Exception {
+        try (RawWorker one = new RawWorker();
+             RawWorker two = new RawWorker()) {
+            assertNotEquals(one.workerId, two.workerId);
+            one.delta(first, 4);
+            two.delta(first, 2).delta(first, 1);
+            one.delta(first, 4);
+            one.finish();
+            two.finish();
+            assertTrue(coordinator.awaitWorkers(2, 5_000));
+            assertTrue(coordinator.collect(photoContest, 5_000));
+        }
+        assertEquals(6, likes(first));
+        admin.closeVotingSession(photoContest.id);
+        assertEquals(6, first.getRate());
+        assertEquals(6, photoContest.winnerRate);
+    }
+
+    @Test
+    void deltaAfterCollectingIsIgnored() throws Exception {
+        try (RawWorker worker = new RawWorker()) {
+            worker.delta(first, 2).finish();
+            assertTrue(coordinator.collect(photoContest, 5_000));
+            worker.delta(first, 9).finish();
+            //Frames are read in order, so the delta above is merged before the connection is gone
+            worker.socket.shutdownOutput();
+            while (coordinator.getDeltas() < 2) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(2, likes(first));
+    }
+
+    @Test
+    void deltaBeforeOpeningIsMergedOnOpening() throws Exception {
+        promote("Early");
+        try (RawWorker worker = new RawWorker()) {
+            worker.delta(first, 4).delta(second, 1).delta(first, 3);
+            while (coordinator.getDeltas() < 3) {
+                Thread.sleep(1);
+            }
+            //Worker already drained its dirty photos, so the counts come only from the coordinator
+            assertEquals(0, likes(first));
+            coordinator.open(photoContest);
+            assertEquals(4, likes(first));
+            assertEquals(1, likes(second));
+            worker.delta(first, 6).finish();
+            assertTrue(coordinator.collect(photoContest, 5_000));
+        }
+        assertEquals(6, likes(first));
+        assertEquals(7, photoContest.getVoteTally().getTotal());
+    }
+
+    @Test
+    void likesOfUnknownPhotographerAreReported() throws Exception {
+        try (RawWorker worker = new RawWorker()) {
+            worker.delta(first, 2).delta(Integer.MAX_VALUE, 5).finish();
+            //Counts, which cannot be put into the tally, make the result of the contest not exact
+            assertFalse(coordinator.collect(photoContest, 5_000));
+        }
+        assertEquals(2, likes(first));
+        assertEquals(2, photoContest.getVoteTally().getTotal());
+    }
+
+    @Test
+    void idsAreGivenByCoordinatorOnce() throws Exception {
+        try (RawWorker one = new RawWorker();
+             RawWorker two = new RawWorker()) {
+            assertTrue(one.workerId >= 0);
+            assertTrue(two.workerId >= 0);
+            assertNotEquals(one.workerId, two.workerId);
+            assertTrue(coordinator.awaitWorkers(2, 5_000));
+            assertEquals(2, coordinator.getWorkers());
+            one.delta(first, 3).finish();
+            two.delta(first, 3).finish();
+            assertTrue(coordinator.collect(photoContest, 5_000));
+        }
+        //Two workers are never merged as one
+        assertEquals(6, likes(first));
+    }
+
+    @Test
+    void restartedWorkerTakesNewId() throws Exception {
+        int old;
+        try (RawWorker worker = new RawWorker()) {
+            old = worker.workerId;
+            worker.delta(first, 5);
+            worker.socket.shutdownOutput();
+            while (coordinator.getDeltas() < 1) {
+                Thread.sleep(1);
+            }
+        }
+        //Restarted process counts from zero again, its likes are added to the likes before the restart
+        try (RawWorker restarted = new RawWorker()) {
+            assertNotEquals(old, restarted.workerId);
+            restarted.delta(first, 2).finish();
+            assertTrue(coordinator.collect(photoContest, 5_000));
+        }
+        assertEquals(7, likes(first));
+    }
+
+    @Test
+    void workersCountLikesOfTheirVotersOnce() throws Exception {
+        try (TallyWorker one = new TallyWorker(coordinator.getPort(), 5);
+             TallyWorker two = new TallyWorker(coordinator.getPort(), 5)) {
+            assertNotEquals(one.getWorkerId(), two.getWorkerId());
+            int firstId = first.photographer.id;
+            int secondId = second.photographer.id;
+            for (int voter = 0; voter < 100; voter++) {
+                TallyWorker worker = voter % 2 == 0 ? one : two;
+                assertTrue(worker.like(photoContest.id, firstId, voter));
+                assertFalse(worker.like(photoContest.id, firstId, voter));
+                if (voter % 4 == 0) {
+                    assertTrue(worker.like(photoContest.id, secondId, voter));
+                }
+            }
+            assertFalse(one.like(photoContest.id, firstId, -1));
+            assertTrue(coordinator.collect(photoContest, 5_000));
+            //Voting is closed in workers
+            assertFalse(one.like(photoContest.id, firstId, 1_000));
+        }
+        assertEquals(100, likes(first));
+        assertEquals(25, likes(second));
+    }
+
+    @Test
+    void workerFailsToStartWithoutCoordinator() throws Exception {
+        coordinator.close();
+        assertThrows(IOException.class, () -> new TallyWorker(coordinator.getPort(), 5));
+    }
+}
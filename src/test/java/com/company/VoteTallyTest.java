@@ -0,0 +1,121 @@
+package com.company;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Likes come from many threads at once, every voter is counted once per photo and nothing is counted after sealing
+ */
+class VoteTallyTest {
+    private static final int THREADS = 8;
+    private static final int PHOTOS = 4;
+
+    private VoteTally voteTally;
+    private Participant[] participants;
+
+    @BeforeEach
+    void setUp() {
+        Output.setSink(new NullSink());
+        PhotoContest photoContest = new PhotoContest("Tally");
+        voteTally = new VoteTally();
+        participants = new Participant[PHOTOS];
+        for (int i = 0; i < PHOTOS; i++) {
+            participants[i] = new Participant(Photographer.imported("Photographer " + i, "p" + i + "@contest.ru", null), photoContest);
+            voteTally.open(participants[i]);
+        }
+    }
+
+    private static void join(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @Test
+    void concurrentLikesAreCountedOncePerVoter() throws InterruptedException {
+        int voters = 20_000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong counted = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            //Every voter is tried by two threads
+            int from = t / 2;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exc) {
+                    return;
+                }
+                for (int voter = from; voter < voters; voter += THREADS / 2) {
+                    if (voteTally.like(participants[voter % PHOTOS], voter)) {
+                        counted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        join(threads);
+        assertEquals(voters, counted.get());
+        assertEquals(voters, voteTally.getTotal());
+        assertEquals(voters, voteTally.getRejected());
+        for (Participant participant : participants) {
+            assertEquals(voters / PHOTOS, voteTally.getLikes(participant));
+        }
+        assertTrue(voteTally.hasVoted(participants[1], 1));
+        assertFalse(voteTally.hasVoted(participants[1], 2));
+    }
+
+    @Test
+    void likesAfterSealingAreRefused() throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong counted = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int from = t;
+            threads.add(new Thread(() -> {
+                for (int voter = from; !stop.get(); voter += THREADS) {
+                    if (voteTally.like(participants[voter % PHOTOS], voter)) {
+                        counted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        while (voteTally.getTotal() < 1000) {
+            Thread.onSpinWait();
+        }
+        voteTally.seal();
+        long sealed = voteTally.getTotal();
+        assertTrue(voteTally.isSealed());
+        Thread.sleep(20);
+        stop.set(true);
+        join(threads);
+        //Likes in progress are finished by seal(), so counts do not change after it
+        assertEquals(sealed, voteTally.getTotal());
+        assertEquals(counted.get(), voteTally.getTotal());
+        assertFalse(voteTally.like(participants[0], Integer.MAX_VALUE));
+    }
+
+    @Test
+    void photoNotOnVotingAndNegativeVoterAreRefused() {
+        Participant other = new Participant(Photographer.imported("Other", "other@contest.ru", null), participants[0].photoContest);
+        assertFalse(voteTally.like(other, 1));
+        assertFalse(voteTally.like(participants[0], -1));
+        assertEquals(0, voteTally.getTotal());
+        //Likes of recovery are added at once
+        voteTally.add(participants[2], 5);
+        assertEquals(5, voteTally.getLikes(participants[2]));
+        assertEquals(5, voteTally.getTotal());
+    }
+}
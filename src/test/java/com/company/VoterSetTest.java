@@ -0,0 +1,149 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Range of 65536 voter ids keeps a sorted array up to 4096 voters and the bitmap after it
+ */
+class VoterSetTest {
+    private static final int RANGE = 1 << 16;
+    private static final int MAX_ARRAY = 4096;
+
+    @Test
+    void sparseVotersOfSeveralRanges() {
+        VoterSet voterSet = new VoterSet();
+        //Edges of ranges and low bits above Short.MAX_VALUE, which are kept shifted in the array
+        int[] voters = {0, 1, 32767, 32768, 40000, RANGE - 1, RANGE, 3 * RANGE + 5, Integer.MAX_VALUE};
+        for (int voter : voters) {
+            assertTrue(voterSet.add(voter));
+        }
+        for (int voter : voters) {
+            assertFalse(voterSet.add(voter), "repeated voter " + voter);
+            assertTrue(voterSet.contains(voter));
+        }
+        for (int voter : new int[]{2, 32766, 39999, RANGE + 1, 2 * RANGE, Integer.MAX_VALUE - 1}) {
+            assertFalse(voterSet.contains(voter));
+        }
+        assertEquals(4, voterSet.chunks());
+    }
+
+    @Test
+    void arrayTurnsIntoBitmapWithoutLosingVoters() {
+        VoterSet voterSet = new VoterSet();
+        int base = 7 * RANGE;
+        //Every 15th id in reverse order, so every add goes into the middle of the array
+        List<Integer> voters = new ArrayList<>();
+        for (int i = MAX_ARRAY; i >= 0; i--) {
+            voters.add(base + i * 15);
+        }
+        for (int i = 0; i < MAX_ARRAY; i++) {
+            assertTrue(voterSet.add(voters.get(i)));
+        }
+        //Array is full, repeated voter must not convert it
+        assertFalse(voterSet.add(voters.get(0)));
+        //Next voter turns the range into the bitmap
+        assertTrue(voterSet.add(voters.get(MAX_ARRAY)));
+        for (int voter : voters) {
+            assertTrue(voterSet.contains(voter));
+            assertFalse(voterSet.add(voter), "repeated voter " + voter + " after conversion");
+        }
+        assertFalse(voterSet.contains(base + 1));
+        assertTrue(voterSet.add(base + RANGE - 1));
+        assertTrue(voterSet.add(base + 1));
+        assertEquals(1, voterSet.chunks());
+    }
+
+    @Test
+    void sameAnswersAsHashSet() {
+        SplittableRandom random = new SplittableRandom(18);
+        VoterSet voterSet = new VoterSet();
+        HashSet<Integer> reference = new HashSet<>();
+        //Dense range turns into bitmap, sparse ranges stay arrays
+        for (int i = 0; i < 60_000; i++) {
+            int voter = random.nextInt(4) == 0 ? random.nextInt(Integer.MAX_VALUE) : 5 * RANGE + random.nextInt(10_000);
+            assertEquals(reference.add(voter), voterSet.add(voter), "voter " + voter);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            int voter = random.nextBoolean() ? random.nextInt(Integer.MAX_VALUE) : 5 * RANGE + random.nextInt(RANGE);
+            assertEquals(reference.contains(voter), voterSet.contains(voter), "voter " + voter);
+        }
+    }
+
+    @Test
+    void concurrentVotersAreAddedOnceAcrossConversion() throws InterruptedException {
+        VoterSet voterSet = new VoterSet();
+        int distinct = 3 * MAX_ARRAY;
+        int threads = 4;
+        AtomicInteger added = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            //Every thread adds all voters in own order, so each voter is tried by all threads
+            List<Integer> voters = new ArrayList<>();
+            for (int voter = 0; voter < distinct; voter++) {
+                voters.add(2 * RANGE + voter * 5);
+            }
+            Collections.shuffle(voters, new Random(t));
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exc) {
+                    return;
+                }
+                for (int voter : voters) {
+                    if (voterSet.add(voter)) {
+                        added.incrementAndGet();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(distinct, added.get());
+        for (int voter = 0; voter < distinct; voter++) {
+            assertTrue(voterSet.contains(2 * RANGE + voter * 5));
+        }
+    }
+
+    @Test
+    void negativeVoterIsRejected() {
+        VoterSet voterSet = new VoterSet();
+        assertThrows(IllegalArgumentException.class, () -> voterSet.add(-1));
+        assertFalse(voterSet.contains(-1));
+        assertEquals(0, voterSet.chunks());
+    }
+
+    @Test
+    void likeWithoutVoterIsNotCounted() {
+        Output.setSink(new NullSink());
+        Admin admin = new Admin();
+        PhotoContest photoContest = admin.createNewContest("Voters");
+        Photographer photographer = Photographer.imported("Voted", "voted@contest.ru", null);
+        photographer.register(photoContest);
+        photographer.sendPhoto(photoContest, "voted-photo");
+        admin.closeApplicationSession(photoContest.id);
+        admin.peerReviewSession(photoContest.id);
+        assertFalse(photoContest.like(photographer, -1));
+        assertTrue(photoContest.like(photographer, 0));
+        assertFalse(photoContest.like(photographer, 0));
+        assertEquals(1, photoContest.getVoteTally().getTotal());
+    }
+}